@@ -0,0 +1,44 @@
+package com.fnannizz;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Writes generated maps to temporary files for the benchmarks to load.
+ *
+ * The generated code JMH writes lives in a subpackage, so @Param fields hold enum names as strings rather than the
+ * package-private enums themselves.
+ */
+class GeneratedMaps {
+    static final long SEED = 20161127L;
+
+    static File write(MapGenerator generator) throws IOException {
+        File mapFile = File.createTempFile("hoardpath-benchmark", ".xml");
+        mapFile.deleteOnExit();
+        generator.writeMap(mapFile.getPath());
+        return mapFile;
+    }
+
+    static MapData load(MapGenerator generator) throws Exception {
+        return load(generator, false);
+    }
+
+    /**
+     * @param offHeap whether to compile the map and read it in place with OffHeapMapStorage
+     */
+    static MapData load(MapGenerator generator, boolean offHeap) throws Exception {
+        File mapFile = write(generator);
+        File compiled = File.createTempFile("hoardpath-benchmark", ".hpth");
+        try {
+            if (!offHeap) {
+                return MapFactory.makeMap(mapFile.getPath());
+            }
+            MapFactory.compileMap(mapFile.getPath(), compiled.getPath());
+            return MapFactory.makeMap(compiled.getPath(), true);
+        }
+        finally {
+            mapFile.delete();
+            compiled.delete();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.fnannizz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to load map.xml with MapFactory.makeMap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class MapLoadBenchmark {
+
+    @Param({ "GRID", "TREE", "RANDOM_SPARSE", "CORRIDOR" })
+    public String shape;
+
+    @Param({ "10", "1000", "100000", "1000000" })
+    public int rooms;
+
+    private File mapFile;
+
+    @Setup
+    public void writeMap() throws Exception {
+        mapFile = GeneratedMaps.write(new MapGenerator(MapGenerator.Shape.valueOf(shape), rooms, GeneratedMaps.SEED));
+    }
+
+    @TearDown
+    public void deleteMap() {
+        mapFile.delete();
+    }
+
+    @Benchmark
+    public MapData makeMap() throws Exception {
+        return MapFactory.makeMap(mapFile.getPath());
+    }
+}
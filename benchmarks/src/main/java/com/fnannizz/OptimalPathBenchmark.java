@@ -0,0 +1,70 @@
+package com.fnannizz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for a whole OptimalPathSolver.findOptimalPath solve, cycling through a fixed set of generated scenarios,
+ * including writing the text solution. The shortest path cache is off so every solve pays for its searches, and
+ * output is discarded.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class OptimalPathBenchmark {
+
+    @Param({ "GRID", "TREE", "RANDOM_SPARSE", "CORRIDOR" })
+    public String shape;
+
+    @Param({ "1000", "100000" })
+    public int rooms;
+
+    @Param({ "4", "8", "12", "16" })
+    public int items;
+
+    private MapData mapData;
+    private final List<List<String>> scenarios = new ArrayList<>();
+    private SolverOptions options;
+    private final SolutionWriter writer = new TextSolutionWriter();
+    private OutputStream discard;
+    private int next;
+
+    @Setup
+    public void loadMapAndScenarios() throws Exception {
+        MapGenerator generator = new MapGenerator(MapGenerator.Shape.valueOf(shape), rooms, GeneratedMaps.SEED);
+        mapData = GeneratedMaps.load(generator);
+        for (int i = 0; i < 16; i++) {
+            scenarios.add(generator.generateScenario(items));
+        }
+        options = new SolverOptions();
+        options.setUseShortestPathCache(false);
+        discard = OutputStream.nullOutputStream();
+    }
+
+    @Benchmark
+    public PathSolution findOptimalPath() throws Exception {
+        next = (next + 1) % scenarios.size();
+        List<String> scenario = scenarios.get(next);
+        PathSolution solution = new OptimalPathSolver(options).findOptimalPath(mapData, scenario.subList(1, scenario.size()),
+                scenario.get(0));
+        writer.write(solution, discard);
+        return solution;
+    }
+}
@@ -0,0 +1,67 @@
+package com.fnannizz;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time for one ShortestPathSolver.findShortestPathFromNode call from a random room. Maps with a maxCost above 1
+ * have weighted connections, where BREADTH_FIRST runs the BUCKET search. offHeap maps are read in place from a
+ * compiled file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ShortestPathBenchmark {
+
+    @Param({ "GRID", "TREE", "RANDOM_SPARSE", "CORRIDOR" })
+    public String shape;
+
+    @Param({ "10", "1000", "100000", "1000000" })
+    public int rooms;
+
+    @Param({ "BREADTH_FIRST", "BUCKET", "DIJKSTRA" })
+    public String engine;
+
+    @Param({ "1", "8" })
+    public int maxCost;
+
+    @Param({ "false", "true" })
+    public boolean offHeap;
+
+    private MapData mapData;
+    private SearchEngine searchEngine;
+    private int[] startRooms;
+    private int next;
+
+    @Setup
+    public void loadMap() throws Exception {
+        mapData = GeneratedMaps.load(new MapGenerator(MapGenerator.Shape.valueOf(shape), rooms, GeneratedMaps.SEED, maxCost), offHeap);
+        searchEngine = SearchEngine.valueOf(engine);
+        Random random = new Random(GeneratedMaps.SEED);
+        startRooms = new int[64];
+        for (int i = 0; i < startRooms.length; i++) {
+            startRooms[i] = random.nextInt(rooms);
+        }
+    }
+
+    @Benchmark
+    public ShortestPathData findShortestPathFromNode() {
+        next = (next + 1) % startRooms.length;
+        return ShortestPathSolver.findShortestPathFromNode(startRooms[next], mapData, searchEngine);
+    }
+}
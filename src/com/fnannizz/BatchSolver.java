@@ -0,0 +1,168 @@
+package com.fnannizz;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Solves many scenarios against one map in a single process. The map is loaded once and shared read-only between
+ * all the worker threads; each scenario gets its own Scenario and OptimalPathSolver, and its solution is written to
+ * its own file in the output directory.
+ *
+ * Scenarios are solved concurrently but reported in the order they were given (sorted by file name for a
+ * directory), so the summary and the output files are the same on every run.
+ *
+ * Searches keep their scratch buffers in a per-thread SearchWorkspace, which a pool of platform threads reuses
+ * from one scenario to the next. Virtual threads are created per scenario, so each allocates its own workspace;
+ * they are offered for scenarios that spend most of their time blocked on I/O rather than searching.
+ */
+class BatchSolver {
+    private final MapData mapData;
+    private final SolverOptions options;
+    private SolutionWriter solutionWriter = new TextSolutionWriter();
+
+    BatchSolver(MapData map, SolverOptions solverOptions) {
+        mapData = map;
+        options = solverOptions;
+    }
+
+    /**
+     * Format of the solution files; text unless set otherwise. A scenario that can't be solved gets a plain text
+     * message whatever the format.
+     */
+    void setSolutionWriter(SolutionWriter writer) {
+        solutionWriter = writer;
+    }
+
+    /**
+     * @param scenarioSource a directory of scenario .txt files, or a manifest file listing one scenario path per line
+     * @return the scenario files in a deterministic order
+     */
+    static List<String> listScenarios(String scenarioSource) throws IOException {
+        File source = new File(scenarioSource);
+        ArrayList<String> scenarioFiles = new ArrayList<>();
+        if (source.isDirectory()) {
+            File[] files = source.listFiles((directory, name) -> name.endsWith(".txt"));
+            if (files == null) {
+                throw new IOException("Unable to list " + scenarioSource);
+            }
+            for (File file : files) {
+                scenarioFiles.add(file.getPath());
+            }
+            scenarioFiles.sort(null);
+        }
+        else {
+            // Relative paths in a manifest are relative to the manifest itself.
+            Path manifestDirectory = source.getAbsoluteFile().toPath().getParent();
+            for (String line : Files.readAllLines(source.toPath(), StandardCharsets.UTF_8)) {
+                if (!line.trim().isEmpty()) {
+                    scenarioFiles.add(manifestDirectory.resolve(line.trim()).toString());
+                }
+            }
+        }
+        return scenarioFiles;
+    }
+
+    /**
+     * @return a pool of the given number of platform threads, or a virtual thread per task if requested and the
+     * running JVM supports them
+     */
+    static ExecutorService createExecutor(int threads, boolean virtualThreads) {
+        if (virtualThreads) {
+            try {
+                Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            }
+            catch (ReflectiveOperationException e) {
+                System.err.println("Virtual threads aren't available on this JVM; using " + threads + " platform threads.");
+            }
+        }
+        return Executors.newFixedThreadPool(threads);
+    }
+
+    /**
+     * Solve every scenario on executor, writing each solution to outputDirectory/[scenario name].solution.txt
+     * (or the extension of the chosen format).
+     * @param summary receives one line per scenario, in the order given
+     * @return the number of scenarios that could not be solved
+     */
+    int solveAll(List<String> scenarioFiles, String outputDirectory, ExecutorService executor, PrintStream summary)
+            throws IOException, InterruptedException {
+        Files.createDirectories(Paths.get(outputDirectory));
+        ArrayList<Path> outputFiles = new ArrayList<>();
+        HashSet<Path> seen = new HashSet<>();
+        for (String scenarioFile : scenarioFiles) {
+            String name = new File(scenarioFile).getName().replaceFirst("\\.txt$", "");
+            Path outputFile = Paths.get(outputDirectory, name + solutionWriter.getFileExtension());
+            if (!seen.add(outputFile)) {
+                throw new IOException("More than one scenario would be written to " + outputFile + ".");
+            }
+            outputFiles.add(outputFile);
+        }
+
+        ArrayList<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < scenarioFiles.size(); i++) {
+            String scenarioFile = scenarioFiles.get(i);
+            Path outputFile = outputFiles.get(i);
+            results.add(executor.submit(() -> solveOne(scenarioFile, outputFile)));
+        }
+
+        int failures = 0;
+        for (int i = 0; i < results.size(); i++) {
+            String error;
+            try {
+                error = results.get(i).get();
+            }
+            catch (ExecutionException e) {
+                error = e.getCause().toString();
+            }
+            if (error == null) {
+                summary.println(scenarioFiles.get(i) + ": solved");
+            }
+            else {
+                summary.println(scenarioFiles.get(i) + ": " + error);
+                failures++;
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * @return null on success, otherwise a description of what went wrong
+     */
+    private String solveOne(String scenarioFile, Path outputFile) throws IOException {
+        try (PrintStream out = new PrintStream(new BufferedOutputStream(Files.newOutputStream(outputFile)), false, "UTF-8")) {
+            try {
+                Scenario scenario = Scenario.readFromFile(scenarioFile, mapData);
+                PathSolution solution = new OptimalPathSolver(options).findOptimalPath(mapData, scenario.getItemsToCollect(),
+                        scenario.getStartingLocation());
+                PhaseTimer timer = PhaseTimer.start(SolvePhase.OUTPUT, options.getMetricsSink());
+                solutionWriter.write(solution, out);
+                out.flush();
+                timer.stop(solution.getStepCount());
+                return null;
+            }
+            catch (InvalidScenarioException e) {
+                out.println(e.getMessage());
+                return "invalid scenario: " + e.getMessage();
+            }
+            catch (IOException e) {
+                out.println("Unable to open file: " + e.toString());
+                return "unable to open file: " + e.toString();
+            }
+        }
+    }
+}
@@ -0,0 +1,375 @@
+package com.fnannizz;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes compiled maps: a binary image of MapData that can be memory-mapped and handed to the solver
+ * without any XML parsing.
+ *
+ * All values are little-endian and every section starts on a 4-byte boundary:
+ *
+ *   header         magic, version, room count, connection count, cost count, item count, item index size,
+ *                  string count, component count
+ *   room table     roomCount pairs of (id string, name string)
+ *   adjacency      roomCount + 1 offsets, then the connectionCount neighbouring rooms
+ *   directions     connectionCount direction codes, one byte each
+ *   costs          costCount connection costs: connectionCount of them, or none if every connection costs 1
+ *   incoming       roomCount + 1 offsets, then the connectionCount rooms the connections entering each room come from
+ *   components     roomCount component numbers, rooms joined by connections in either direction sharing one
+ *   items          roomCount + 1 offsets, then itemCount item name strings
+ *   item index     itemIndexSize pairs of (item name string, room)
+ *   string pool    stringCount + 1 byte offsets, then the UTF-8 bytes of every string
+ *
+ * Strings are referred to by their position in the pool, and repeated strings are only stored once.
+ *
+ * A compiled map can either be copied onto the heap or read in place from the mapping with OffHeapMapStorage. Only
+ * the latter reads the incoming and component sections, so that a map read in place needs no index on the heap.
+ */
+class BinaryMapFormat {
+    static final int MAGIC = 0x48545048;    // the bytes "HPTH" read as a little-endian int
+    static final int VERSION = 3;
+
+    private static final int HEADER_INTS = 9;
+
+    /**
+     * @return true if the file starts with the compiled map magic number
+     */
+    static boolean isCompiledMap(String mapFilePath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(mapFilePath))) {
+            return Integer.reverseBytes(in.readInt()) == MAGIC;
+        }
+        catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write mapData to outputFilePath in the compiled format.
+     */
+    static void write(MapData mapData, String outputFilePath) throws IOException {
+        int numRooms = mapData.getRoomCount();
+        StringPool pool = new StringPool();
+
+        int[] roomTable = new int[numRooms * 2];
+        int[] adjacencyOffsets = new int[numRooms + 1];
+        int[] itemOffsets = new int[numRooms + 1];
+        for (int room = 0; room < numRooms; room++) {
+            roomTable[room * 2] = pool.add(mapData.getRoomId(room));
+            roomTable[room * 2 + 1] = pool.add(mapData.getRoomName(room));
+            adjacencyOffsets[room + 1] = adjacencyOffsets[room] + mapData.getDegree(room);
+            itemOffsets[room + 1] = itemOffsets[room] + mapData.getItemCount(room);
+        }
+
+        int[] adjacentRooms = new int[adjacencyOffsets[numRooms]];
+        byte[] directions = new byte[adjacencyOffsets[numRooms]];
+        int[] costs = new int[mapData.getMaxCost() > 1 ? adjacencyOffsets[numRooms] : 0];
+        int[] items = new int[itemOffsets[numRooms]];
+        for (int room = 0; room < numRooms; room++) {
+            for (int i = 0; i < mapData.getDegree(room); i++) {
+                adjacentRooms[adjacencyOffsets[room] + i] = mapData.getNeighbor(room, i);
+                directions[adjacencyOffsets[room] + i] = mapData.getDirection(room, i);
+                if (costs.length > 0) {
+                    costs[adjacencyOffsets[room] + i] = mapData.getCost(room, i);
+                }
+            }
+            for (int i = 0; i < mapData.getItemCount(room); i++) {
+                items[itemOffsets[room] + i] = pool.add(mapData.getItem(room, i));
+            }
+        }
+
+        int[] incomingOffsets = new int[numRooms + 1];
+        for (int room = 0; room < numRooms; room++) {
+            incomingOffsets[room + 1] = incomingOffsets[room] + mapData.getIncomingDegree(room);
+        }
+        int[] incomingRooms = new int[incomingOffsets[numRooms]];
+        for (int room = 0; room < numRooms; room++) {
+            for (int i = 0; i < mapData.getIncomingDegree(room); i++) {
+                incomingRooms[incomingOffsets[room] + i] = mapData.getIncomingNeighbor(room, i);
+            }
+        }
+        int[] components = new int[numRooms];
+        int numComponents = findComponents(mapData, components);
+
+        Map<String, Integer> itemLocations = mapData.getItemLocations();
+        int[] itemIndex = new int[itemLocations.size() * 2];
+        int entry = 0;
+        for (Map.Entry<String, Integer> location : itemLocations.entrySet()) {
+            itemIndex[entry++] = pool.add(location.getKey());
+            itemIndex[entry++] = location.getValue();
+        }
+
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(Paths.get(outputFilePath)), 1 << 16)) {
+            writeInts(out, new int[] { MAGIC, VERSION, numRooms, adjacentRooms.length, costs.length, items.length,
+                    itemLocations.size(), pool.size(), numComponents });
+            writeInts(out, roomTable);
+            writeInts(out, adjacencyOffsets);
+            writeInts(out, adjacentRooms);
+            out.write(directions);
+            out.write(new byte[padding(directions.length)]);
+            writeInts(out, costs);
+            writeInts(out, incomingOffsets);
+            writeInts(out, incomingRooms);
+            writeInts(out, components);
+            writeInts(out, itemOffsets);
+            writeInts(out, items);
+            writeInts(out, itemIndex);
+            writeInts(out, pool.getOffsets());
+            out.write(pool.getBytes());
+        }
+    }
+
+    /**
+     * Number the components of mapData breadth-first over connections in both directions.
+     * @param components set to the component of each room
+     * @return the number of components
+     */
+    private static int findComponents(MapData mapData, int[] components) {
+        Arrays.fill(components, -1);
+        int[] queue = new int[components.length];
+        int numComponents = 0;
+        for (int root = 0; root < components.length; root++) {
+            if (components[root] != -1) {
+                continue;
+            }
+            int head = 0;
+            int tail = 0;
+            components[root] = numComponents;
+            queue[tail++] = root;
+            while (head < tail) {
+                int room = queue[head++];
+                for (int i = 0; i < mapData.getDegree(room) + mapData.getIncomingDegree(room); i++) {
+                    int next = i < mapData.getDegree(room) ? mapData.getNeighbor(room, i)
+                            : mapData.getIncomingNeighbor(room, i - mapData.getDegree(room));
+                    if (components[next] == -1) {
+                        components[next] = numComponents;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+            numComponents++;
+        }
+        return numComponents;
+    }
+
+    /**
+     * Memory-map a compiled map and build a MapData from it. The arrays are copied out of the mapping in bulk,
+     * so the cost is a handful of memcpys plus decoding the string pool.
+     */
+    static MapData read(String mapFilePath) throws IOException {
+        return read(mapFilePath, false);
+    }
+
+    /**
+     * @param offHeap whether to leave the rooms, connections and items in the mapping rather than copy them out.
+     *                The mapping stays valid after the file is closed, for as long as the MapData is reachable.
+     */
+    static MapData read(String mapFilePath, boolean offHeap) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(mapFilePath), StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            return read(buffer, mapFilePath, offHeap);
+        }
+    }
+
+    private static MapData read(ByteBuffer buffer, String mapFilePath, boolean offHeap) throws IOException {
+        if (buffer.remaining() < HEADER_INTS * 4 || buffer.getInt() != MAGIC) {
+            throw new IOException(mapFilePath + " is not a compiled map.");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException(mapFilePath + " was compiled with format version " + version
+                    + ", but only version " + VERSION + " can be read. Please recompile it.");
+        }
+        int numRooms = buffer.getInt();
+        int numConnections = buffer.getInt();
+        int numCosts = buffer.getInt();
+        int numItems = buffer.getInt();
+        int itemIndexSize = buffer.getInt();
+        int numStrings = buffer.getInt();
+        int numComponents = buffer.getInt();
+
+        try {
+            if (offHeap) {
+                return readOffHeap(buffer, numRooms, numConnections, numCosts, numItems, itemIndexSize, numStrings,
+                        numComponents);
+            }
+            int[] roomTable = readInts(buffer, numRooms * 2);
+            int[] adjacencyOffsets = readInts(buffer, numRooms + 1);
+            int[] adjacentRooms = readInts(buffer, numConnections);
+            byte[] directions = new byte[numConnections];
+            buffer.get(directions);
+            buffer.position(buffer.position() + padding(numConnections));
+            int[] costs = numCosts == 0 ? null : readInts(buffer, numCosts);
+            // MapData works the incoming connections and components out itself on the heap, if it needs them.
+            buffer.position(buffer.position() + (numRooms + 1 + numConnections + numRooms) * 4);
+            int[] itemOffsets = readInts(buffer, numRooms + 1);
+            int[] itemStrings = readInts(buffer, numItems);
+            int[] itemIndex = readInts(buffer, itemIndexSize * 2);
+            int[] stringOffsets = readInts(buffer, numStrings + 1);
+            byte[] stringBytes = new byte[stringOffsets[numStrings]];
+            buffer.get(stringBytes);
+
+            String[] strings = new String[numStrings];
+            for (int i = 0; i < numStrings; i++) {
+                strings[i] = new String(stringBytes, stringOffsets[i], stringOffsets[i + 1] - stringOffsets[i], StandardCharsets.UTF_8);
+            }
+
+            String[] ids = new String[numRooms];
+            String[] names = new String[numRooms];
+            HashMap<String, Integer> roomIndex = new HashMap<>(numRooms * 2);
+            for (int room = 0; room < numRooms; room++) {
+                ids[room] = strings[roomTable[room * 2]];
+                names[room] = strings[roomTable[room * 2 + 1]];
+                roomIndex.put(ids[room], room);
+            }
+            String[] items = new String[numItems];
+            for (int item = 0; item < numItems; item++) {
+                items[item] = strings[itemStrings[item]];
+            }
+            HashMap<String, Integer> itemLocations = new HashMap<>(itemIndexSize * 2);
+            for (int entry = 0; entry < itemIndexSize; entry++) {
+                itemLocations.put(strings[itemIndex[entry * 2]], itemIndex[entry * 2 + 1]);
+            }
+
+            return new MapData(new HeapMapStorage(ids, names, roomIndex, adjacencyOffsets, adjacentRooms, directions,
+                    costs, itemOffsets, items), itemLocations);
+        }
+        catch (RuntimeException e) {
+            // Truncated files underflow the buffer, and corrupt offsets index past the end of an array.
+            throw new IOException(mapFilePath + " is not a valid compiled map: " + e, e);
+        }
+    }
+
+    /**
+     * Wrap each section of the mapping in a view rather than copying it. Only the item index is copied, into the
+     * item name dictionary that MapData keeps on the heap so that items can be added and removed.
+     */
+    private static MapData readOffHeap(ByteBuffer buffer, int numRooms, int numConnections, int numCosts, int numItems,
+                                       int itemIndexSize, int numStrings, int numComponents) {
+        IntBuffer roomTable = sliceInts(buffer, numRooms * 2);
+        IntBuffer adjacencyOffsets = sliceInts(buffer, numRooms + 1);
+        IntBuffer adjacentRooms = sliceInts(buffer, numConnections);
+        ByteBuffer directions = sliceBytes(buffer, numConnections);
+        buffer.position(buffer.position() + padding(numConnections));
+        IntBuffer costs = numCosts == 0 ? null : sliceInts(buffer, numCosts);
+        IntBuffer incomingOffsets = sliceInts(buffer, numRooms + 1);
+        IntBuffer incomingRooms = sliceInts(buffer, numConnections);
+        IntBuffer components = sliceInts(buffer, numRooms);
+        IntBuffer itemOffsets = sliceInts(buffer, numRooms + 1);
+        IntBuffer itemStrings = sliceInts(buffer, numItems);
+        int[] itemIndex = readInts(buffer, itemIndexSize * 2);
+        IntBuffer stringOffsets = sliceInts(buffer, numStrings + 1);
+        ByteBuffer stringBytes = sliceBytes(buffer, stringOffsets.get(numStrings));
+
+        OffHeapMapStorage storage = new OffHeapMapStorage(numRooms, roomTable, adjacencyOffsets, adjacentRooms,
+                directions, costs, incomingOffsets, incomingRooms, components, numComponents, itemOffsets, itemStrings,
+                stringOffsets, stringBytes);
+        HashMap<String, Integer> itemLocations = new HashMap<>(itemIndexSize * 2);
+        for (int entry = 0; entry < itemIndexSize; entry++) {
+            int string = itemIndex[entry * 2];
+            itemLocations.put(decode(stringOffsets, stringBytes, string), itemIndex[entry * 2 + 1]);
+        }
+        return new MapData(storage, itemLocations);
+    }
+
+    private static String decode(IntBuffer stringOffsets, ByteBuffer stringBytes, int string) {
+        byte[] bytes = new byte[stringOffsets.get(string + 1) - stringOffsets.get(string)];
+        stringBytes.get(stringOffsets.get(string), bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int padding(int bytes) {
+        return (4 - bytes % 4) % 4;
+    }
+
+    /**
+     * @return the next count little-endian ints of buffer, which is moved past them. Also reads the int sections of
+     * partitioned maps and saved indexes.
+     */
+    static int[] readInts(ByteBuffer buffer, int count) {
+        int[] values = new int[count];
+        buffer.asIntBuffer().get(values);
+        buffer.position(buffer.position() + count * 4);
+        return values;
+    }
+
+    private static IntBuffer sliceInts(ByteBuffer buffer, int count) {
+        return sliceBytes(buffer, count * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    /**
+     * @return a view of the next count bytes of buffer, which is moved past them
+     */
+    private static ByteBuffer sliceBytes(ByteBuffer buffer, int count) {
+        ByteBuffer slice = buffer.slice(buffer.position(), count);
+        buffer.position(buffer.position() + count);
+        return slice;
+    }
+
+    private static void writeInts(OutputStream out, int[] values) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asIntBuffer().put(values);
+        out.write(bytes.array());
+    }
+
+    /**
+     * Deduplicating string pool, built up while writing.
+     */
+    private static class StringPool {
+        private final HashMap<String, Integer> positions = new HashMap<>();
+        private final ArrayList<byte[]> encoded = new ArrayList<>();
+        private int totalBytes;
+
+        int add(String value) {
+            Integer position = positions.get(value);
+            if (position == null) {
+                position = encoded.size();
+                positions.put(value, position);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                totalBytes += bytes.length;
+            }
+            return position;
+        }
+
+        int size() {
+            return encoded.size();
+        }
+
+        int[] getOffsets() {
+            int[] offsets = new int[encoded.size() + 1];
+            for (int i = 0; i < encoded.size(); i++) {
+                offsets[i + 1] = offsets[i] + encoded.get(i).length;
+            }
+            return offsets;
+        }
+
+        byte[] getBytes() {
+            byte[] bytes = new byte[totalBytes];
+            int position = 0;
+            for (byte[] value : encoded) {
+                System.arraycopy(value, 0, bytes, position, value.length);
+                position += value.length;
+            }
+            return bytes;
+        }
+    }
+}
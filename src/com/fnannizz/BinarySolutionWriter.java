@@ -0,0 +1,95 @@
+package com.fnannizz;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Writes a solution in a compact big-endian binary form, for consumers that would rather not parse text:
+ *
+ *   int    MAGIC
+ *   int    path length, or -1 if there is no path (nothing follows)
+ *   byte   1 if the path is proven optimal, otherwise 0
+ *   int    number of steps, then for each step:
+ *     UTF    room id
+ *     byte   direction of the move out of the room as an index into MapData.directions, -1 for the last step
+ *     short  number of items picked up, followed by each item as UTF
+ */
+class BinarySolutionWriter implements SolutionWriter {
+    static final int MAGIC = 0x48505331; // "HPS1"
+
+    @Override
+    public void write(PathSolution solution, OutputStream out) throws IOException {
+        DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+        data.writeInt(MAGIC);
+        if (!solution.isFound()) {
+            data.writeInt(-1);
+            data.flush();
+            return;
+        }
+
+        data.writeInt(solution.getLength());
+        data.writeByte(solution.isProvenOptimal() ? 1 : 0);
+        data.writeInt(solution.getStepCount());
+        for (int step = 0; step < solution.getStepCount(); step++) {
+            data.writeUTF(solution.getRoom(step));
+            data.writeByte(directionIndex(solution.getMove(step)));
+            String[] pickups = solution.getPickups(step);
+            data.writeShort(pickups.length);
+            for (String item : pickups) {
+                data.writeUTF(item);
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Read back a solution written by write. Reads exactly one solution, so in should be buffered by the caller.
+     */
+    static PathSolution read(InputStream in) throws IOException {
+        DataInputStream data = new DataInputStream(in);
+        if (data.readInt() != MAGIC) {
+            throw new IOException("Not a binary solution.");
+        }
+        int length = data.readInt();
+        if (length == -1) {
+            return PathSolution.noPath();
+        }
+
+        boolean provenOptimal = data.readByte() == 1;
+        int steps = data.readInt();
+        String[] rooms = new String[steps];
+        String[] moves = new String[steps];
+        String[][] pickups = new String[steps][];
+        for (int step = 0; step < steps; step++) {
+            rooms[step] = data.readUTF();
+            byte direction = data.readByte();
+            moves[step] = direction == -1 ? null : MapData.directions[direction];
+            pickups[step] = new String[data.readShort()];
+            for (int i = 0; i < pickups[step].length; i++) {
+                pickups[step][i] = data.readUTF();
+            }
+        }
+        return new PathSolution(length, provenOptimal, rooms, moves, pickups);
+    }
+
+    private static int directionIndex(String move) throws IOException {
+        if (move == null) {
+            return -1;
+        }
+        for (int direction = 0; direction < MapData.directions.length; direction++) {
+            if (MapData.directions[direction].equals(move)) {
+                return direction;
+            }
+        }
+        throw new IOException("Unknown direction " + move + ".");
+    }
+
+    @Override
+    public String getFileExtension() {
+        return ".solution.bin";
+    }
+}
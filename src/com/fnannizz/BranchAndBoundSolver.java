@@ -0,0 +1,240 @@
+package com.fnannizz;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Finds the shortest order in which to visit every must-visit node by a depth-first branch-and-bound search
+ * over partial orders, split across a fork-join pool.
+ *
+ * A partial order is abandoned as soon as its length plus a lower bound on the rest of the path exceeds the
+ * best complete order found so far (the incumbent). The bound is the weight of a minimum spanning tree over
+ * the last node and the nodes still to visit: any path through those nodes is itself a spanning tree, so the
+ * bound never overestimates. Before the search starts, a nearest-neighbour order gives the incumbent a
+ * sensible starting value.
+ *
+ * Every task shares the incumbent length through an AtomicInteger, which is all the hot loop reads. When two
+ * orders have the same length the lexicographically smaller one wins, so the result doesn't depend on how the
+ * work was scheduled.
+ */
+class BranchAndBoundSolver {
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * Partial orders shorter than this are split into one fork-join task per child; longer ones are searched
+     * sequentially by the task that reached them.
+     */
+    private static final int FORK_DEPTH = 3;
+
+    private final int[] distances;
+    private final int k;
+
+    // Cheaper symmetric weights for the spanning tree bound: the shorter direction between each pair of nodes.
+    private final int[] undirected;
+
+    private final AtomicInteger bestLength = new AtomicInteger(UNREACHABLE);
+    private volatile int[] bestOrder;
+
+    // Partial and complete orders reached, summed once per task.
+    private final LongAdder ordersEvaluated = new LongAdder();
+
+    private BranchAndBoundSolver(int[] d, int numNodes) {
+        distances = d;
+        k = numNodes;
+        undirected = new int[k * k];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                undirected[i * k + j] = Math.min(distances[i * k + j], distances[j * k + i]);
+            }
+        }
+    }
+
+    /**
+     * @param distances k * k row-major matrix of shortest distances between must-visit nodes,
+     *                  Integer.MAX_VALUE where there is no path
+     * @param k number of must-visit nodes, including the start node
+     * @param pool pool to split the search across
+     * @return the optimal visit order, with length Integer.MAX_VALUE if some node can't be reached
+     */
+    static VisitOrder findBestOrder(int[] distances, int k, ForkJoinPool pool) {
+        if (k > 31) {
+            throw new IllegalArgumentException("Branch and bound can't order " + (k - 1) + " item rooms.");
+        }
+        BranchAndBoundSolver solver = new BranchAndBoundSolver(distances, k);
+        solver.seedWithNearestNeighbor();
+
+        int[] order = new int[k];
+        pool.invoke(solver.new SearchTask(order, 1, 1, 0));
+
+        if (solver.bestOrder == null) {
+            return new VisitOrder(null, UNREACHABLE, true, solver.ordersEvaluated.sum());
+        }
+        return new VisitOrder(solver.bestOrder, solver.bestLength.get(), true, solver.ordersEvaluated.sum());
+    }
+
+    /**
+     * Greedily walk to the closest unvisited node to get an initial incumbent.
+     */
+    private void seedWithNearestNeighbor() {
+        int[] order = new int[k];
+        int visited = 1;
+        int length = 0;
+        for (int position = 1; position < k; position++) {
+            int last = order[position - 1];
+            int nearest = -1;
+            for (int next = 1; next < k; next++) {
+                if ((visited & (1 << next)) == 0 && distances[last * k + next] != UNREACHABLE
+                        && (nearest == -1 || distances[last * k + next] < distances[last * k + nearest])) {
+                    nearest = next;
+                }
+            }
+            if (nearest == -1) {
+                return;
+            }
+            order[position] = nearest;
+            visited |= 1 << nearest;
+            length += distances[last * k + nearest];
+        }
+        offer(order, length);
+    }
+
+    /**
+     * Weight of a minimum spanning tree over last and the unvisited nodes (Prim's algorithm on the dense matrix),
+     * or UNREACHABLE if they can't all be connected.
+     */
+    private int spanningTreeBound(int last, int visited, int[] nearestInTree) {
+        int remaining = 0;
+        for (int node = 1; node < k; node++) {
+            if ((visited & (1 << node)) == 0) {
+                nearestInTree[node] = undirected[last * k + node];
+                remaining++;
+            }
+        }
+        int inTree = visited;
+        int weight = 0;
+        for (; remaining > 0; remaining--) {
+            int closest = -1;
+            for (int node = 1; node < k; node++) {
+                if ((inTree & (1 << node)) == 0 && (closest == -1 || nearestInTree[node] < nearestInTree[closest])) {
+                    closest = node;
+                }
+            }
+            if (nearestInTree[closest] == UNREACHABLE) {
+                return UNREACHABLE;
+            }
+            weight += nearestInTree[closest];
+            inTree |= 1 << closest;
+            for (int node = 1; node < k; node++) {
+                if ((inTree & (1 << node)) == 0 && undirected[closest * k + node] < nearestInTree[node]) {
+                    nearestInTree[node] = undirected[closest * k + node];
+                }
+            }
+        }
+        return weight;
+    }
+
+    /**
+     * Whether a partial order could still finish at the same length as the incumbent and win the tie.
+     */
+    private boolean mayWinTie(int[] order, int depth) {
+        int[] incumbent = bestOrder;
+        if (incumbent == null) {
+            return true;
+        }
+        for (int position = 1; position < depth; position++) {
+            if (order[position] != incumbent[position]) {
+                return order[position] < incumbent[position];
+            }
+        }
+        return true;
+    }
+
+    private boolean shouldPrune(int[] order, int depth, int bound) {
+        int best = bestLength.get();
+        return bound > best || (bound == best && !mayWinTie(order, depth));
+    }
+
+    /**
+     * Replace the incumbent if a complete order beats it. Only called on improvement, so it is cheap to lock.
+     */
+    private synchronized void offer(int[] order, int length) {
+        int best = bestLength.get();
+        if (length < best || (length == best && mayWinTie(order, k))) {
+            bestOrder = order.clone();
+            bestLength.set(length);
+        }
+    }
+
+    /**
+     * Searches every completion of the partial order order[0 .. depth - 1], which visits the nodes in visited
+     * and has the given length.
+     */
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] order;
+        private final int depth;
+        private final int visited;
+        private final int length;
+
+        SearchTask(int[] o, int d, int v, int l) {
+            order = o;
+            depth = d;
+            visited = v;
+            length = l;
+        }
+
+        @Override
+        protected void compute() {
+            if (depth >= FORK_DEPTH || depth == k) {
+                ordersEvaluated.add(search(order, depth, visited, length, new int[k]));
+                return;
+            }
+            ordersEvaluated.increment();
+            int last = order[depth - 1];
+            int remainder = spanningTreeBound(last, visited, new int[k]);
+            if (remainder == UNREACHABLE || shouldPrune(order, depth, length + remainder)) {
+                return;
+            }
+            ArrayList<SearchTask> children = new ArrayList<>();
+            for (int next = 1; next < k; next++) {
+                int step = distances[last * k + next];
+                if ((visited & (1 << next)) == 0 && step != UNREACHABLE) {
+                    int[] childOrder = order.clone();
+                    childOrder[depth] = next;
+                    children.add(new SearchTask(childOrder, depth + 1, visited | (1 << next), length + step));
+                }
+            }
+            invokeAll(children);
+        }
+
+        /**
+         * @return the number of partial and complete orders reached
+         */
+        private long search(int[] order, int depth, int visited, int length, int[] scratch) {
+            if (depth == k) {
+                if (!shouldPrune(order, depth, length)) {
+                    offer(order, length);
+                }
+                return 1;
+            }
+            int last = order[depth - 1];
+            int remainder = spanningTreeBound(last, visited, scratch);
+            if (remainder == UNREACHABLE || shouldPrune(order, depth, length + remainder)) {
+                return 1;
+            }
+            long reached = 1;
+            for (int next = 1; next < k; next++) {
+                int step = distances[last * k + next];
+                if ((visited & (1 << next)) == 0 && step != UNREACHABLE) {
+                    order[depth] = next;
+                    reached += search(order, depth + 1, visited | (1 << next), length + step, scratch);
+                }
+            }
+            return reached;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.fnannizz;
+
+import java.util.Arrays;
+
+/**
+ * Union-find over the rooms of a map, joining the two ends of every connection whatever its direction. Rooms in
+ * different components can't reach each other, so a scenario asking for an item in another component than its
+ * starting room can be turned away before any search runs. The converse doesn't hold: one-way connections can
+ * leave a room in the same component but out of reach, which only the searches find out.
+ *
+ * Components are flattened once the map is loaded, so looking one up is a single read, and lookups never write to
+ * the index, so concurrent scenarios can share it. Connections added later join their components as usual. When
+ * the storage already knows each room's component, as a partitioned map does, the union-find runs over those
+ * components (and any rooms added since) rather than over rooms, so it stays small however large the map is.
+ * Removing a connection can't split a component again, so after removals the index may consider too many rooms
+ * connected, but never too few.
+ */
+class ConnectivityIndex {
+
+    /**
+     * Parent of each node, or minus the size of its component for the node at the root. Nodes are rooms, unless
+     * componentStorage is set.
+     */
+    private int[] parent;
+
+    /**
+     * Storage that knows the component of each of its rooms, which are then the nodes of the union-find before
+     * any rooms added later; null if every room is a node of its own.
+     */
+    private final IndexedStorage componentStorage;
+
+    /**
+     * Number of rooms in componentStorage, after which rooms added later are numbered.
+     */
+    private final int numPackedRooms;
+
+    ConnectivityIndex(int numRooms) {
+        parent = new int[numRooms];
+        Arrays.fill(parent, -1);
+        componentStorage = null;
+        numPackedRooms = numRooms;
+    }
+
+    private ConnectivityIndex(IndexedStorage storage, int numRooms) {
+        parent = new int[storage.getComponentCount()];
+        Arrays.fill(parent, -1);
+        componentStorage = storage;
+        numPackedRooms = numRooms;
+    }
+
+    /**
+     * Copy an index, to be updated without affecting the original.
+     */
+    ConnectivityIndex(ConnectivityIndex original) {
+        parent = original.parent.clone();
+        componentStorage = original.componentStorage;
+        numPackedRooms = original.numPackedRooms;
+    }
+
+    /**
+     * Build the index for every connection of a map.
+     */
+    static ConnectivityIndex build(MapStorage storage) {
+        if (storage instanceof IndexedStorage) {
+            return new ConnectivityIndex((IndexedStorage) storage, storage.getRoomCount());
+        }
+        ConnectivityIndex index = new ConnectivityIndex(storage.getRoomCount());
+        for (int room = 0; room < storage.getRoomCount(); room++) {
+            for (int i = 0; i < storage.getDegree(room); i++) {
+                index.union(room, storage.getNeighbor(room, i));
+            }
+        }
+        index.flatten();
+        return index;
+    }
+
+    /**
+     * @return false if there is certainly no path from one room to the other
+     */
+    boolean mayReach(int from, int to) {
+        return find(nodeOf(from)) == find(nodeOf(to));
+    }
+
+    /**
+     * Make room for a new room, in a component of its own.
+     */
+    void addRoom(int room) {
+        int node = nodeOf(room);
+        if (node >= parent.length) {
+            int oldLength = parent.length;
+            parent = Arrays.copyOf(parent, Math.max(16, node * 2));
+            Arrays.fill(parent, oldLength, parent.length, -1);
+        }
+    }
+
+    /**
+     * Join the components of two rooms, hanging the smaller under the larger so that no room is more than
+     * log2(rooms) steps from its root.
+     */
+    void union(int a, int b) {
+        int rootA = find(nodeOf(a));
+        int rootB = find(nodeOf(b));
+        if (rootA == rootB) {
+            return;
+        }
+        if (parent[rootA] > parent[rootB]) {
+            int swap = rootA;
+            rootA = rootB;
+            rootB = swap;
+        }
+        parent[rootA] += parent[rootB];
+        parent[rootB] = rootA;
+    }
+
+    private int nodeOf(int room) {
+        if (componentStorage == null) {
+            return room;
+        }
+        return room < numPackedRooms ? componentStorage.getComponent(room)
+                : componentStorage.getComponentCount() + room - numPackedRooms;
+    }
+
+    private int find(int node) {
+        while (parent[node] >= 0) {
+            node = parent[node];
+        }
+        return node;
+    }
+
+    /**
+     * Point every room straight at its root.
+     */
+    private void flatten() {
+        for (int room = 0; room < parent.length; room++) {
+            if (parent[room] >= 0) {
+                parent[room] = find(room);
+            }
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.fnannizz;
+
+import java.util.HashMap;
+
+/**
+ * Map storage in Java arrays, as packed by MapBuilder or copied out of a compiled map.
+ */
+class HeapMapStorage extends MapStorage {
+
+    /**
+     * Id and display name of each room, by room index.
+     */
+    private final String[] roomIds;
+    private final String[] roomNames;
+    private final HashMap<String, Integer> roomIndex;
+
+    private final int[] adjacencyOffsets;
+    private final int[] adjacentRooms;
+    private final byte[] adjacentDirections;
+    private final int[] adjacentCosts;
+
+    private final int maxCost;
+
+    private final int[] itemOffsets;
+    private final String[] items;
+
+    /**
+     * @param adjCosts null if every connection costs 1
+     */
+    HeapMapStorage(String[] ids, String[] names, HashMap<String, Integer> index,
+                   int[] adjOffsets, int[] adjRooms, byte[] adjDirections, int[] adjCosts,
+                   int[] iOffsets, String[] iNames) {
+        roomIds = ids;
+        roomNames = names;
+        roomIndex = index;
+        adjacencyOffsets = adjOffsets;
+        adjacentRooms = adjRooms;
+        adjacentDirections = adjDirections;
+        adjacentCosts = adjCosts;
+        int highestCost = 1;
+        if (adjCosts != null) {
+            for (int cost : adjCosts) {
+                highestCost = Math.max(highestCost, cost);
+            }
+        }
+        maxCost = highestCost;
+        itemOffsets = iOffsets;
+        items = iNames;
+    }
+
+    @Override
+    int getRoomCount() {
+        return roomIds.length;
+    }
+
+    @Override
+    String getRoomId(int room) {
+        return roomIds[room];
+    }
+
+    @Override
+    String getRoomName(int room) {
+        return roomNames[room];
+    }
+
+    @Override
+    int getRoomIndex(String id) {
+        Integer index = roomIndex.get(id);
+        return index == null ? -1 : index;
+    }
+
+    @Override
+    int getDegree(int room) {
+        return adjacencyOffsets[room + 1] - adjacencyOffsets[room];
+    }
+
+    @Override
+    int getNeighbor(int room, int i) {
+        return adjacentRooms[adjacencyOffsets[room] + i];
+    }
+
+    @Override
+    byte getDirection(int room, int i) {
+        return adjacentDirections[adjacencyOffsets[room] + i];
+    }
+
+    @Override
+    int getCost(int room, int i) {
+        return adjacentCosts == null ? 1 : adjacentCosts[adjacencyOffsets[room] + i];
+    }
+
+    @Override
+    int getMaxCost() {
+        return maxCost;
+    }
+
+    @Override
+    int getItemCount(int room) {
+        return itemOffsets[room + 1] - itemOffsets[room];
+    }
+
+    @Override
+    String getItem(int room, int i) {
+        return items[itemOffsets[room] + i];
+    }
+}
@@ -0,0 +1,89 @@
+package com.fnannizz;
+
+import java.util.Arrays;
+
+/**
+ * Finds the shortest order in which to visit every must-visit node using the Held-Karp dynamic program.
+ *
+ * The start node (index 0) is fixed and the remaining k - 1 nodes are represented as bits of a subset mask.
+ * best[mask * (k - 1) + last] holds the length of the shortest path that starts at the start node, visits
+ * exactly the nodes in mask and ends at last; previous holds the node visited before last on that path, so
+ * the optimal order can be walked back once the table is full. This takes O(2^k * k^2) time and O(2^k * k)
+ * memory, against O(k!) time for trying every permutation.
+ */
+class HeldKarpSolver {
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * @param distances k * k row-major matrix of shortest distances between must-visit nodes,
+     *                  Integer.MAX_VALUE where there is no path
+     * @param k number of must-visit nodes, including the start node
+     * @return the optimal visit order, with length Integer.MAX_VALUE if some node can't be reached
+     */
+    static VisitOrder findBestOrder(int[] distances, int k) {
+        int numItems = k - 1;
+        if (numItems == 0) {
+            return new VisitOrder(new int[] { 0 }, 0);
+        }
+        if (numItems > 30) {
+            throw new IllegalArgumentException("Held-Karp can't order " + numItems + " item rooms.");
+        }
+
+        int numSubsets = 1 << numItems;
+        int[] best = new int[numSubsets * numItems];
+        byte[] previous = new byte[numSubsets * numItems];
+        Arrays.fill(best, UNREACHABLE);
+
+        // Node i of the must-visit list is bit i - 1 of the mask.
+        for (int last = 0; last < numItems; last++) {
+            best[(1 << last) * numItems + last] = distances[last + 1];
+            previous[(1 << last) * numItems + last] = -1;
+        }
+
+        long extensions = 0;
+        for (int mask = 1; mask < numSubsets; mask++) {
+            for (int last = 0; last < numItems; last++) {
+                int length = best[mask * numItems + last];
+                if (length == UNREACHABLE) {
+                    continue;
+                }
+                int row = (last + 1) * k;
+                for (int next = 0; next < numItems; next++) {
+                    if ((mask & (1 << next)) != 0 || distances[row + next + 1] == UNREACHABLE) {
+                        continue;
+                    }
+                    int extended = length + distances[row + next + 1];
+                    extensions++;
+                    int slot = (mask | (1 << next)) * numItems + next;
+                    if (extended < best[slot]) {
+                        best[slot] = extended;
+                        previous[slot] = (byte) last;
+                    }
+                }
+            }
+        }
+
+        int fullMask = numSubsets - 1;
+        int bestLast = 0;
+        for (int last = 1; last < numItems; last++) {
+            if (best[fullMask * numItems + last] < best[fullMask * numItems + bestLast]) {
+                bestLast = last;
+            }
+        }
+        int bestLength = best[fullMask * numItems + bestLast];
+        if (bestLength == UNREACHABLE) {
+            return new VisitOrder(null, UNREACHABLE, true, extensions);
+        }
+
+        int[] order = new int[k];
+        int mask = fullMask;
+        int last = bestLast;
+        for (int position = k - 1; position > 0; position--) {
+            order[position] = last + 1;
+            int before = previous[mask * numItems + last];
+            mask &= ~(1 << last);
+            last = before;
+        }
+        return new VisitOrder(order, bestLength, true, extensions);
+    }
+}
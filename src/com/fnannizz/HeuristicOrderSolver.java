@@ -0,0 +1,284 @@
+package com.fnannizz;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Random;
+
+/**
+ * Finds a good, but not necessarily optimal, order in which to visit the must-visit nodes within a fixed time
+ * budget. Used for scenarios with too many items for any of the exact solvers.
+ *
+ * A nearest-neighbour order from the start node is improved by local search until no 2-opt move (reversing a
+ * run of nodes) or Or-opt move (moving a run of up to three nodes elsewhere) shortens it. Until the deadline,
+ * or on small instances until every double bridge of it has been tried, the best order found is then repeatedly
+ * perturbed with a random double-bridge move and locally optimised again, keeping any improvement. With two nodes
+ * or fewer after the start, both orders are simply priced. The answer is only ever as good as the time allowed, so how many rounds run,
+ * and so which of several equally good orders is returned, depends on the speed of the machine.
+ *
+ * Missing paths are priced at a large penalty rather than skipped, so the search can still escape from an
+ * order that uses one. Costs are summed in longs so the penalty can't overflow.
+ */
+class HeuristicOrderSolver {
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+    private static final long PENALTY = 1L << 40;
+    private static final int MAX_OR_OPT_LENGTH = 3;
+
+    /**
+     * Up to this many nodes, the double bridges tried on the best order are remembered, so that the search can stop
+     * once every one of them has been tried without improving it.
+     */
+    private static final int MAX_TRACKED_NODES = 64;
+
+    private final int[] distances;
+    private final int k;
+    private final long deadline;
+
+    // Prefix sums of the current order, walked forwards and backwards, so 2-opt moves can be priced in O(1).
+    private final long[] forward;
+    private final long[] backward;
+
+    // 2-opt and Or-opt moves priced, each of which is a candidate order.
+    private long movesEvaluated;
+
+    private HeuristicOrderSolver(int[] d, int numNodes, long deadlineNanos) {
+        distances = d;
+        k = numNodes;
+        deadline = deadlineNanos;
+        forward = new long[k];
+        backward = new long[k];
+    }
+
+    /**
+     * @param distances k * k row-major matrix of shortest distances between must-visit nodes,
+     *                  Integer.MAX_VALUE where there is no path
+     * @param k number of must-visit nodes, including the start node
+     * @param timeBudgetMillis how long to keep improving the order
+     * @return the best visit order found, with length Integer.MAX_VALUE if it still needs a missing path
+     */
+    static VisitOrder findBestOrder(int[] distances, int k, long timeBudgetMillis) {
+        HeuristicOrderSolver solver = new HeuristicOrderSolver(distances, k, System.nanoTime() + timeBudgetMillis * 1_000_000L);
+        if (k <= 3) {
+            return solver.smallestOrder();
+        }
+
+        int[] best = solver.nearestNeighborOrder();
+        solver.improve(best);
+        long bestLength = solver.length(best);
+
+        // Cuts go after positions 2 to k - 1, so four nodes can't be double-bridged. On small instances every
+        // double bridge of the best order may have been tried without finding a better one, and since the local
+        // search is deterministic trying them again can't either.
+        Random random = new Random(k);
+        int[] candidate = new int[k];
+        long numBridges = (long) (k - 2) * (k - 3) * (k - 4) / 6;
+        BitSet tried = k <= MAX_TRACKED_NODES ? new BitSet(k * k * k) : null;
+        long numTried = 0;
+        while (k > 4 && !solver.pastDeadline() && (tried == null || numTried < numBridges)) {
+            int[] cuts = solver.randomCuts(random);
+            if (cuts == null) {
+                continue;
+            }
+            if (tried != null) {
+                int bridge = (cuts[0] * k + cuts[1]) * k + cuts[2];
+                if (tried.get(bridge)) {
+                    continue;
+                }
+                tried.set(bridge);
+                numTried++;
+            }
+            System.arraycopy(best, 0, candidate, 0, k);
+            solver.doubleBridge(candidate, cuts);
+            solver.improve(candidate);
+            long candidateLength = solver.length(candidate);
+            if (candidateLength < bestLength) {
+                System.arraycopy(candidate, 0, best, 0, k);
+                bestLength = candidateLength;
+                if (tried != null) {
+                    tried.clear();
+                    numTried = 0;
+                }
+            }
+        }
+
+        if (bestLength >= PENALTY) {
+            return new VisitOrder(null, UNREACHABLE, false, solver.movesEvaluated);
+        }
+        return new VisitOrder(best, (int) bestLength, false, solver.movesEvaluated);
+    }
+
+    /**
+     * With at most two nodes after the start there are at most two orders, so price both and return the shorter,
+     * which is optimal.
+     */
+    private VisitOrder smallestOrder() {
+        int[] best = new int[k];
+        for (int i = 0; i < k; i++) {
+            best[i] = i;
+        }
+        long bestLength = length(best);
+        movesEvaluated++;
+        if (k == 3) {
+            int[] swapped = { 0, 2, 1 };
+            movesEvaluated++;
+            if (length(swapped) < bestLength) {
+                best = swapped;
+                bestLength = length(swapped);
+            }
+        }
+        if (bestLength >= PENALTY) {
+            return new VisitOrder(null, UNREACHABLE, false, movesEvaluated);
+        }
+        return new VisitOrder(best, (int) bestLength, true, movesEvaluated);
+    }
+
+    private long cost(int from, int to) {
+        int distance = distances[from * k + to];
+        return distance == UNREACHABLE ? PENALTY : distance;
+    }
+
+    private boolean pastDeadline() {
+        return System.nanoTime() - deadline > 0;
+    }
+
+    private long length(int[] order) {
+        long length = 0;
+        for (int i = 1; i < k; i++) {
+            length += cost(order[i - 1], order[i]);
+        }
+        return length;
+    }
+
+    private int[] nearestNeighborOrder() {
+        int[] order = new int[k];
+        boolean[] visited = new boolean[k];
+        visited[0] = true;
+        for (int position = 1; position < k; position++) {
+            int last = order[position - 1];
+            int nearest = -1;
+            for (int next = 1; next < k; next++) {
+                if (!visited[next] && (nearest == -1 || cost(last, next) < cost(last, nearest))) {
+                    nearest = next;
+                }
+            }
+            order[position] = nearest;
+            visited[nearest] = true;
+        }
+        return order;
+    }
+
+    /**
+     * Apply improving moves until the order is a local optimum or time runs out.
+     */
+    private void improve(int[] order) {
+        boolean improved = true;
+        while (improved && !pastDeadline()) {
+            improved = twoOpt(order) || orOpt(order);
+        }
+    }
+
+    /**
+     * Apply the first improving reversal of order[i .. j], if any. The start node never moves, and the end of the
+     * path is free, so reversing a suffix only changes the edge into it.
+     */
+    private boolean twoOpt(int[] order) {
+        for (int i = 1; i < k; i++) {
+            forward[i] = forward[i - 1] + cost(order[i - 1], order[i]);
+            backward[i] = backward[i - 1] + cost(order[i], order[i - 1]);
+        }
+        for (int i = 1; i < k - 1; i++) {
+            for (int j = i + 1; j < k; j++) {
+                long before = cost(order[i - 1], order[i]) + forward[j] - forward[i];
+                long after = cost(order[i - 1], order[j]) + backward[j] - backward[i];
+                movesEvaluated++;
+                if (j < k - 1) {
+                    before += cost(order[j], order[j + 1]);
+                    after += cost(order[i], order[j + 1]);
+                }
+                if (after < before) {
+                    reverse(order, i, j);
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Apply the first improving move of a run of up to MAX_OR_OPT_LENGTH nodes to just after another node, if any.
+     */
+    private boolean orOpt(int[] order) {
+        for (int runLength = 1; runLength <= MAX_OR_OPT_LENGTH; runLength++) {
+            for (int first = 1; first + runLength <= k; first++) {
+                int last = first + runLength - 1;
+                boolean hasNext = last + 1 < k;
+                long removed = cost(order[first - 1], order[first]);
+                if (hasNext) {
+                    removed += cost(order[last], order[last + 1]) - cost(order[first - 1], order[last + 1]);
+                }
+                for (int after = 0; after < k; after++) {
+                    if (after >= first - 1 && after <= last) {
+                        continue;
+                    }
+                    long inserted = cost(order[after], order[first]);
+                    movesEvaluated++;
+                    if (after + 1 < k) {
+                        inserted += cost(order[last], order[after + 1]) - cost(order[after], order[after + 1]);
+                    }
+                    if (inserted < removed) {
+                        moveRun(order, first, runLength, after);
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    private void reverse(int[] order, int i, int j) {
+        for (; i < j; i++, j--) {
+            int swap = order[i];
+            order[i] = order[j];
+            order[j] = swap;
+        }
+    }
+
+    private void moveRun(int[] order, int first, int runLength, int after) {
+        int[] run = new int[runLength];
+        System.arraycopy(order, first, run, 0, runLength);
+        if (after < first) {
+            System.arraycopy(order, after + 1, order, after + 1 + runLength, first - after - 1);
+            System.arraycopy(run, 0, order, after + 1, runLength);
+        }
+        else {
+            System.arraycopy(order, first + runLength, order, first, after - first - runLength + 1);
+            System.arraycopy(run, 0, order, after - runLength + 1, runLength);
+        }
+    }
+
+    /**
+     * @return three distinct cut positions from 2 to k - 1 in increasing order, or null if the ones drawn collide
+     */
+    private int[] randomCuts(Random random) {
+        int[] cuts = { 2 + random.nextInt(k - 2), 2 + random.nextInt(k - 2), 2 + random.nextInt(k - 2) };
+        Arrays.sort(cuts);
+        if (cuts[0] == cuts[1] || cuts[1] == cuts[2]) {
+            return null;
+        }
+        return cuts;
+    }
+
+    /**
+     * Cut the path into four runs A B C D before each of the cut positions and reconnect them as A C B D, a jump that
+     * 2-opt and Or-opt can't undo in one move.
+     */
+    private void doubleBridge(int[] order, int[] cuts) {
+        int[] copy = order.clone();
+        int position = cuts[0];
+        for (int i = cuts[1]; i < cuts[2]; i++) {
+            order[position++] = copy[i];
+        }
+        for (int i = cuts[0]; i < cuts[1]; i++) {
+            order[position++] = copy[i];
+        }
+    }
+}
@@ -0,0 +1,486 @@
+package com.fnannizz;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/**
+ * A two-level index of a MapData for long-distance queries, in the manner of HPA*:
+ *
+ * 1) Rooms are grouped into clusters of up to clusterSize rooms, each grown breadth-first over connections in
+ *    either direction from the first room not yet in a cluster.
+ * 2) A room with a connection to or from another cluster is an entrance. The abstract graph has one node per
+ *    entrance, an edge from each entrance to every other entrance of its cluster weighted by the shortest distance
+ *    between them without leaving the cluster, and an edge for every connection between clusters.
+ *
+ * A query adds its two rooms to the abstract graph with a search inside each one's cluster and then runs
+ * Dijkstra's algorithm over entrances only. Every shortest path is a run of stretches inside one cluster joined by
+ * connections between clusters, so the distances are exact, not approximate. Only the segments a solution actually
+ * uses are refined back into rooms, one search inside a cluster per abstract edge.
+ *
+ * Building the index runs one search inside its cluster from every entrance, which is worth saving: loadOrBuild
+ * keeps it in a file next to the map through SavedIndex.
+ */
+class HierarchicalMap {
+    static final int MAGIC = 0x41504848;    // the bytes "HHPA" read as a little-endian int
+    static final int VERSION = 2;
+    static final int DEFAULT_CLUSTER_SIZE = 64;
+
+    /**
+     * Added to the map file's path to name the file its index is saved in.
+     */
+    static final String FILE_SUFFIX = ".hpa";
+
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final MapData mapData;
+    private final int clusterSize;
+    private final int[] clusterOfRoom;
+
+    // The rooms of each cluster, and where each room is in its cluster's list.
+    private final int[] clusterOffsets;
+    private final int[] clusterRooms;
+    private final int[] positionInCluster;
+
+    // The entrances of each cluster, as entrance numbers.
+    private final int[] clusterEntranceOffsets;
+    private final int[] clusterEntrances;
+    private final int[] entranceRooms;
+    private final int[] entranceOfRoom;
+
+    // Abstract edges in CSR form, by entrance number.
+    private final int[] edgeOffsets;
+    private final int[] edgeTargets;
+    private final int[] edgeWeights;
+
+    /**
+     * One end of a query: the shortest distances from the room to the rest of its cluster, and from the rest of its
+     * cluster to the room, without leaving the cluster.
+     */
+    class Endpoint {
+        private final int room;
+        private final int cluster;
+        private final ClusterSearch outbound;
+        private final ClusterSearch inbound;
+
+        private Endpoint(int r) {
+            room = r;
+            cluster = clusterOfRoom[r];
+            outbound = searchCluster(r, false);
+            inbound = searchCluster(r, true);
+        }
+    }
+
+    /**
+     * Shortest distances over the abstract graph from one endpoint to a set of others, with enough to refine the
+     * paths.
+     */
+    class Search {
+        private final Endpoint source;
+        private final Endpoint[] targets;
+        private final int[] distance;
+        private final int[] previousEntrance;
+        private final int[] targetDistance;
+        private final int[] targetEntrance;
+        private int nodesExpanded;
+
+        private Search(Endpoint s, Endpoint[] t) {
+            source = s;
+            targets = t;
+            distance = new int[entranceRooms.length];
+            previousEntrance = new int[entranceRooms.length];
+            targetDistance = new int[t.length];
+            targetEntrance = new int[t.length];
+            Arrays.fill(distance, UNREACHABLE);
+            Arrays.fill(previousEntrance, -1);
+            Arrays.fill(targetDistance, UNREACHABLE);
+            Arrays.fill(targetEntrance, -1);
+        }
+
+        int getNodesExpanded() {
+            return nodesExpanded;
+        }
+    }
+
+    /**
+     * Dijkstra's algorithm inside one cluster, following connections backwards if inbound. previous holds the
+     * position in the cluster of the room before each room, or after it when inbound, -1 for the start.
+     */
+    private static class ClusterSearch {
+        private final int[] distance;
+        private final int[] previous;
+
+        ClusterSearch(int size) {
+            distance = new int[size];
+            previous = new int[size];
+            Arrays.fill(distance, UNREACHABLE);
+            Arrays.fill(previous, -1);
+        }
+    }
+
+    HierarchicalMap(MapData map) {
+        this(map, DEFAULT_CLUSTER_SIZE);
+    }
+
+    HierarchicalMap(MapData map, int roomsPerCluster) {
+        mapData = map;
+        clusterSize = Math.max(1, roomsPerCluster);
+        int numRooms = mapData.getRoomCount();
+        clusterOfRoom = new int[numRooms];
+        Arrays.fill(clusterOfRoom, -1);
+        int numClusters = 0;
+        IntArrayList queue = new IntArrayList();
+        for (int root = 0; root < numRooms; root++) {
+            if (clusterOfRoom[root] != -1) {
+                continue;
+            }
+            queue.clear();
+            queue.add(root);
+            clusterOfRoom[root] = numClusters;
+            for (int head = 0; head < queue.size() && queue.size() < clusterSize; head++) {
+                int room = queue.get(head);
+                int degree = mapData.getDegree(room);
+                for (int i = 0; i < degree + mapData.getIncomingDegree(room) && queue.size() < clusterSize; i++) {
+                    int next = i < degree ? mapData.getNeighbor(room, i) : mapData.getIncomingNeighbor(room, i - degree);
+                    if (clusterOfRoom[next] == -1) {
+                        clusterOfRoom[next] = numClusters;
+                        queue.add(next);
+                    }
+                }
+            }
+            numClusters++;
+        }
+
+        clusterOffsets = new int[numClusters + 1];
+        clusterRooms = new int[numRooms];
+        positionInCluster = new int[numRooms];
+        entranceOfRoom = new int[numRooms];
+        indexClusters();
+
+        IntArrayList entrances = new IntArrayList();
+        for (int room = 0; room < numRooms; room++) {
+            if (isEntrance(room)) {
+                entrances.add(room);
+            }
+        }
+        entranceRooms = entrances.toArray();
+        clusterEntranceOffsets = new int[numClusters + 1];
+        clusterEntrances = new int[entranceRooms.length];
+        indexEntrances();
+
+        IntArrayList offsets = new IntArrayList();
+        IntArrayList targets = new IntArrayList();
+        IntArrayList weights = new IntArrayList();
+        offsets.add(0);
+        for (int entrance = 0; entrance < entranceRooms.length; entrance++) {
+            int room = entranceRooms[entrance];
+            int cluster = clusterOfRoom[room];
+            ClusterSearch search = searchCluster(room, false);
+            for (int i = clusterEntranceOffsets[cluster]; i < clusterEntranceOffsets[cluster + 1]; i++) {
+                int other = clusterEntrances[i];
+                int distance = search.distance[positionInCluster[entranceRooms[other]]];
+                if (other != entrance && distance != UNREACHABLE) {
+                    targets.add(other);
+                    weights.add(distance);
+                }
+            }
+            for (int i = 0; i < mapData.getDegree(room); i++) {
+                int neighbor = mapData.getNeighbor(room, i);
+                if (clusterOfRoom[neighbor] != cluster) {
+                    targets.add(entranceOfRoom[neighbor]);
+                    weights.add(mapData.getCost(room, i));
+                }
+            }
+            offsets.add(targets.size());
+        }
+        edgeOffsets = offsets.toArray();
+        edgeTargets = targets.toArray();
+        edgeWeights = weights.toArray();
+    }
+
+    private HierarchicalMap(MapData map, int roomsPerCluster, int[] clusters, int numClusters, int[] entrances,
+                            int[] offsets, int[] targets, int[] weights) {
+        mapData = map;
+        clusterSize = roomsPerCluster;
+        clusterOfRoom = clusters;
+        clusterOffsets = new int[numClusters + 1];
+        clusterRooms = new int[clusters.length];
+        positionInCluster = new int[clusters.length];
+        entranceOfRoom = new int[clusters.length];
+        indexClusters();
+        entranceRooms = entrances;
+        clusterEntranceOffsets = new int[numClusters + 1];
+        clusterEntrances = new int[entrances.length];
+        indexEntrances();
+        edgeOffsets = offsets;
+        edgeTargets = targets;
+        edgeWeights = weights;
+    }
+
+    /**
+     * Fill clusterOffsets, clusterRooms and positionInCluster from clusterOfRoom, with a counting sort.
+     */
+    private void indexClusters() {
+        int numClusters = clusterOffsets.length - 1;
+        for (int cluster : clusterOfRoom) {
+            clusterOffsets[cluster + 1]++;
+        }
+        for (int cluster = 0; cluster < numClusters; cluster++) {
+            clusterOffsets[cluster + 1] += clusterOffsets[cluster];
+        }
+        int[] filled = Arrays.copyOf(clusterOffsets, numClusters);
+        for (int room = 0; room < clusterOfRoom.length; room++) {
+            int cluster = clusterOfRoom[room];
+            positionInCluster[room] = filled[cluster] - clusterOffsets[cluster];
+            clusterRooms[filled[cluster]++] = room;
+        }
+    }
+
+    /**
+     * Fill entranceOfRoom, clusterEntranceOffsets and clusterEntrances from entranceRooms.
+     */
+    private void indexEntrances() {
+        int numClusters = clusterEntranceOffsets.length - 1;
+        Arrays.fill(entranceOfRoom, -1);
+        for (int entrance = 0; entrance < entranceRooms.length; entrance++) {
+            entranceOfRoom[entranceRooms[entrance]] = entrance;
+            clusterEntranceOffsets[clusterOfRoom[entranceRooms[entrance]] + 1]++;
+        }
+        for (int cluster = 0; cluster < numClusters; cluster++) {
+            clusterEntranceOffsets[cluster + 1] += clusterEntranceOffsets[cluster];
+        }
+        int[] filled = Arrays.copyOf(clusterEntranceOffsets, numClusters);
+        for (int entrance = 0; entrance < entranceRooms.length; entrance++) {
+            clusterEntrances[filled[clusterOfRoom[entranceRooms[entrance]]]++] = entrance;
+        }
+    }
+
+    private boolean isEntrance(int room) {
+        for (int i = 0; i < mapData.getDegree(room); i++) {
+            if (clusterOfRoom[mapData.getNeighbor(room, i)] != clusterOfRoom[room]) {
+                return true;
+            }
+        }
+        for (int i = 0; i < mapData.getIncomingDegree(room); i++) {
+            if (clusterOfRoom[mapData.getIncomingNeighbor(room, i)] != clusterOfRoom[room]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int getClusterCount() {
+        return clusterOffsets.length - 1;
+    }
+
+    int getEntranceCount() {
+        return entranceRooms.length;
+    }
+
+    int getClusterSize() {
+        return clusterSize;
+    }
+
+    private ClusterSearch searchCluster(int start, boolean inbound) {
+        int cluster = clusterOfRoom[start];
+        int first = clusterOffsets[cluster];
+        ClusterSearch search = new ClusterSearch(clusterOffsets[cluster + 1] - first);
+        PriorityQueue<PairIntInteger> unvisitedSet = new PriorityQueue<>();
+        search.distance[positionInCluster[start]] = 0;
+        unvisitedSet.add(new PairIntInteger(positionInCluster[start], 0));
+        while (unvisitedSet.size() > 0) {
+            PairIntInteger current = unvisitedSet.remove();
+            int position = current.getIndex();
+            if (current.getInteger() > search.distance[position]) {
+                continue;
+            }
+            int room = clusterRooms[first + position];
+            int degree = inbound ? mapData.getIncomingDegree(room) : mapData.getDegree(room);
+            for (int i = 0; i < degree; i++) {
+                int next = inbound ? mapData.getIncomingNeighbor(room, i) : mapData.getNeighbor(room, i);
+                if (clusterOfRoom[next] != cluster) {
+                    continue;
+                }
+                int cost = inbound ? mapData.getCostTo(next, room) : mapData.getCost(room, i);
+                int alternateDistance = search.distance[position] + cost;
+                if (alternateDistance < search.distance[positionInCluster[next]]) {
+                    search.distance[positionInCluster[next]] = alternateDistance;
+                    search.previous[positionInCluster[next]] = position;
+                    unvisitedSet.add(new PairIntInteger(positionInCluster[next], alternateDistance));
+                }
+            }
+        }
+        return search;
+    }
+
+    /**
+     * Prepare a room to be the source or a target of searches. Endpoints don't change, so one can be shared by any
+     * number of searches and threads.
+     */
+    Endpoint endpoint(int room) {
+        return new Endpoint(room);
+    }
+
+    /**
+     * Dijkstra's algorithm over the abstract graph from source until the distance to every target is settled.
+     */
+    Search searchFrom(Endpoint source, Endpoint[] targets) {
+        Search search = new Search(source, targets);
+        HashMap<Integer, IntArrayList> targetsInCluster = new HashMap<>();
+        for (int target = 0; target < targets.length; target++) {
+            targetsInCluster.computeIfAbsent(targets[target].cluster, cluster -> new IntArrayList()).add(target);
+            if (targets[target].cluster == source.cluster) {
+                search.targetDistance[target] = source.outbound.distance[positionInCluster[targets[target].room]];
+            }
+        }
+
+        PriorityQueue<PairIntInteger> unvisitedSet = new PriorityQueue<>();
+        for (int i = clusterEntranceOffsets[source.cluster]; i < clusterEntranceOffsets[source.cluster + 1]; i++) {
+            int entrance = clusterEntrances[i];
+            int distance = source.outbound.distance[positionInCluster[entranceRooms[entrance]]];
+            if (distance != UNREACHABLE) {
+                search.distance[entrance] = distance;
+                unvisitedSet.add(new PairIntInteger(entrance, distance));
+            }
+        }
+
+        while (unvisitedSet.size() > 0) {
+            PairIntInteger current = unvisitedSet.remove();
+            int entrance = current.getIndex();
+            if (current.getInteger() > search.distance[entrance]) {
+                continue;
+            }
+            if (current.getInteger() >= longestTargetDistance(search)) {
+                break;
+            }
+            search.nodesExpanded++;
+            IntArrayList reachedTargets = targetsInCluster.get(clusterOfRoom[entranceRooms[entrance]]);
+            for (int i = 0; reachedTargets != null && i < reachedTargets.size(); i++) {
+                int target = reachedTargets.get(i);
+                int toTarget = targets[target].inbound.distance[positionInCluster[entranceRooms[entrance]]];
+                if (toTarget != UNREACHABLE && search.distance[entrance] + toTarget < search.targetDistance[target]) {
+                    search.targetDistance[target] = search.distance[entrance] + toTarget;
+                    search.targetEntrance[target] = entrance;
+                }
+            }
+            for (int edge = edgeOffsets[entrance]; edge < edgeOffsets[entrance + 1]; edge++) {
+                int next = edgeTargets[edge];
+                int alternateDistance = search.distance[entrance] + edgeWeights[edge];
+                if (alternateDistance < search.distance[next]) {
+                    search.distance[next] = alternateDistance;
+                    search.previousEntrance[next] = entrance;
+                    unvisitedSet.add(new PairIntInteger(next, alternateDistance));
+                }
+            }
+        }
+        return search;
+    }
+
+    private static int longestTargetDistance(Search search) {
+        int longest = 0;
+        for (int distance : search.targetDistance) {
+            longest = Math.max(longest, distance);
+        }
+        return longest;
+    }
+
+    /**
+     * @return the distance from the search's source to one of its targets, Integer.MAX_VALUE if it can't be reached
+     */
+    int distanceTo(Search search, int target) {
+        return search.targetDistance[target];
+    }
+
+    /**
+     * @return the rooms along the shortest path from the search's source to one of its targets, both ends included,
+     * or null if there is no path
+     */
+    int[] pathTo(Search search, int target) {
+        if (search.targetDistance[target] == UNREACHABLE) {
+            return null;
+        }
+        Endpoint source = search.source;
+        Endpoint end = search.targets[target];
+        IntArrayList path = new IntArrayList();
+        if (search.targetEntrance[target] == -1) {
+            appendOutbound(path, source.outbound, source.cluster, end.room);
+            return path.toArray();
+        }
+
+        IntArrayList entrances = new IntArrayList();
+        for (int entrance = search.targetEntrance[target]; entrance != -1; entrance = search.previousEntrance[entrance]) {
+            entrances.add(entrance);
+        }
+        int room = entranceRooms[entrances.get(entrances.size() - 1)];
+        appendOutbound(path, source.outbound, source.cluster, room);
+        for (int i = entrances.size() - 2; i >= 0; i--) {
+            int next = entranceRooms[entrances.get(i)];
+            if (clusterOfRoom[next] == clusterOfRoom[room]) {
+                IntArrayList stretch = new IntArrayList();
+                appendOutbound(stretch, searchCluster(room, false), clusterOfRoom[room], next);
+                for (int j = 1; j < stretch.size(); j++) {
+                    path.add(stretch.get(j));
+                }
+            }
+            else {
+                path.add(next);
+            }
+            room = next;
+        }
+        int first = clusterOffsets[end.cluster];
+        for (int position = end.inbound.previous[positionInCluster[room]]; position != -1; position = end.inbound.previous[position]) {
+            path.add(clusterRooms[first + position]);
+        }
+        return path.toArray();
+    }
+
+    /**
+     * Append the rooms from the start of an outbound search to end, both included.
+     */
+    private void appendOutbound(IntArrayList path, ClusterSearch search, int cluster, int end) {
+        int first = clusterOffsets[cluster];
+        IntArrayList reversed = new IntArrayList();
+        for (int position = positionInCluster[end]; position != -1; position = search.previous[position]) {
+            reversed.add(clusterRooms[first + position]);
+        }
+        for (int i = reversed.size() - 1; i >= 0; i--) {
+            path.add(reversed.get(i));
+        }
+    }
+
+    /**
+     * Read the index of mapData saved at indexFilePath, or build it and try to save it there (see
+     * SavedIndex.loadOrBuild).
+     */
+    static HierarchicalMap loadOrBuild(MapData mapData, String indexFilePath) {
+        return SavedIndex.loadOrBuild(indexFilePath, path -> read(mapData, path), () -> new HierarchicalMap(mapData),
+                HierarchicalMap::write);
+    }
+
+    /**
+     * Save the index. After the header SavedIndex writes come the cluster size, cluster count, entrance count and
+     * edge count, then the cluster of every room, the room of every entrance, and the abstract edges as
+     * entranceCount + 1 offsets, edgeCount targets and edgeCount weights.
+     */
+    void write(String indexFilePath) throws IOException {
+        SavedIndex.write(indexFilePath, MAGIC, VERSION, mapData,
+                new int[] { clusterSize, getClusterCount(), entranceRooms.length, edgeTargets.length },
+                clusterOfRoom, entranceRooms, edgeOffsets, edgeTargets, edgeWeights);
+    }
+
+    /**
+     * @return the index saved at indexFilePath, or null if there is none for this map (see SavedIndex.read)
+     */
+    static HierarchicalMap read(MapData mapData, String indexFilePath) throws IOException {
+        return SavedIndex.read(indexFilePath, MAGIC, VERSION, mapData, buffer -> {
+            int roomsPerCluster = buffer.getInt();
+            int numClusters = buffer.getInt();
+            int numEntrances = buffer.getInt();
+            int numEdges = buffer.getInt();
+            return new HierarchicalMap(mapData, roomsPerCluster, BinaryMapFormat.readInts(buffer, mapData.getRoomCount()),
+                    numClusters, BinaryMapFormat.readInts(buffer, numEntrances), BinaryMapFormat.readInts(buffer, numEntrances + 1),
+                    BinaryMapFormat.readInts(buffer, numEdges), BinaryMapFormat.readInts(buffer, numEdges));
+        });
+    }
+}
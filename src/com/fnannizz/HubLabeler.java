@@ -0,0 +1,105 @@
+package com.fnannizz;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Builds hub labels in the background for a map and every version edited from it (see MapVersions), so that a
+ * solve never waits for labeling. The versions share one daemon thread, which labels one map at a time, and at
+ * most one more build waits its turn.
+ *
+ * Versions are ordered by the number of edits made to their lineage. Only the newest version asked for is worth
+ * labeling, so a build for an older version is turned away, a waiting build is superseded by a newer one, and
+ * labels that finish after a newer version was asked for are dropped. Labels that are kept are saved with
+ * SavedIndex if the map was loaded from a file, so that the next load reads them instead.
+ */
+class HubLabeler {
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * Where to save the labels, or null to keep them in memory only.
+     */
+    private volatile String labelFilePath;
+
+    /**
+     * Edits made to the newest version asked for. Guarded by this.
+     */
+    private long newestEdits;
+
+    HubLabeler() {
+        // The thread goes away when there is nothing to label, so idle maps don't hold on to one.
+        executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<>(1), task -> {
+            Thread labeler = new Thread(task, "hub-labeling");
+            labeler.setDaemon(true);
+            return labeler;
+        }, HubLabeler::supersede);
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    void setLabelFilePath(String path) {
+        labelFilePath = path;
+    }
+
+    /**
+     * @return false if a version with more edits has been asked for, or the labeler was closed
+     */
+    synchronized boolean isCurrent(long edits) {
+        return edits >= newestEdits && !executor.isShutdown();
+    }
+
+    /**
+     * Label a version of the map in the background.
+     * @param map a version of the map that won't change while it is labeled
+     * @param edits the number of edits made to the map's lineage up to this version
+     * @param onLabeled given the labels once they are built, unless they were dropped
+     * @return the build, or null if it was turned away
+     */
+    synchronized Future<?> label(MapData map, long edits, Consumer<HubLabels> onLabeled) {
+        if (!isCurrent(edits)) {
+            return null;
+        }
+        newestEdits = edits;
+        return executor.submit(() -> {
+            if (!isCurrent(edits)) {
+                return;
+            }
+            HubLabels labels = new HubLabels(map);
+            if (!isCurrent(edits)) {
+                return;
+            }
+            String path = labelFilePath;
+            if (path != null) {
+                SavedIndex.save(labels, path, HubLabels::write);
+            }
+            onLabeled.accept(labels);
+        });
+    }
+
+    /**
+     * Stop labeling: the waiting build is cancelled, and the running one is dropped when it finishes.
+     */
+    void close() {
+        for (Runnable waiting : executor.shutdownNow()) {
+            ((Future<?>) waiting).cancel(false);
+        }
+    }
+
+    /**
+     * Called with a build that doesn't fit in the queue, which then holds an older one: cancel that one and queue
+     * this one in its place. Calls to label are serialized, so the queue has room again by the time this executes.
+     */
+    private static void supersede(Runnable build, ThreadPoolExecutor executor) {
+        if (executor.isShutdown()) {
+            ((Future<?>) build).cancel(false);
+            return;
+        }
+        Runnable waiting = executor.getQueue().poll();
+        if (waiting != null) {
+            ((Future<?>) waiting).cancel(false);
+        }
+        executor.execute(build);
+    }
+}
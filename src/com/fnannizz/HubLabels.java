@@ -0,0 +1,250 @@
+package com.fnannizz;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * A distance oracle for a MapData, built once by pruned landmark labeling. Every room gets an outgoing label, a
+ * list of (hub, distance from the room to the hub), and an incoming label, a list of (hub, distance from the hub to
+ * the room), such that every shortest path passes through a hub the labels of its two ends share. The distance
+ * between two rooms is then the smallest sum over their common hubs, found by merging two short sorted lists
+ * without touching the graph.
+ *
+ * Rooms become hubs one at a time, busiest first (by number of connections in and out). Each runs Dijkstra's
+ * algorithm forwards and backwards, adding itself to the labels of the rooms it reaches, but stops expanding at any
+ * room the labels so far already give the right distance for, which keeps both the labels and the searches small.
+ * Labels are kept sorted by hub rank, the order the hubs were processed in.
+ *
+ * Labeling a large map takes a while, so the labels are saved next to the map file with SavedIndex.
+ */
+class HubLabels {
+    static final int MAGIC = 0x42554848;    // the bytes "HHUB" read as a little-endian int
+    static final int VERSION = 1;
+
+    static final String FILE_SUFFIX = ".hub";   // map.xml's labels are saved as map.xml.hub
+
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final MapData mapData;
+
+    // Labels in CSR form, by room: hub ranks in increasing order and the matching distances.
+    private final int[] outOffsets;
+    private final int[] outHubs;
+    private final int[] outDistances;
+    private final int[] inOffsets;
+    private final int[] inHubs;
+    private final int[] inDistances;
+
+    HubLabels(MapData map) {
+        this(map, true);
+    }
+
+    /**
+     * @param prune false to label every room a hub reaches, not just the ones no earlier hub covers. The labels
+     *              are then much larger, but give the same distances; only useful for testing the pruning.
+     */
+    HubLabels(MapData map, boolean prune) {
+        mapData = map;
+        int numRooms = mapData.getRoomCount();
+        Integer[] order = new Integer[numRooms];
+        for (int room = 0; room < numRooms; room++) {
+            order[room] = room;
+        }
+        Arrays.sort(order, (a, b) -> Integer.compare(mapData.getDegree(b) + mapData.getIncomingDegree(b),
+                mapData.getDegree(a) + mapData.getIncomingDegree(a)));
+
+        IntArrayList[] outHubLists = new IntArrayList[numRooms];
+        IntArrayList[] outDistanceLists = new IntArrayList[numRooms];
+        IntArrayList[] inHubLists = new IntArrayList[numRooms];
+        IntArrayList[] inDistanceLists = new IntArrayList[numRooms];
+        for (int room = 0; room < numRooms; room++) {
+            outHubLists[room] = new IntArrayList();
+            outDistanceLists[room] = new IntArrayList();
+            inHubLists[room] = new IntArrayList();
+            inDistanceLists[room] = new IntArrayList();
+        }
+
+        int[] distance = new int[numRooms];
+        int[] hubDistance = new int[numRooms];
+        Arrays.fill(distance, UNREACHABLE);
+        Arrays.fill(hubDistance, UNREACHABLE);
+        IntArrayList reached = new IntArrayList();
+        for (int rank = 0; rank < numRooms; rank++) {
+            int hub = order[rank];
+            prunedSearch(hub, rank, false, prune, outHubLists[hub], outDistanceLists[hub], inHubLists, inDistanceLists,
+                    distance, hubDistance, reached);
+            prunedSearch(hub, rank, true, prune, inHubLists[hub], inDistanceLists[hub], outHubLists, outDistanceLists,
+                    distance, hubDistance, reached);
+        }
+
+        outOffsets = new int[numRooms + 1];
+        inOffsets = new int[numRooms + 1];
+        for (int room = 0; room < numRooms; room++) {
+            outOffsets[room + 1] = outOffsets[room] + outHubLists[room].size();
+            inOffsets[room + 1] = inOffsets[room] + inHubLists[room].size();
+        }
+        outHubs = new int[outOffsets[numRooms]];
+        outDistances = new int[outOffsets[numRooms]];
+        inHubs = new int[inOffsets[numRooms]];
+        inDistances = new int[inOffsets[numRooms]];
+        for (int room = 0; room < numRooms; room++) {
+            System.arraycopy(outHubLists[room].toArray(), 0, outHubs, outOffsets[room], outHubLists[room].size());
+            System.arraycopy(outDistanceLists[room].toArray(), 0, outDistances, outOffsets[room], outHubLists[room].size());
+            System.arraycopy(inHubLists[room].toArray(), 0, inHubs, inOffsets[room], inHubLists[room].size());
+            System.arraycopy(inDistanceLists[room].toArray(), 0, inDistances, inOffsets[room], inHubLists[room].size());
+        }
+    }
+
+    private HubLabels(MapData map, int[] outOffsets, int[] outHubs, int[] outDistances, int[] inOffsets, int[] inHubs,
+                      int[] inDistances) {
+        mapData = map;
+        this.outOffsets = outOffsets;
+        this.outHubs = outHubs;
+        this.outDistances = outDistances;
+        this.inOffsets = inOffsets;
+        this.inHubs = inHubs;
+        this.inDistances = inDistances;
+    }
+
+    /**
+     * Dijkstra's algorithm from hub, forwards to fill the incoming labels of the rooms it reaches or backwards to
+     * fill their outgoing labels, pruned (if prune is set) wherever the labels already cover the distance. The hub's
+     * own label on the other side is spread over hubDistance first so that each check is one pass over the reached
+     * room's label. distance and hubDistance are left as they were found, all UNREACHABLE.
+     */
+    private void prunedSearch(int hub, int rank, boolean backward, boolean prune, IntArrayList hubLabel,
+                              IntArrayList hubLabelDistances, IntArrayList[] labelHubs, IntArrayList[] labelDistances,
+                              int[] distance, int[] hubDistance, IntArrayList reached) {
+        for (int i = 0; i < hubLabel.size(); i++) {
+            hubDistance[hubLabel.get(i)] = hubLabelDistances.get(i);
+        }
+        PriorityQueue<PairIntInteger> unvisitedSet = new PriorityQueue<>();
+        distance[hub] = 0;
+        reached.add(hub);
+        unvisitedSet.add(new PairIntInteger(hub, 0));
+        while (unvisitedSet.size() > 0) {
+            PairIntInteger current = unvisitedSet.remove();
+            int room = current.getIndex();
+            if (current.getInteger() > distance[room]) {
+                continue;
+            }
+            IntArrayList hubs = labelHubs[room];
+            IntArrayList distances = labelDistances[room];
+            boolean covered = false;
+            for (int i = 0; prune && i < hubs.size() && !covered; i++) {
+                int viaHub = hubDistance[hubs.get(i)];
+                covered = viaHub != UNREACHABLE && viaHub + distances.get(i) <= distance[room];
+            }
+            if (covered) {
+                continue;
+            }
+            hubs.add(rank);
+            distances.add(distance[room]);
+            int degree = backward ? mapData.getIncomingDegree(room) : mapData.getDegree(room);
+            for (int i = 0; i < degree; i++) {
+                int next = backward ? mapData.getIncomingNeighbor(room, i) : mapData.getNeighbor(room, i);
+                int cost = backward ? mapData.getCostTo(next, room) : mapData.getCost(room, i);
+                int alternateDistance = distance[room] + cost;
+                if (alternateDistance < distance[next]) {
+                    if (distance[next] == UNREACHABLE) {
+                        reached.add(next);
+                    }
+                    distance[next] = alternateDistance;
+                    unvisitedSet.add(new PairIntInteger(next, alternateDistance));
+                }
+            }
+        }
+        for (int i = 0; i < reached.size(); i++) {
+            distance[reached.get(i)] = UNREACHABLE;
+        }
+        reached.clear();
+        for (int i = 0; i < hubLabel.size(); i++) {
+            hubDistance[hubLabel.get(i)] = UNREACHABLE;
+        }
+    }
+
+    /**
+     * @return the shortest distance from one room to another, Integer.MAX_VALUE if there is no path
+     */
+    int distance(int from, int to) {
+        int best = UNREACHABLE;
+        int i = outOffsets[from];
+        int j = inOffsets[to];
+        while (i < outOffsets[from + 1] && j < inOffsets[to + 1]) {
+            if (outHubs[i] < inHubs[j]) {
+                i++;
+            }
+            else if (outHubs[i] > inHubs[j]) {
+                j++;
+            }
+            else {
+                best = Math.min(best, outDistances[i++] + inDistances[j++]);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the rooms along a shortest path between two rooms, both ends included, or null if there is no path.
+     * Walks from room to room, each time taking a connection that the labels say is still on a shortest path.
+     */
+    int[] pathBetween(int from, int to) {
+        int remaining = distance(from, to);
+        if (remaining == UNREACHABLE) {
+            return null;
+        }
+        IntArrayList path = new IntArrayList();
+        path.add(from);
+        for (int room = from; room != to; room = path.get(path.size() - 1)) {
+            for (int i = 0; i < mapData.getDegree(room); i++) {
+                int next = mapData.getNeighbor(room, i);
+                int cost = mapData.getCost(room, i);
+                if (cost <= remaining && distance(next, to) == remaining - cost) {
+                    path.add(next);
+                    remaining -= cost;
+                    break;
+                }
+            }
+        }
+        return path.toArray();
+    }
+
+    /**
+     * @return the number of (hub, distance) entries in every label, which is what the labels cost in memory
+     */
+    long getLabelEntryCount() {
+        return (long) outHubs.length + inHubs.length;
+    }
+
+    /**
+     * @return the labels saved for mapData at labelFilePath, or new ones, saved there for the next run if possible
+     */
+    static HubLabels loadOrBuild(MapData mapData, String labelFilePath) {
+        return SavedIndex.loadOrBuild(labelFilePath, path -> read(mapData, path), () -> new HubLabels(mapData),
+                HubLabels::write);
+    }
+
+    /**
+     * The counts are the outgoing and incoming entry counts; the sections are the outgoing labels, then the
+     * incoming ones, each as roomCount + 1 offsets, hub ranks and distances.
+     */
+    void write(String labelFilePath) throws IOException {
+        SavedIndex.write(labelFilePath, MAGIC, VERSION, mapData, new int[] { outHubs.length, inHubs.length },
+                outOffsets, outHubs, outDistances, inOffsets, inHubs, inDistances);
+    }
+
+    /**
+     * @return null unless labelFilePath holds labels of this version of mapData
+     */
+    static HubLabels read(MapData mapData, String labelFilePath) throws IOException {
+        int numRooms = mapData.getRoomCount();
+        return SavedIndex.read(labelFilePath, MAGIC, VERSION, mapData, buffer -> {
+            int numOut = buffer.getInt();
+            int numIn = buffer.getInt();
+            return new HubLabels(mapData, BinaryMapFormat.readInts(buffer, numRooms + 1), BinaryMapFormat.readInts(buffer, numOut),
+                    BinaryMapFormat.readInts(buffer, numOut), BinaryMapFormat.readInts(buffer, numRooms + 1),
+                    BinaryMapFormat.readInts(buffer, numIn), BinaryMapFormat.readInts(buffer, numIn));
+        });
+    }
+}
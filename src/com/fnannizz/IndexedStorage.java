@@ -0,0 +1,20 @@
+package com.fnannizz;
+
+/**
+ * A MapStorage that also keeps the connections entering each room and the component (rooms joined by connections
+ * in either direction) of each room, as partitioned maps and compiled maps read in place do. MapData and
+ * ConnectivityIndex otherwise work these out themselves the first time they need them.
+ */
+interface IndexedStorage {
+
+    int getIncomingDegree(int room);
+
+    /**
+     * @return the room the i-th connection entering a room comes from
+     */
+    int getIncomingNeighbor(int room, int i);
+
+    int getComponentCount();
+
+    int getComponent(int room);
+}
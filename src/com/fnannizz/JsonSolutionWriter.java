@@ -0,0 +1,76 @@
+package com.fnannizz;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a solution as a single JSON object:
+ *
+ *   {"found":true,"length":3,"provenOptimal":true,"steps":[{"room":"2","move":"east","pickups":[]}, ...]}
+ *
+ * The last step has no "move". When there is no path the object is just {"found":false}.
+ */
+class JsonSolutionWriter implements SolutionWriter {
+
+    @Override
+    public void write(PathSolution solution, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (!solution.isFound()) {
+            writer.write("{\"found\":false}\n");
+            writer.flush();
+            return;
+        }
+
+        writer.write("{\"found\":true,\"length\":" + solution.getLength()
+                + ",\"provenOptimal\":" + solution.isProvenOptimal() + ",\"steps\":[");
+        for (int step = 0; step < solution.getStepCount(); step++) {
+            if (step > 0) {
+                writer.write(',');
+            }
+            writer.write("{\"room\":");
+            writeString(writer, solution.getRoom(step));
+            if (solution.getMove(step) != null) {
+                writer.write(",\"move\":");
+                writeString(writer, solution.getMove(step));
+            }
+            writer.write(",\"pickups\":[");
+            String[] pickups = solution.getPickups(step);
+            for (int i = 0; i < pickups.length; i++) {
+                if (i > 0) {
+                    writer.write(',');
+                }
+                writeString(writer, pickups[i]);
+            }
+            writer.write("]}");
+        }
+        writer.write("]}\n");
+        writer.flush();
+    }
+
+    private static void writeString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            }
+            else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            }
+            else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    @Override
+    public String getFileExtension() {
+        return ".solution.json";
+    }
+}
@@ -4,19 +4,69 @@ import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
 
 public class Main {
     /**
      *
-     * @param args, args[0] = path to map.xml args[1] = path to scenario.txt
+     * @param args, args[0] = path to map.xml (or a compiled map) args[1] = path to scenario.txt,
+     *              optionally followed by --format text|json|binary, --metrics, --targeted-search, --reduce-graph,
+     *              --hierarchical, --hub-labels, --memory-budget MB, --off-heap and --resident-regions N
+     *              or, to compile a map, args[0] = --compile args[1] = path to map.xml args[2] = output path
+     *              or, to partition a map, args[0] = --partition args[1] = path to map.xml args[2] = output path
+     *              args[3] = rooms per region
+     *              or, to label a map ahead of time for --hub-labels, args[0] = --label args[1] = path to the map
+     *              or, to solve many scenarios, args[0] = --batch args[1] = path to map.xml
+     *              args[2] = directory of scenario files or manifest listing them args[3] = output directory,
+     *              optionally followed by --threads N, --virtual-threads, --format text|json|binary, --metrics
+     *              --targeted-search, --reduce-graph, --hierarchical, --hub-labels, --memory-budget MB, --off-heap
+     *              and --resident-regions N
+     *              or, to run as a server, args[0] = --serve followed by one or more --map name=path and
+     *              --port N or --socket path, optionally with --threads N, --queue N, --connections N, --metrics,
+     *              --reduce-graph, --hierarchical, --hub-labels, --off-heap and --resident-regions N
+     *              every mode shares one option parser: an option a mode has no use for is ignored, and an
+     *              unknown option stops the run with an error
+     *              --metrics prints a per-phase timing summary to stderr when the run finishes (or the server stops)
+     *              --hierarchical searches between cluster entrances, with the index saved next to the map as .hpa
+     *              --hub-labels reads distances off labels saved next to the map as .hub, instead of searching
+     *              --memory-budget caps the megabytes kept for rebuilding paths between the rooms to visit
+     *              --off-heap reads compiled maps in place from the file instead of loading them onto the heap
+     *              --resident-regions caps how many regions of a partitioned map are kept in memory at once
      * @throws InvalidScenarioException, when user error results in a bad state
      */
     public static void main(String[] args) throws InvalidScenarioException {
         try {
+            if (args.length > 0 && args[0].equals("--compile")) {
+                MapFactory.compileMap(args[1], args[2]);
+                return;
+            }
+            if (args.length > 0 && args[0].equals("--label")) {
+                HubLabels.loadOrBuild(MapFactory.makeMap(args[1]), args[1] + HubLabels.FILE_SUFFIX);
+                return;
+            }
+            if (args.length > 0 && args[0].equals("--partition")) {
+                MapFactory.partitionMap(args[1], args[2], Integer.parseInt(args[3]));
+                return;
+            }
+            if (args.length > 0 && args[0].equals("--batch")) {
+                System.exit(runBatch(args) == 0 ? 0 : 1);
+            }
+            if (args.length > 0 && args[0].equals("--serve")) {
+                runServer(args);
+                return;
+            }
             PathSolver solver = new PathSolver();
+            CommandLine commandLine = parseOptions(args, 2, solver.getOptions());
+            solver.setSolutionWriter(commandLine.solutionWriter);
             solver.initializeWithMap(args[0]);
             solver.setScenario(args[1]);
             solver.solve();
+            if (commandLine.metrics != null) {
+                commandLine.metrics.print(System.err);
+            }
         }
         catch (IOException e) {
             System.out.println("Unable to open file: " + e.toString());
@@ -26,5 +76,162 @@ public class Main {
             System.out.println("Error parsing map.xml: " + e.toString());
             System.exit(1);
         }
+        catch (InterruptedException e) {
+            System.out.println("Interrupted before all scenarios were solved.");
+            System.exit(1);
+        }
+        catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Options given after a mode's positional arguments. Every mode reads the ones it needs and leaves the defaults
+     * of the others alone.
+     */
+    private static class CommandLine {
+        SolutionWriter solutionWriter = new TextSolutionWriter();
+        MetricsSummary metrics;
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean virtualThreads;
+        final LinkedHashMap<String, String> mapFiles = new LinkedHashMap<>();
+        int port = 7777;
+        String socketPath;
+        int queueCapacity = 64;
+        int maxConnections = 256;
+    }
+
+    /**
+     * Parse the options from args[first] on, setting the solver's ones on options.
+     * @throws IllegalArgumentException on an unknown option or one missing its value
+     */
+    private static CommandLine parseOptions(String[] args, int first, SolverOptions options) {
+        CommandLine commandLine = new CommandLine();
+        for (int i = first; i < args.length; i++) {
+            String option = args[i];
+            switch (option) {
+                case "--format":
+                    commandLine.solutionWriter = SolutionWriter.forFormat(valueOf(args, ++i));
+                    break;
+                case "--metrics":
+                    commandLine.metrics = new MetricsSummary();
+                    options.setMetricsSink(commandLine.metrics);
+                    break;
+                case "--threads":
+                    commandLine.threads = Integer.parseInt(valueOf(args, ++i));
+                    break;
+                case "--virtual-threads":
+                    commandLine.virtualThreads = true;
+                    break;
+                case "--map":
+                    String[] nameAndPath = valueOf(args, ++i).split("=", 2);
+                    if (nameAndPath.length != 2) {
+                        throw new IllegalArgumentException("--map takes name=path, not " + args[i] + ".");
+                    }
+                    commandLine.mapFiles.put(nameAndPath[0], nameAndPath[1]);
+                    break;
+                case "--port":
+                    commandLine.port = Integer.parseInt(valueOf(args, ++i));
+                    break;
+                case "--socket":
+                    commandLine.socketPath = valueOf(args, ++i);
+                    break;
+                case "--queue":
+                    commandLine.queueCapacity = Integer.parseInt(valueOf(args, ++i));
+                    break;
+                case "--connections":
+                    commandLine.maxConnections = Integer.parseInt(valueOf(args, ++i));
+                    break;
+                case "--targeted-search":
+                    options.setTargetedSearch(true);
+                    break;
+                case "--reduce-graph":
+                    options.setUseGraphReduction(true);
+                    break;
+                case "--hierarchical":
+                    options.setUseHierarchicalSearch(true);
+                    break;
+                case "--hub-labels":
+                    options.setUseHubLabels(true);
+                    break;
+                case "--memory-budget":
+                    options.setPathMemoryBudgetBytes(Long.parseLong(valueOf(args, ++i)) * 1024 * 1024);
+                    break;
+                case "--off-heap":
+                    options.setOffHeapMaps(true);
+                    break;
+                case "--resident-regions":
+                    options.setMaxResidentRegions(Integer.parseInt(valueOf(args, ++i)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + option + ".");
+            }
+        }
+        return commandLine;
+    }
+
+    private static String valueOf(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(args[i - 1] + " needs a value.");
+        }
+        return args[i];
+    }
+
+    /**
+     * @return the number of scenarios that could not be solved
+     */
+    private static int runBatch(String[] args) throws ParserConfigurationException, IOException, SAXException, InterruptedException {
+        SolverOptions options = new SolverOptions();
+        CommandLine commandLine = parseOptions(args, 4, options);
+        MapData mapData = PathSolver.loadMap(args[1], options);
+        List<String> scenarioFiles = BatchSolver.listScenarios(args[2]);
+        ExecutorService executor = BatchSolver.createExecutor(commandLine.threads, commandLine.virtualThreads);
+        try {
+            BatchSolver batchSolver = new BatchSolver(mapData, options);
+            batchSolver.setSolutionWriter(commandLine.solutionWriter);
+            return batchSolver.solveAll(scenarioFiles, args[3], executor, System.out);
+        }
+        finally {
+            executor.shutdown();
+            if (commandLine.metrics != null) {
+                commandLine.metrics.print(System.err);
+            }
+        }
+    }
+
+    /**
+     * Load every map, then serve requests until the process is stopped.
+     */
+    private static void runServer(String[] args) throws ParserConfigurationException, IOException, SAXException, InterruptedException {
+        SolverOptions options = new SolverOptions();
+        CommandLine commandLine = parseOptions(args, 1, options);
+        LinkedHashMap<String, MapData> maps = new LinkedHashMap<>();
+        for (Map.Entry<String, String> mapFile : commandLine.mapFiles.entrySet()) {
+            maps.put(mapFile.getKey(), PathSolver.loadMap(mapFile.getValue(), options));
+        }
+        MetricsSummary serverMetrics = commandLine.metrics;
+
+        SolverServer server = new SolverServer(maps, options, commandLine.threads, commandLine.queueCapacity,
+                commandLine.maxConnections);
+        if (commandLine.socketPath != null) {
+            server.startUnix(commandLine.socketPath);
+        }
+        else {
+            server.startTcp(commandLine.port);
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.close();
+            }
+            catch (IOException e) {
+                System.err.println("Error stopping server: " + e.toString());
+            }
+            if (serverMetrics != null) {
+                serverMetrics.print(System.err);
+            }
+        }));
+        System.out.println("Serving " + maps.keySet() + " on " + server.getLocalAddress() + ".");
+        Thread.currentThread().join();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,159 @@
+package com.fnannizz;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Accumulates rooms, connections and items as they are read from a map file and packs them into
+ * the compact arrays held by MapData.
+ *
+ * Every room id is assigned a provisional index the first time it is seen, whether that is its own
+ * declaration or a connection pointing at it, so connections can be stored as ints immediately
+ * even when they refer to rooms declared further down the file. build() renumbers the rooms so
+ * that the final indices follow declaration order.
+ */
+class MapBuilder {
+    private final HashMap<String, Integer> roomIndex = new HashMap<>();
+    private final ArrayList<String> roomIds = new ArrayList<>();
+    private final ArrayList<String> roomNames = new ArrayList<>();
+    private final IntArrayList declarationOrder = new IntArrayList();
+
+    private final IntArrayList edgeSources = new IntArrayList();
+    private final IntArrayList edgeTargets = new IntArrayList();
+    private final IntArrayList edgeDirections = new IntArrayList();
+    private final IntArrayList edgeCosts = new IntArrayList();
+    private boolean unitCosts = true;
+
+    private final IntArrayList itemRooms = new IntArrayList();
+    private final ArrayList<String> itemNames = new ArrayList<>();
+    private final HashMap<String, Integer> itemLocationsMap = new HashMap<>();
+
+    /**
+     * Declare a room, returning its index.
+     */
+    int addRoom(String id, String name) {
+        int index = indexOf(id);
+        if (roomNames.get(index) == null) {
+            declarationOrder.add(index);
+        }
+        roomNames.set(index, name);
+        return index;
+    }
+
+    /**
+     * Add a one-way connection leaving room in the given direction (an index into MapData.directions).
+     */
+    void addConnection(int room, int direction, String targetId) {
+        addConnection(room, direction, targetId, 1);
+    }
+
+    /**
+     * Add a one-way connection that costs cost (at least 1) to take.
+     */
+    void addConnection(int room, int direction, String targetId, int cost) {
+        edgeSources.add(room);
+        edgeTargets.add(indexOf(targetId));
+        edgeDirections.add(direction);
+        edgeCosts.add(cost);
+        unitCosts &= cost == 1;
+    }
+
+    void addItem(int room, String itemName) {
+        String item = itemName.toLowerCase();
+        itemRooms.add(room);
+        itemNames.add(item);
+        itemLocationsMap.put(item, room);
+    }
+
+    int getRoomCount() {
+        return roomIds.size();
+    }
+
+    /**
+     * @return the id of a room that is the target of a connection but was never declared, or null if there is
+     * none. build() may only be called once every room has been declared.
+     */
+    String findUndeclaredRoom() {
+        for (int room = 0; room < roomIds.size(); room++) {
+            if (roomNames.get(room) == null) {
+                return roomIds.get(room);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Renumber rooms into declaration order and pack everything into CSR form: a counting sort by
+     * source room groups each room's connections (and items) into one contiguous slice while keeping
+     * their original order. Maps where every connection costs 1 get no cost array at all.
+     */
+    MapData build() {
+        int numRooms = roomIds.size();
+
+        int[] finalIndex = new int[numRooms];
+        String[] ids = new String[numRooms];
+        String[] names = new String[numRooms];
+        for (int room = 0; room < declarationOrder.size(); room++) {
+            int provisional = declarationOrder.get(room);
+            finalIndex[provisional] = room;
+            ids[room] = roomIds.get(provisional);
+            names[room] = roomNames.get(provisional);
+        }
+        for (String id : ids) {
+            roomIndex.put(id, finalIndex[roomIndex.get(id)]);
+        }
+        for (String item : itemLocationsMap.keySet()) {
+            itemLocationsMap.put(item, finalIndex[itemLocationsMap.get(item)]);
+        }
+
+        int[] adjacencyOffsets = new int[numRooms + 1];
+        int[] adjacentRooms = new int[edgeSources.size()];
+        byte[] adjacentDirections = new byte[edgeSources.size()];
+        int[] adjacentCosts = unitCosts ? null : new int[edgeSources.size()];
+        int[] cursor = countingSortOffsets(edgeSources, finalIndex, adjacencyOffsets);
+        for (int edge = 0; edge < edgeSources.size(); edge++) {
+            int slot = cursor[finalIndex[edgeSources.get(edge)]]++;
+            adjacentRooms[slot] = finalIndex[edgeTargets.get(edge)];
+            adjacentDirections[slot] = (byte) edgeDirections.get(edge);
+            if (adjacentCosts != null) {
+                adjacentCosts[slot] = edgeCosts.get(edge);
+            }
+        }
+
+        int[] itemOffsets = new int[numRooms + 1];
+        String[] items = new String[itemNames.size()];
+        cursor = countingSortOffsets(itemRooms, finalIndex, itemOffsets);
+        for (int item = 0; item < itemNames.size(); item++) {
+            items[cursor[finalIndex[itemRooms.get(item)]]++] = itemNames.get(item);
+        }
+
+        return new MapData(new HeapMapStorage(ids, names, roomIndex, adjacencyOffsets, adjacentRooms,
+                adjacentDirections, adjacentCosts, itemOffsets, items), itemLocationsMap);
+    }
+
+    private int indexOf(String id) {
+        Integer index = roomIndex.get(id);
+        if (index == null) {
+            index = roomIds.size();
+            roomIndex.put(id, index);
+            roomIds.add(id);
+            roomNames.add(null);
+        }
+        return index;
+    }
+
+    /**
+     * Fill offsets with the start of each room's slice and return a copy to be used as insertion cursors.
+     */
+    private int[] countingSortOffsets(IntArrayList owners, int[] finalIndex, int[] offsets) {
+        for (int i = 0; i < owners.size(); i++) {
+            offsets[finalIndex[owners.get(i)] + 1]++;
+        }
+        for (int room = 0; room < offsets.length - 1; room++) {
+            offsets[room + 1] += offsets[room];
+        }
+        int[] cursor = new int[offsets.length - 1];
+        System.arraycopy(offsets, 0, cursor, 0, cursor.length);
+        return cursor;
+    }
+}
@@ -1,54 +1,528 @@
 package com.fnannizz;
 
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
 /**
  * Contains information about the game map which is needed to solve
  * for the optimal path.
+ *
+ * Rooms are identified by a dense index in [0, getRoomCount()). Connections are stored in
+ * compressed sparse row form: the connections leaving room r occupy the slots
+ * adjacencyOffsets[r] .. adjacencyOffsets[r + 1] - 1 of adjacentRooms and adjacentDirections.
+ * Items are stored the same way. String room ids are only needed to read scenarios and print
+ * solutions, so they live in a single id <-> index dictionary. Connections cost 1 to take unless the map gives
+ * them a cost, and adjacentCosts is only allocated for maps that do. These packed arrays live in a MapStorage,
+ * either on the heap or off it.
+ *
+ * The map can be edited in place after loading. The packed arrays are never rewritten: the first edit to a room
+ * copies its connections (or items) into a per-room override that all the accessors consult first, and rooms
+ * added later only ever live in the overrides. Removed rooms keep their index, with no connections in or out, so
+ * indices held elsewhere stay valid. Each edit repairs the affected entries of the shortest path cache rather
+ * than discarding it, and throws away the reduced map. Edits must not run at the same time as solves on the same
+ * map, so maps shared between threads are edited through MapVersions instead: each edit goes to a copy, which
+ * shares the storage, the untouched overrides and the cached search results with the version it was copied from,
+ * and versions that readers may be using are frozen against edits.
 **/
 class MapData {
 
     /**
-     * Model of the game map.
+     * Model of the game map, as loaded.
      */
-    HashMap<String, Room> roomMap;
+    private final MapStorage storage;
+
+    /**
+     * The same storage if it keeps the connections entering each room, otherwise null.
+     */
+    private final IndexedStorage indexedStorage;
+    private final int numPackedRooms;
+
+    /**
+     * Id and display name of each room added since loading, by room index - numPackedRooms, and the index of
+     * each added id. Ids added here take precedence over the same id in storage.
+     */
+    private final ArrayList<String> addedRoomIds;
+    private final ArrayList<String> addedRoomNames;
+    private final HashMap<String, Integer> addedRoomIndex;
+    private int numRooms;
+
+    /**
+     * Length of the per-room override arrays, at least numRooms.
+     */
+    private int roomCapacity;
+
+    /**
+     * The highest cost of any connection the map has had; never lowered by removing a connection.
+     */
+    private int maxCost;
 
     /**
      * Rather than search the map for items later, store all the item locations in
      * a separate data structure.
      */
-    private HashMap<String, String> itemLocationsMap;
+    private final HashMap<String, Integer> itemLocationsMap;
+
+    /**
+     * Per-room overrides of the packed connections and items, indexed by room; null until the first edit. A
+     * room's entry is null while the packed arrays still describe it.
+     */
+    private int[][] editedNeighbors;
+    private byte[][] editedDirections;
+    private int[][] editedCosts;
+    private String[][] editedItems;
+    private boolean[] removedRooms;
+
+    /**
+     * Connections entering each room, in the same packed-plus-overrides form. Only needed for bidirectional search
+     * and to repair cached search results when a connection goes away, so it is built on first use, unless the
+     * storage already keeps them. The overrides are allocated when first needed.
+     */
+    private volatile int[] incomingOffsets;
+    private int[] incomingRooms;
+    private int[][] editedIncoming;
 
     static String[] directions = { "north", "east", "south", "west" };
 
     /**
-     * Constructor only called by MapFactory.
+     * Which rooms can't possibly reach each other, built as the map is loaded and kept up to date by edits.
      */
-    MapData(HashMap<String,Room> rMap, HashMap<String,String> iMap) {
-        roomMap = rMap;
+    private final ConnectivityIndex connectivityIndex;
+
+    /**
+     * Single-source search results computed on this map, shared by every scenario solved against it.
+     */
+    private final ShortestPathCache shortestPathCache;
+
+    /**
+     * Corridor-contracted copy of the map for SolverOptions.setUseGraphReduction, built on first use and thrown
+     * away by any edit.
+     */
+    private volatile ReducedMap reducedMap;
+
+    /**
+     * Clustered index for SolverOptions.setUseHierarchicalSearch, built on first use or read from a file by
+     * HierarchicalMap.loadOrBuild, and thrown away by any edit.
+     */
+    private volatile HierarchicalMap hierarchicalMap;
+
+    /**
+     * Distance oracle for SolverOptions.setUseHubLabels, read from a file by HubLabels.loadOrBuild or built in the
+     * background after first use, and thrown away by any edit.
+     */
+    private volatile HubLabels hubLabels;
+
+    /**
+     * Counts the times hubLabels was thrown away, in this map and the versions it was copied from, so that labels
+     * that finish building after an edit aren't used and HubLabeler can tell older versions from newer ones.
+     */
+    private volatile long hubLabelEdits;
+
+    /**
+     * Builds labels in the background for this map and every copy of it; created on first use. Guarded by this.
+     */
+    private HubLabeler hubLabeler;
+
+    /**
+     * The labels being built for this map, or null. Guarded by this.
+     */
+    private Future<?> hubLabeling;
+
+    /**
+     * Set once MapVersions has published this map to readers, after which it can't be edited.
+     */
+    private boolean frozen;
+
+    /**
+     * Constructor only called by MapBuilder, BinaryMapFormat and PartitionedMapFormat.
+     */
+    MapData(MapStorage mapStorage, HashMap<String, Integer> iMap) {
+        storage = mapStorage;
+        indexedStorage = mapStorage instanceof IndexedStorage ? (IndexedStorage) mapStorage : null;
+        numPackedRooms = mapStorage.getRoomCount();
+        addedRoomIds = new ArrayList<>();
+        addedRoomNames = new ArrayList<>();
+        addedRoomIndex = new HashMap<>();
+        numRooms = numPackedRooms;
+        roomCapacity = numPackedRooms;
+        maxCost = mapStorage.getMaxCost();
         itemLocationsMap = iMap;
+        connectivityIndex = ConnectivityIndex.build(mapStorage);
+        shortestPathCache = new ShortestPathCache(this);
+    }
+
+    /**
+     * Copy a map for MapVersions to edit. Only the outer override arrays are copied, since edits replace a room's
+     * override rather than write into it; the cost is O(rooms) however few rooms the edit touches.
+     */
+    MapData(MapData original) {
+        storage = original.storage;
+        indexedStorage = original.indexedStorage;
+        numPackedRooms = original.numPackedRooms;
+        addedRoomIds = new ArrayList<>(original.addedRoomIds);
+        addedRoomNames = new ArrayList<>(original.addedRoomNames);
+        addedRoomIndex = new HashMap<>(original.addedRoomIndex);
+        numRooms = original.numRooms;
+        roomCapacity = original.roomCapacity;
+        maxCost = original.maxCost;
+        itemLocationsMap = new HashMap<>(original.itemLocationsMap);
+        if (original.editedNeighbors != null) {
+            editedNeighbors = original.editedNeighbors.clone();
+            editedDirections = original.editedDirections.clone();
+            editedCosts = original.editedCosts.clone();
+            editedItems = original.editedItems.clone();
+        }
+        if (original.removedRooms != null) {
+            removedRooms = original.removedRooms.clone();
+        }
+        int[] offsets = original.incomingOffsets;
+        if (offsets != null) {
+            incomingRooms = original.incomingRooms;
+            incomingOffsets = offsets;
+        }
+        if (original.editedIncoming != null) {
+            editedIncoming = original.editedIncoming.clone();
+        }
+        connectivityIndex = new ConnectivityIndex(original.connectivityIndex);
+        shortestPathCache = original.shortestPathCache.copyFor(this);
+        reducedMap = original.reducedMap;
+        hierarchicalMap = original.hierarchicalMap;
+        hubLabels = original.hubLabels;
+        hubLabelEdits = original.hubLabelEdits;
+        hubLabeler = original.getHubLabeler();
+    }
+
+    /**
+     * Refuse any further edits. Called by MapVersions before a map is published.
+     */
+    void freeze() {
+        frozen = true;
+    }
+
+    boolean isFrozen() {
+        return frozen;
     }
 
     boolean nodeExistsInMap(String id) {
-        return roomMap.containsKey(id);
+        return getRoomIndex(id) != -1;
+    }
+
+    /**
+     * @return the number of room indices in use, including removed rooms
+     */
+    int getRoomCount() {
+        return numRooms;
+    }
+
+    /**
+     * @return the index of the room with the given id, or -1 if there is no such room
+     */
+    int getRoomIndex(String id) {
+        Integer added = addedRoomIndex.get(id);
+        int room = added != null ? added : storage.getRoomIndex(id);
+        return room == -1 || isRoomRemoved(room) ? -1 : room;
+    }
+
+    String getRoomId(int room) {
+        return room < numPackedRooms ? storage.getRoomId(room) : addedRoomIds.get(room - numPackedRooms);
+    }
+
+    String getRoomName(int room) {
+        return room < numPackedRooms ? storage.getRoomName(room) : addedRoomNames.get(room - numPackedRooms);
+    }
+
+    /**
+     * @return the number of connections leaving a room
+     */
+    int getDegree(int room) {
+        if (editedNeighbors != null && editedNeighbors[room] != null) {
+            return editedNeighbors[room].length;
+        }
+        return storage.getDegree(room);
+    }
+
+    /**
+     * @return the room reached by the i-th connection leaving a room
+     */
+    int getNeighbor(int room, int i) {
+        if (editedNeighbors != null && editedNeighbors[room] != null) {
+            return editedNeighbors[room][i];
+        }
+        return storage.getNeighbor(room, i);
     }
 
     /**
-     * Called only when asked to use a new scenario with existing map.
+     * @return the direction of the i-th connection leaving a room, as an index into directions
      */
-    void clearItemLocations() {
-        itemLocationsMap.clear();
+    byte getDirection(int room, int i) {
+        if (editedDirections != null && editedDirections[room] != null) {
+            return editedDirections[room][i];
+        }
+        return storage.getDirection(room, i);
+    }
+
+    /**
+     * @return the cost of taking the i-th connection leaving a room
+     */
+    int getCost(int room, int i) {
+        if (editedCosts != null && editedCosts[room] != null) {
+            return editedCosts[room][i];
+        }
+        return storage.getCost(room, i);
+    }
+
+    /**
+     * @return the cost of the cheapest connection from room to target, Integer.MAX_VALUE if there is none
+     */
+    int getCostTo(int room, int target) {
+        int cost = Integer.MAX_VALUE;
+        for (int i = 0; i < getDegree(room); i++) {
+            if (getNeighbor(room, i) == target) {
+                cost = Math.min(cost, getCost(room, i));
+            }
+        }
+        return cost;
+    }
+
+    /**
+     * @return a hash of every connection and its cost, to tell whether an index saved next to the map file was
+     * built for the map as it is now
+     */
+    long getConnectionFingerprint() {
+        long hash = numRooms;
+        for (int room = 0; room < numRooms; room++) {
+            hash = hash * 31 + getDegree(room);
+            for (int i = 0; i < getDegree(room); i++) {
+                hash = hash * 31 + getNeighbor(room, i);
+                hash = hash * 31 + getCost(room, i);
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * @return the map as it was loaded, before any edits
+     */
+    MapStorage getStorage() {
+        return storage;
+    }
+
+    /**
+     * @return an upper bound on the cost of any connection, 1 if every connection costs 1
+     */
+    int getMaxCost() {
+        return maxCost;
+    }
+
+    /**
+     * @return the direction of the connection getCostTo takes, the first of the cheapest ones from room to target
+     */
+    String getDirectionTo(int room, int target) {
+        int cheapest = -1;
+        for (int i = 0; i < getDegree(room); i++) {
+            if (getNeighbor(room, i) == target && (cheapest < 0 || getCost(room, i) < getCost(room, cheapest))) {
+                cheapest = i;
+            }
+        }
+        if (cheapest >= 0) {
+            return directions[getDirection(room, cheapest)];
+        }
+        return "Room " + getRoomId(target) + "is not adjacent to " + getRoomName(room) + ".";
+    }
+
+    int getItemCount(int room) {
+        if (editedItems != null && editedItems[room] != null) {
+            return editedItems[room].length;
+        }
+        return storage.getItemCount(room);
+    }
+
+    String getItem(int room, int i) {
+        if (editedItems != null && editedItems[room] != null) {
+            return editedItems[room][i];
+        }
+        return storage.getItem(room, i);
+    }
+
+    boolean isRoomRemoved(int room) {
+        return removedRooms != null && removedRooms[room];
+    }
+
+    /**
+     * @return the number of connections entering a room
+     */
+    int getIncomingDegree(int room) {
+        buildIncoming();
+        if (editedIncoming != null && editedIncoming[room] != null) {
+            return editedIncoming[room].length;
+        }
+        if (indexedStorage != null) {
+            return indexedStorage.getIncomingDegree(room);
+        }
+        return incomingOffsets[room + 1] - incomingOffsets[room];
+    }
+
+    /**
+     * @return the room the i-th connection entering a room comes from
+     */
+    int getIncomingNeighbor(int room, int i) {
+        buildIncoming();
+        if (editedIncoming != null && editedIncoming[room] != null) {
+            return editedIncoming[room][i];
+        }
+        if (indexedStorage != null) {
+            return indexedStorage.getIncomingNeighbor(room, i);
+        }
+        return incomingRooms[incomingOffsets[room] + i];
+    }
+
+    /**
+     * @return read-only view of the item name to room index dictionary
+     */
+    Map<String, Integer> getItemLocations() {
+        return Collections.unmodifiableMap(itemLocationsMap);
+    }
+
+    ConnectivityIndex getConnectivityIndex() {
+        return connectivityIndex;
+    }
+
+    ShortestPathCache getShortestPathCache() {
+        return shortestPathCache;
+    }
+
+    ReducedMap getReducedMap() {
+        ReducedMap reduced = reducedMap;
+        if (reduced == null) {
+            reduced = buildReducedMapOnce();
+        }
+        return reduced;
+    }
+
+    private synchronized ReducedMap buildReducedMapOnce() {
+        if (reducedMap == null) {
+            reducedMap = new ReducedMap(this);
+        }
+        return reducedMap;
+    }
+
+    HierarchicalMap getHierarchicalMap() {
+        HierarchicalMap hierarchy = hierarchicalMap;
+        if (hierarchy == null) {
+            hierarchy = buildHierarchicalMapOnce();
+        }
+        return hierarchy;
+    }
+
+    private synchronized HierarchicalMap buildHierarchicalMapOnce() {
+        if (hierarchicalMap == null) {
+            hierarchicalMap = new HierarchicalMap(this);
+        }
+        return hierarchicalMap;
+    }
+
+    /**
+     * Use an index built earlier for this map, so that it isn't built again on first use.
+     */
+    void setHierarchicalMap(HierarchicalMap hierarchy) {
+        hierarchicalMap = hierarchy;
+    }
+
+    /**
+     * @return the hub labels of the map as it is now, or null if they aren't ready. Labeling a map takes far longer
+     * than a solve, so the first call starts it in the background on the map's HubLabeler, over a copy of the map
+     * unless the map is frozen, and callers search without labels until it's done.
+     */
+    HubLabels getHubLabels() {
+        HubLabels labels = hubLabels;
+        if (labels == null) {
+            startHubLabeling();
+        }
+        return labels;
+    }
+
+    private synchronized void startHubLabeling() {
+        if (hubLabels != null || (hubLabeling != null && !hubLabeling.isDone())) {
+            return;
+        }
+        long edits = hubLabelEdits;
+        if (!getHubLabeler().isCurrent(edits)) {
+            return;
+        }
+        MapData snapshot = frozen ? this : new MapData(this);
+        hubLabeling = getHubLabeler().label(snapshot, edits, labels -> finishHubLabeling(labels, edits));
+    }
+
+    private synchronized void finishHubLabeling(HubLabels labels, long edits) {
+        if (edits == hubLabelEdits) {
+            hubLabels = labels;
+        }
+    }
+
+    /**
+     * Wait for the labels being built for this map, if any; for testing.
+     * @return the labels, or null if none were built
+     */
+    HubLabels awaitHubLabels() throws InterruptedException {
+        Future<?> labeling;
+        synchronized (this) {
+            labeling = hubLabeling;
+        }
+        if (labeling != null) {
+            try {
+                labeling.get();
+            }
+            catch (ExecutionException | CancellationException e) {
+                // Nothing was built.
+            }
+        }
+        return hubLabels;
+    }
+
+    /**
+     * @return the labeler shared by this map and every copy of it
+     */
+    synchronized HubLabeler getHubLabeler() {
+        if (hubLabeler == null) {
+            hubLabeler = new HubLabeler();
+        }
+        return hubLabeler;
+    }
+
+    private void discardHubLabels() {
+        hubLabels = null;
+        hubLabelEdits++;
+    }
+
+    /**
+     * Use labels built earlier for this map, so that they aren't built again on first use.
+     */
+    void setHubLabels(HubLabels labels) {
+        hubLabels = labels;
+    }
+
+    /**
+     * Save labels built in the background for this map or its copies at labelFilePath, where HubLabels.loadOrBuild
+     * looks for them.
+     */
+    void setHubLabelFile(String labelFilePath) {
+        getHubLabeler().setLabelFilePath(labelFilePath);
     }
 
     /**
      * Using the list of known item locations, build a list of locations we need to visit in order to collect all items.
      * @param itemsToCollect list of items to collect from scenario.txt
-     * @return list of rooms containing all items needed
+     * @return list of indices of rooms containing all items needed
      * @throws InvalidScenarioException if an item does not exist in the map
      */
-    ArrayList<String> getLocationsOfNeededItems(ArrayList<String> itemsToCollect) throws InvalidScenarioException {
-        ArrayList<String> locationsOfNeededItems = new ArrayList<>();
+    ArrayList<Integer> getLocationsOfNeededItems(List<String> itemsToCollect) throws InvalidScenarioException {
+        ArrayList<Integer> locationsOfNeededItems = new ArrayList<>();
         for (String item : itemsToCollect) {
             if (itemLocationsMap.containsKey(item)) {
                 locationsOfNeededItems.add(itemLocationsMap.get(item));
@@ -60,9 +534,329 @@ class MapData {
         return locationsOfNeededItems;
     }
 
+    /**
+     * Add a room with no connections or items.
+     * @return the new room's index
+     */
+    int addRoom(String id, String name) {
+        requireEditable();
+        if (nodeExistsInMap(id)) {
+            throw new IllegalArgumentException("The room " + id + " already exists.");
+        }
+        if (numRooms == roomCapacity) {
+            growRooms(Math.max(16, numRooms * 2));
+        }
+        int room = numRooms++;
+        addedRoomIds.add(id);
+        addedRoomNames.add(name);
+        addedRoomIndex.put(id, room);
+        connectivityIndex.addRoom(room);
+        reducedMap = null;
+        hierarchicalMap = null;
+        discardHubLabels();
+        editedNeighbors[room] = new int[0];
+        editedDirections[room] = new byte[0];
+        editedCosts[room] = new int[0];
+        editedItems[room] = new String[0];
+        if (isIncomingIndexed()) {
+            allocateIncomingOverrides();
+            editedIncoming[room] = new int[0];
+        }
+        return room;
+    }
+
+    /**
+     * Remove a room along with its items and every connection into or out of it.
+     */
+    void removeRoom(String id) {
+        requireEditable();
+        int room = requireRoom(id);
+        while (getDegree(room) > 0) {
+            removeConnection(room, getDirection(room, 0));
+        }
+        while (getIncomingDegree(room) > 0) {
+            int from = getIncomingNeighbor(room, 0);
+            for (int i = 0; i < getDegree(from); i++) {
+                if (getNeighbor(from, i) == room) {
+                    removeConnection(from, getDirection(from, i));
+                    break;
+                }
+            }
+        }
+        for (int i = getItemCount(room) - 1; i >= 0; i--) {
+            removeItem(getItem(room, i));
+        }
+        if (removedRooms == null) {
+            removedRooms = new boolean[roomCapacity];
+        }
+        removedRooms[room] = true;
+        shortestPathCache.removeSource(room);
+    }
+
+    /**
+     * Add a one-way connection, replacing any connection already leaving fromId in that direction.
+     * @param direction north, east, south or west
+     */
+    void addConnection(String fromId, String direction, String toId) {
+        addConnection(fromId, direction, toId, 1);
+    }
+
+    /**
+     * Add a one-way connection that costs cost (at least 1) to take.
+     */
+    void addConnection(String fromId, String direction, String toId, int cost) {
+        requireEditable();
+        int from = requireRoom(fromId);
+        int to = requireRoom(toId);
+        byte directionIndex = requireDirection(direction);
+        if (cost < 1) {
+            throw new IllegalArgumentException("Connections must cost at least 1, not " + cost + ".");
+        }
+        removeConnection(from, directionIndex);
+        reducedMap = null;
+        hierarchicalMap = null;
+        discardHubLabels();
+
+        editConnections(from);
+        int degree = editedNeighbors[from].length;
+        editedNeighbors[from] = Arrays.copyOf(editedNeighbors[from], degree + 1);
+        editedDirections[from] = Arrays.copyOf(editedDirections[from], degree + 1);
+        editedCosts[from] = Arrays.copyOf(editedCosts[from], degree + 1);
+        editedNeighbors[from][degree] = to;
+        editedDirections[from][degree] = directionIndex;
+        editedCosts[from][degree] = cost;
+        maxCost = Math.max(maxCost, cost);
+        connectivityIndex.union(from, to);
+        if (isIncomingIndexed()) {
+            editIncoming(to);
+            editedIncoming[to] = Arrays.copyOf(editedIncoming[to], editedIncoming[to].length + 1);
+            editedIncoming[to][editedIncoming[to].length - 1] = from;
+        }
+        shortestPathCache.connectionAdded(from, to);
+    }
+
+    /**
+     * Remove the connection leaving fromId in the given direction.
+     * @return false if there was no such connection
+     */
+    boolean removeConnection(String fromId, String direction) {
+        requireEditable();
+        return removeConnection(requireRoom(fromId), requireDirection(direction));
+    }
+
+    private boolean removeConnection(int from, byte direction) {
+        int slot = -1;
+        for (int i = 0; i < getDegree(from); i++) {
+            if (getDirection(from, i) == direction) {
+                slot = i;
+            }
+        }
+        if (slot == -1) {
+            return false;
+        }
+        int to = getNeighbor(from, slot);
+        reducedMap = null;
+        hierarchicalMap = null;
+        discardHubLabels();
+        editConnections(from);
+        editedNeighbors[from] = removeSlot(editedNeighbors[from], slot);
+        byte[] directionsLeft = new byte[editedDirections[from].length - 1];
+        System.arraycopy(editedDirections[from], 0, directionsLeft, 0, slot);
+        System.arraycopy(editedDirections[from], slot + 1, directionsLeft, slot, directionsLeft.length - slot);
+        editedDirections[from] = directionsLeft;
+        editedCosts[from] = removeSlot(editedCosts[from], slot);
+        if (isIncomingIndexed()) {
+            editIncoming(to);
+            for (int i = 0; i < editedIncoming[to].length; i++) {
+                if (editedIncoming[to][i] == from) {
+                    editedIncoming[to] = removeSlot(editedIncoming[to], i);
+                    break;
+                }
+            }
+        }
+        shortestPathCache.connectionRemoved(from, to);
+        return true;
+    }
+
+    void addItem(String roomId, String itemName) {
+        requireEditable();
+        int room = requireRoom(roomId);
+        String item = itemName.toLowerCase();
+        if (itemLocationsMap.containsKey(item)) {
+            throw new IllegalArgumentException("The item " + item + " is already in the map.");
+        }
+        editItems(room);
+        editedItems[room] = Arrays.copyOf(editedItems[room], editedItems[room].length + 1);
+        editedItems[room][editedItems[room].length - 1] = item;
+        itemLocationsMap.put(item, room);
+        reducedMap = null;
+        hierarchicalMap = null;
+        discardHubLabels();
+    }
+
+    /**
+     * @return false if there was no such item
+     */
+    boolean removeItem(String itemName) {
+        requireEditable();
+        String item = itemName.toLowerCase();
+        Integer room = itemLocationsMap.remove(item);
+        if (room == null) {
+            return false;
+        }
+        reducedMap = null;
+        hierarchicalMap = null;
+        discardHubLabels();
+        editItems(room);
+        ArrayList<String> itemsLeft = new ArrayList<>(Arrays.asList(editedItems[room]));
+        itemsLeft.remove(item);
+        editedItems[room] = itemsLeft.toArray(new String[0]);
+        return true;
+    }
+
+    private void requireEditable() {
+        if (frozen) {
+            throw new IllegalStateException("This version of the map may be in use by other threads; edit it through MapVersions.");
+        }
+    }
+
+    private int requireRoom(String id) {
+        int room = getRoomIndex(id);
+        if (room == -1) {
+            throw new IllegalArgumentException("The room " + id + " does not exist in the map.");
+        }
+        return room;
+    }
+
+    private static byte requireDirection(String direction) {
+        for (byte i = 0; i < directions.length; i++) {
+            if (directions[i].equals(direction)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown direction " + direction + ".");
+    }
+
+    private static int[] removeSlot(int[] values, int slot) {
+        int[] left = new int[values.length - 1];
+        System.arraycopy(values, 0, left, 0, slot);
+        System.arraycopy(values, slot + 1, left, slot, left.length - slot);
+        return left;
+    }
+
+    /**
+     * Make sure a room's connections live in the overrides, copying them out of the packed arrays if need be.
+     */
+    private void editConnections(int room) {
+        allocateOverrides();
+        if (editedNeighbors[room] == null) {
+            int degree = storage.getDegree(room);
+            editedNeighbors[room] = new int[degree];
+            editedDirections[room] = new byte[degree];
+            editedCosts[room] = new int[degree];
+            for (int i = 0; i < degree; i++) {
+                editedNeighbors[room][i] = storage.getNeighbor(room, i);
+                editedDirections[room][i] = storage.getDirection(room, i);
+                editedCosts[room][i] = storage.getCost(room, i);
+            }
+        }
+    }
+
+    private void editItems(int room) {
+        allocateOverrides();
+        if (editedItems[room] == null) {
+            editedItems[room] = new String[storage.getItemCount(room)];
+            for (int i = 0; i < editedItems[room].length; i++) {
+                editedItems[room][i] = storage.getItem(room, i);
+            }
+        }
+    }
+
+    private void editIncoming(int room) {
+        allocateIncomingOverrides();
+        if (editedIncoming[room] == null) {
+            int[] sources = new int[getIncomingDegree(room)];
+            for (int i = 0; i < sources.length; i++) {
+                sources[i] = getIncomingNeighbor(room, i);
+            }
+            editedIncoming[room] = sources;
+        }
+    }
+
+    /**
+     * Pack the connections entering every room into CSR form, the same way MapBuilder packs outgoing ones.
+     * Rooms added after this point get an empty override.
+     */
+    private void buildIncoming() {
+        if (!isIncomingIndexed()) {
+            buildIncomingOnce();
+        }
+    }
+
+    private boolean isIncomingIndexed() {
+        return incomingOffsets != null || indexedStorage != null;
+    }
+
+    private void allocateIncomingOverrides() {
+        if (editedIncoming == null) {
+            editedIncoming = new int[roomCapacity][];
+        }
+    }
+
+    private synchronized void buildIncomingOnce() {
+        if (incomingOffsets != null) {
+            return;
+        }
+        int[] offsets = new int[numRooms + 1];
+        for (int room = 0; room < numRooms; room++) {
+            for (int i = 0; i < getDegree(room); i++) {
+                offsets[getNeighbor(room, i) + 1]++;
+            }
+        }
+        for (int room = 0; room < numRooms; room++) {
+            offsets[room + 1] += offsets[room];
+        }
+        int[] sources = new int[offsets[numRooms]];
+        int[] cursor = Arrays.copyOf(offsets, numRooms);
+        for (int room = 0; room < numRooms; room++) {
+            for (int i = 0; i < getDegree(room); i++) {
+                sources[cursor[getNeighbor(room, i)]++] = room;
+            }
+        }
+        incomingRooms = sources;
+        allocateIncomingOverrides();
+        incomingOffsets = offsets;
+    }
+
+    private void allocateOverrides() {
+        if (editedNeighbors == null) {
+            editedNeighbors = new int[roomCapacity][];
+            editedDirections = new byte[roomCapacity][];
+            editedCosts = new int[roomCapacity][];
+            editedItems = new String[roomCapacity][];
+        }
+    }
+
+    private void growRooms(int capacity) {
+        allocateOverrides();
+        roomCapacity = capacity;
+        editedNeighbors = Arrays.copyOf(editedNeighbors, capacity);
+        editedDirections = Arrays.copyOf(editedDirections, capacity);
+        editedCosts = Arrays.copyOf(editedCosts, capacity);
+        editedItems = Arrays.copyOf(editedItems, capacity);
+        if (removedRooms != null) {
+            removedRooms = Arrays.copyOf(removedRooms, capacity);
+        }
+        if (editedIncoming != null) {
+            editedIncoming = Arrays.copyOf(editedIncoming, capacity);
+        }
+    }
+
     void printMap() {
-        for (String key : roomMap.keySet()) {
-            System.out.println(key + " " + roomMap.get(key).getName());
+        for (int room = 0; room < numRooms; room++) {
+            if (!isRoomRemoved(room)) {
+                System.out.println(getRoomId(room) + " " + getRoomName(room));
+            }
         }
     }
 
@@ -9,23 +9,203 @@ import org.xml.sax.SAXException;
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
-import java.util.HashMap;
+import java.io.InputStream;
 import java.util.Objects;
 
 /**
  * Created by francesca on 11/27/16.
+ *
+ * A room's connection in a direction may be given a cost with a matching attribute, as in
+ * east="hall" east-cost="4". Connections without one cost 1.
  */
 public class MapFactory {
 
+    static final String COST_SUFFIX = "-cost";
+
+    /**
+     * Maps larger than this are streamed rather than loaded into a DOM, which needs many times the file size in heap.
+     */
+    static final long STREAMING_THRESHOLD_BYTES = 8L * 1024 * 1024;
+
+    /**
+     * How many rooms to read between progress updates when streaming.
+     */
+    private static final int PROGRESS_INTERVAL_ROOMS = 10000;
+
+    /**
+     * Load a map from map.xml, a map compiled with compileMap or a map partitioned with partitionMap, detected by the
+     * file's magic number.
+     */
     static MapData makeMap(String mapFilePath) throws ParserConfigurationException, IOException, SAXException {
+        if (PartitionedMapFormat.isPartitionedMap(mapFilePath)) {
+            return PartitionedMapFormat.read(mapFilePath, SolverOptions.DEFAULT_MAX_RESIDENT_REGIONS);
+        }
+        if (BinaryMapFormat.isCompiledMap(mapFilePath)) {
+            return BinaryMapFormat.read(mapFilePath);
+        }
+        if (new File(mapFilePath).length() > STREAMING_THRESHOLD_BYTES) {
+            return parseXMLStreaming(mapFilePath, null);
+        }
         return parseXML(mapFilePath);
     }
 
+    /**
+     * Load a map as makeMap(mapFilePath) does, or with offHeap, read a compiled map in place without copying it onto
+     * the heap.
+     * @throws IllegalArgumentException if offHeap is asked for with a map that isn't compiled
+     */
+    static MapData makeMap(String mapFilePath, boolean offHeap) throws ParserConfigurationException, IOException, SAXException {
+        if (!offHeap) {
+            return makeMap(mapFilePath);
+        }
+        if (!BinaryMapFormat.isCompiledMap(mapFilePath)) {
+            throw new IllegalArgumentException("Only compiled maps can be kept off the heap; compile " + mapFilePath
+                    + " with --compile first.");
+        }
+        return BinaryMapFormat.read(mapFilePath, true);
+    }
+
+    /**
+     * Load a map the way options ask for: partitioned maps keeping at most options.getMaxResidentRegions() regions
+     * in memory, and compiled maps off the heap if options.getOffHeapMaps() is set.
+     */
+    static MapData makeMap(String mapFilePath, SolverOptions options) throws ParserConfigurationException, IOException, SAXException {
+        if (PartitionedMapFormat.isPartitionedMap(mapFilePath)) {
+            return PartitionedMapFormat.read(mapFilePath, options.getMaxResidentRegions());
+        }
+        return makeMap(mapFilePath, options.getOffHeapMaps());
+    }
+
+    /**
+     * Parse map.xml once and save it in the compiled binary format, which later runs can load without parsing.
+     */
+    static void compileMap(String mapFilePath, String outputFilePath) throws ParserConfigurationException, IOException, SAXException {
+        BinaryMapFormat.write(makeMap(mapFilePath), outputFilePath);
+    }
+
+    /**
+     * Load a map and save it split into regions of about roomsPerRegion rooms, which can be solved on with only a
+     * few regions in memory at a time.
+     */
+    static void partitionMap(String mapFilePath, String outputFilePath, int roomsPerRegion) throws ParserConfigurationException, IOException, SAXException {
+        PartitionedMapFormat.write(makeMap(mapFilePath), outputFilePath, roomsPerRegion);
+    }
+
+    /**
+     * Stream the map regardless of its size, reporting progress to listener as it goes.
+     */
+    static MapData makeMap(String mapFilePath, MapLoadListener listener) throws IOException, SAXException {
+        return parseXMLStreaming(mapFilePath, listener);
+    }
+
+    /**
+     * Build the map in a single forward pass over the file with StAX. Only the room currently being read is held
+     * as strings; everything else goes straight into MapBuilder's compact arrays, so memory is bounded by the size
+     * of the finished map rather than by the size of the XML.
+     */
+    static MapData parseXMLStreaming(String mapFilePath, MapLoadListener listener) throws IOException, SAXException {
+        MapBuilder builder = new MapBuilder();
+        File file = new File(mapFilePath);
+        long totalBytes = file.length();
+
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, false);
+
+        try (CountingInputStream in = new CountingInputStream(new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            XMLStreamReader reader = factory.createXMLStreamReader(in);
+            String[] connectingRooms = new String[MapData.directions.length];
+            String[] connectionCosts = new String[MapData.directions.length];
+            int currentRoom = -1;
+            int roomsLoaded = 0;
+            try {
+                while (reader.hasNext()) {
+                    int event = reader.next();
+                    if (event == XMLStreamConstants.START_ELEMENT) {
+                        String element = reader.getLocalName();
+                        if (element.equals("room")) {
+                            currentRoom = readRoom(reader, builder, connectingRooms, connectionCosts);
+                            roomsLoaded++;
+                            if (listener != null && roomsLoaded % PROGRESS_INTERVAL_ROOMS == 0) {
+                                listener.onProgress(roomsLoaded, in.getCount(), totalBytes);
+                            }
+                        }
+                        else if (element.equals("object") && currentRoom != -1) {
+                            String itemName = reader.getAttributeValue(null, "name");
+                            builder.addItem(currentRoom, itemName == null ? "" : itemName);
+                        }
+                    }
+                    else if (event == XMLStreamConstants.END_ELEMENT && reader.getLocalName().equals("room")) {
+                        currentRoom = -1;
+                    }
+                }
+            }
+            finally {
+                reader.close();
+            }
+            if (listener != null) {
+                listener.onProgress(roomsLoaded, totalBytes, totalBytes);
+            }
+        }
+        catch (XMLStreamException e) {
+            throw new SAXException(e);
+        }
+        return finishMap(builder);
+    }
+
+    /**
+     * Read every attribute of a room element exactly once and add the room and its connections to the builder.
+     */
+    private static int readRoom(XMLStreamReader reader, MapBuilder builder, String[] connectingRooms,
+                                String[] connectionCosts) throws SAXException {
+        String id = "";
+        String name = "";
+        for (int direction = 0; direction < connectingRooms.length; direction++) {
+            connectingRooms[direction] = null;
+            connectionCosts[direction] = null;
+        }
+        for (int attribute = 0; attribute < reader.getAttributeCount(); attribute++) {
+            String attributeName = reader.getAttributeLocalName(attribute);
+            String value = reader.getAttributeValue(attribute);
+            if (attributeName.equals("id")) {
+                id = value;
+            }
+            else if (attributeName.equals("name")) {
+                name = value;
+            }
+            else {
+                for (int direction = 0; direction < MapData.directions.length; direction++) {
+                    if (attributeName.equals(MapData.directions[direction])) {
+                        connectingRooms[direction] = value;
+                    }
+                    else if (attributeName.equals(MapData.directions[direction] + COST_SUFFIX)) {
+                        connectionCosts[direction] = value;
+                    }
+                }
+            }
+        }
+
+        int room = builder.addRoom(id, name);
+        for (int direction = 0; direction < connectingRooms.length; direction++) {
+            if (connectingRooms[direction] != null && !connectingRooms[direction].isEmpty()) {
+                builder.addConnection(room, direction, connectingRooms[direction],
+                        parseCost(id, direction, connectionCosts[direction]));
+            }
+        }
+        return room;
+    }
+
      static private MapData parseXML(String mapFilePath) throws ParserConfigurationException, IOException, SAXException {
-         HashMap<String, Room> roomMap = new HashMap<>();
-         HashMap<String, String> itemLocationsMap = new HashMap<>();
+        MapBuilder builder = new MapBuilder();
 
         File file = new File(mapFilePath);
         DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
@@ -37,25 +217,95 @@ public class MapFactory {
         for (int roomIndex = 0; roomIndex < roomList.getLength(); roomIndex++) {
             if (roomList.item(roomIndex).getNodeType() == Node.ELEMENT_NODE) {
                 Element current = (Element) roomList.item(roomIndex);
-                Room newRoom = new Room(current.getAttribute("name"), current.getAttribute("id"));
+                int newRoom = builder.addRoom(current.getAttribute("id"), current.getAttribute("name"));
 
                 // Add all the objects to the room
                 NodeList objectList = current.getElementsByTagName("object");
                 for (int objectIndex = 0; objectIndex < objectList.getLength(); objectIndex++) {
-                    String itemName = ((Element) objectList.item(objectIndex)).getAttribute("name");
-                    newRoom.addItemToRoom(itemName);
-                    itemLocationsMap.put(itemName.toLowerCase(), newRoom.getId());
+                    builder.addItem(newRoom, ((Element) objectList.item(objectIndex)).getAttribute("name"));
                 }
 
                 // Add all connecting rooms
-                for (String direction : MapData.directions) {
-                    if (!Objects.equals(current.getAttribute(direction),"")) {
-                        newRoom.addConnectingRoom(direction, current.getAttribute(direction));
+                for (int direction = 0; direction < MapData.directions.length; direction++) {
+                    String connectingRoom = current.getAttribute(MapData.directions[direction]);
+                    if (!Objects.equals(connectingRoom, "")) {
+                        builder.addConnection(newRoom, direction, connectingRoom, parseCost(current.getAttribute("id"),
+                                direction, current.getAttribute(MapData.directions[direction] + COST_SUFFIX)));
                     }
                 }
-                roomMap.put(newRoom.getId(), newRoom);
             }
         }
-        return new MapData(roomMap, itemLocationsMap);
+        return finishMap(builder);
+    }
+
+    /**
+     * @param value the cost attribute, null or empty if the connection has none
+     */
+    private static int parseCost(String roomId, int direction, String value) throws SAXException {
+        if (value == null || value.isEmpty()) {
+            return 1;
+        }
+        try {
+            int cost = Integer.parseInt(value.trim());
+            if (cost >= 1) {
+                return cost;
+            }
+        }
+        catch (NumberFormatException e) {
+            // Reported below along with costs that are out of range.
+        }
+        throw new SAXException("Room " + roomId + " has " + MapData.directions[direction] + COST_SUFFIX + "=\"" + value
+                + "\", but costs must be whole numbers of at least 1.");
+    }
+
+    /**
+     * Check that every connection leads somewhere before handing out the finished map.
+     */
+    static MapData finishMap(MapBuilder builder) throws SAXException {
+        String undeclaredRoom = builder.findUndeclaredRoom();
+        if (undeclaredRoom != null) {
+            throw new SAXException("Room " + undeclaredRoom + " is connected to but never declared.");
+        }
+        return builder.build();
+    }
+
+    /**
+     * Counts the bytes the XML parser has consumed, for progress reporting.
+     */
+    private static class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
     }
 }
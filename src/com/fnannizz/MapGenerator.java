@@ -0,0 +1,274 @@
+package com.fnannizz;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic maps and matching scenarios for benchmarks and tests. Every map is connected and every
+ * connection is two-way, so every generated scenario has a solution.
+ *
+ * Rooms are named r0, r1, ... and the rooms holding items are chosen at random, one item each, named after the
+ * room ("item-r42"). The same shape, size and seed always produce the same map and scenarios. With a maximum cost
+ * above 1, each connection gets a random cost from 1 to that maximum, the same in both directions.
+ *
+ * Usage: MapGenerator shape rooms seed outputDirectory [scenarios itemsPerScenario [maxCost]]
+ */
+class MapGenerator {
+    private static final int NORTH = 0;
+    private static final int EAST = 1;
+    private static final int SOUTH = 2;
+    private static final int WEST = 3;
+
+    enum Shape {
+        /**
+         * Square grid with north/south/east/west neighbours.
+         */
+        GRID,
+
+        /**
+         * Random tree: every room hangs off a free east, south or west exit of a random earlier room.
+         */
+        TREE,
+
+        /**
+         * Random tree plus extra connections between rooms with free exits, about one per four rooms.
+         */
+        RANDOM_SPARSE,
+
+        /**
+         * Long east-west corridor with short dead-end wings off to the north and south.
+         */
+        CORRIDOR
+    }
+
+    private final int numRooms;
+    private final int maxCost;
+    private final Random random;
+
+    // neighbors[room * 4 + direction] is the room through that exit, or -1.
+    private final int[] neighbors;
+    private final int[] costs;
+    private final int[] itemRooms;
+
+    MapGenerator(Shape shape, int rooms, long seed) {
+        this(shape, rooms, seed, 1);
+    }
+
+    MapGenerator(Shape shape, int rooms, long seed, int highestCost) {
+        numRooms = rooms;
+        maxCost = highestCost;
+        random = new Random(seed);
+        neighbors = new int[rooms * 4];
+        costs = new int[rooms * 4];
+        Arrays.fill(neighbors, -1);
+
+        switch (shape) {
+            case GRID:
+                buildGrid();
+                break;
+            case TREE:
+                buildTree();
+                break;
+            case RANDOM_SPARSE:
+                buildTree();
+                addRandomConnections(rooms / 4);
+                break;
+            case CORRIDOR:
+                buildCorridor();
+                break;
+        }
+
+        // Enough item rooms for any reasonable scenario, but sparse on big maps like real ones.
+        int numItems = Math.min(rooms, Math.max(64, rooms / 100));
+        itemRooms = new int[numItems];
+        int[] shuffled = new int[rooms];
+        for (int room = 0; room < rooms; room++) {
+            shuffled[room] = room;
+        }
+        for (int i = 0; i < numItems; i++) {
+            int swap = i + random.nextInt(rooms - i);
+            int room = shuffled[swap];
+            shuffled[swap] = shuffled[i];
+            shuffled[i] = room;
+            itemRooms[i] = room;
+        }
+    }
+
+    private void connect(int from, int direction, int to) {
+        // Unit-cost maps draw nothing here, so they come out the same as before costs existed.
+        int cost = maxCost > 1 ? 1 + random.nextInt(maxCost) : 1;
+        neighbors[from * 4 + direction] = to;
+        neighbors[to * 4 + (direction + 2) % 4] = from;
+        costs[from * 4 + direction] = cost;
+        costs[to * 4 + (direction + 2) % 4] = cost;
+    }
+
+    private void buildGrid() {
+        int width = (int) Math.ceil(Math.sqrt(numRooms));
+        for (int room = 0; room < numRooms; room++) {
+            if (room % width + 1 < width && room + 1 < numRooms) {
+                connect(room, EAST, room + 1);
+            }
+            if (room + width < numRooms) {
+                connect(room, SOUTH, room + width);
+            }
+        }
+    }
+
+    private void buildTree() {
+        // Rooms with a free east, south or west exit, as candidates for the next parent.
+        int[] open = new int[numRooms];
+        int numOpen = 0;
+        open[numOpen++] = 0;
+        for (int room = 1; room < numRooms; room++) {
+            int slot = random.nextInt(numOpen);
+            int parent = open[slot];
+            int direction = freeChildDirection(parent);
+            connect(parent, direction, room);
+            if (freeChildDirection(parent) == -1) {
+                open[slot] = open[--numOpen];
+            }
+            open[numOpen++] = room;
+        }
+    }
+
+    private int freeChildDirection(int room) {
+        int start = random.nextInt(3);
+        for (int i = 0; i < 3; i++) {
+            int direction = EAST + (start + i) % 3;
+            if (neighbors[room * 4 + direction] == -1) {
+                return direction;
+            }
+        }
+        return -1;
+    }
+
+    private void addRandomConnections(int count) {
+        for (int attempt = 0; attempt < count * 4 && count > 0; attempt++) {
+            int from = random.nextInt(numRooms);
+            int to = random.nextInt(numRooms);
+            int direction = random.nextInt(4);
+            if (from != to && neighbors[from * 4 + direction] == -1 && neighbors[to * 4 + (direction + 2) % 4] == -1) {
+                connect(from, direction, to);
+                count--;
+            }
+        }
+    }
+
+    private void buildCorridor() {
+        int spine = Math.max(1, numRooms * 3 / 4);
+        for (int room = 1; room < spine; room++) {
+            connect(room - 1, EAST, room);
+        }
+        // Wings of up to three rooms, hung off random spine rooms with a free north or south exit.
+        int room = spine;
+        while (room < numRooms) {
+            int attach = random.nextInt(spine);
+            int direction = random.nextBoolean() ? NORTH : SOUTH;
+            if (neighbors[attach * 4 + direction] != -1) {
+                direction = (direction + 2) % 4;
+                if (neighbors[attach * 4 + direction] != -1) {
+                    continue;
+                }
+            }
+            int length = 1 + random.nextInt(3);
+            int previous = attach;
+            for (int i = 0; i < length && room < numRooms; i++, room++) {
+                connect(previous, direction, room);
+                previous = room;
+            }
+        }
+    }
+
+    int getRoomCount() {
+        return numRooms;
+    }
+
+    static String roomId(int room) {
+        return "r" + room;
+    }
+
+    static String itemName(int room) {
+        return "item-r" + room;
+    }
+
+    void writeMap(Writer out) throws IOException {
+        out.write("<map>\n");
+        int nextItem = 0;
+        int[] sortedItemRooms = itemRooms.clone();
+        Arrays.sort(sortedItemRooms);
+        for (int room = 0; room < numRooms; room++) {
+            out.write("  <room id=\"" + roomId(room) + "\" name=\"Room " + room + "\"");
+            for (int direction = 0; direction < 4; direction++) {
+                int neighbor = neighbors[room * 4 + direction];
+                if (neighbor != -1) {
+                    out.write(" " + MapData.directions[direction] + "=\"" + roomId(neighbor) + "\"");
+                    if (costs[room * 4 + direction] != 1) {
+                        out.write(" " + MapData.directions[direction] + MapFactory.COST_SUFFIX + "=\""
+                                + costs[room * 4 + direction] + "\"");
+                    }
+                }
+            }
+            if (nextItem < sortedItemRooms.length && sortedItemRooms[nextItem] == room) {
+                out.write(">\n    <object name=\"" + itemName(room) + "\"/>\n  </room>\n");
+                nextItem++;
+            }
+            else {
+                out.write("/>\n");
+            }
+        }
+        out.write("</map>\n");
+    }
+
+    void writeMap(String mapFilePath) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(Paths.get(mapFilePath), StandardCharsets.UTF_8)) {
+            writeMap(out);
+        }
+    }
+
+    /**
+     * @return the lines of a scenario.txt: a random starting room, then numItems distinct items
+     */
+    List<String> generateScenario(int numItems) {
+        if (numItems > itemRooms.length) {
+            throw new IllegalArgumentException("Only " + itemRooms.length + " items were placed in this map.");
+        }
+        ArrayList<String> lines = new ArrayList<>();
+        lines.add(roomId(random.nextInt(numRooms)));
+        int[] chosen = itemRooms.clone();
+        for (int i = 0; i < numItems; i++) {
+            int swap = i + random.nextInt(chosen.length - i);
+            int room = chosen[swap];
+            chosen[swap] = chosen[i];
+            chosen[i] = room;
+            lines.add(itemName(room));
+        }
+        return lines;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: MapGenerator GRID|TREE|RANDOM_SPARSE|CORRIDOR rooms seed outputDirectory [scenarios itemsPerScenario [maxCost]]");
+            System.exit(1);
+        }
+        int highestCost = args.length > 6 ? Integer.parseInt(args[6]) : 1;
+        MapGenerator generator = new MapGenerator(Shape.valueOf(args[0]), Integer.parseInt(args[1]), Long.parseLong(args[2]),
+                highestCost);
+        Files.createDirectories(Paths.get(args[3]));
+        generator.writeMap(Paths.get(args[3], "map.xml").toString());
+
+        int numScenarios = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+        int itemsPerScenario = args.length > 5 ? Integer.parseInt(args[5]) : 8;
+        for (int i = 0; i < numScenarios; i++) {
+            Files.write(Paths.get(args[3], "scenario" + i + ".txt"), generator.generateScenario(itemsPerScenario), StandardCharsets.UTF_8);
+        }
+    }
+}
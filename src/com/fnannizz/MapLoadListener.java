@@ -0,0 +1,13 @@
+package com.fnannizz;
+
+/**
+ * Receives progress updates while MapFactory streams a large map file.
+ */
+interface MapLoadListener {
+    /**
+     * @param roomsLoaded number of rooms read so far
+     * @param bytesRead number of bytes of the map file consumed so far
+     * @param totalBytes size of the map file
+     */
+    void onProgress(int roomsLoaded, long bytesRead, long totalBytes);
+}
@@ -0,0 +1,43 @@
+package com.fnannizz;
+
+/**
+ * The rooms, connections and items of a map as it was loaded. MapData keeps its edits in overrides of its own and
+ * never writes through, so storage is read-only.
+ *
+ * HeapMapStorage holds everything in Java arrays. OffHeapMapStorage reads a compiled map where it is mapped into
+ * memory, so the heap only holds a few buffer objects however large the map is. PartitionedMapStorage pages the
+ * regions of a partitioned map in and out as searches reach them, and is also an IndexedStorage.
+ */
+abstract class MapStorage {
+
+    abstract int getRoomCount();
+
+    abstract String getRoomId(int room);
+
+    abstract String getRoomName(int room);
+
+    /**
+     * @return the index of the room with the given id, or -1 if there is no such room
+     */
+    abstract int getRoomIndex(String id);
+
+    abstract int getDegree(int room);
+
+    abstract int getNeighbor(int room, int i);
+
+    abstract byte getDirection(int room, int i);
+
+    /**
+     * @return the cost of the i-th connection leaving a room, 1 if the map gives no costs
+     */
+    abstract int getCost(int room, int i);
+
+    /**
+     * @return the highest cost of any connection, 1 if every connection costs 1
+     */
+    abstract int getMaxCost();
+
+    abstract int getItemCount(int room);
+
+    abstract String getItem(int room, int i);
+}
@@ -0,0 +1,64 @@
+package com.fnannizz;
+
+import java.util.function.Consumer;
+
+/**
+ * The published versions of a map that is solved on by many threads while it is being edited.
+ *
+ * Readers pin the current version with current() and use it for as long as they like; published versions are
+ * frozen, so a solve sees the same map from start to finish without taking a lock. Writers call edit, which makes
+ * its changes to a copy of the current version and then publishes the copy in one volatile write. Writers are
+ * serialized with each other, and an edit that throws publishes nothing, so readers never see half an edit.
+ *
+ * A version is only kept alive by the readers still pinning it. Hub labels for the versions are built by one
+ * HubLabeler, which works on the latest version asked for, until close is called.
+ */
+class MapVersions {
+    private volatile MapData current;
+    private volatile long version;
+    private final HubLabeler hubLabeler;
+
+    /**
+     * @param initial the map as loaded, which becomes version 1 and can no longer be edited directly
+     */
+    MapVersions(MapData initial) {
+        initial.freeze();
+        hubLabeler = initial.getHubLabeler();
+        current = initial;
+        version = 1;
+    }
+
+    /**
+     * @return the latest published version, which never changes
+     */
+    MapData current() {
+        return current;
+    }
+
+    /**
+     * @return the number of the latest published version, starting from 1
+     */
+    long getVersion() {
+        return version;
+    }
+
+    /**
+     * Apply edits to a copy of the current version and publish it, batching any number of changes into one version.
+     * @return the new version
+     */
+    synchronized MapData edit(Consumer<MapData> edits) {
+        MapData next = new MapData(current);
+        edits.accept(next);
+        next.freeze();
+        version++;
+        current = next;
+        return next;
+    }
+
+    /**
+     * Stop building hub labels for any version. Labels already built stay in use.
+     */
+    void close() {
+        hubLabeler.close();
+    }
+}
@@ -0,0 +1,15 @@
+package com.fnannizz;
+
+/**
+ * Receives one measurement each time an instrumented phase finishes. Set one on SolverOptions to enable metrics;
+ * implementations may be called from several threads at once.
+ */
+interface MetricsSink {
+
+    /**
+     * @param nanos wall-clock time spent in the phase
+     * @param count how much work the phase did, in the units of phase.getCountLabel()
+     * @param allocatedBytes bytes allocated by the calling thread during the phase, or -1 if the JVM can't tell
+     */
+    void record(SolvePhase phase, long nanos, long count, long allocatedBytes);
+}
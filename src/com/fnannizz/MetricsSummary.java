@@ -0,0 +1,58 @@
+package com.fnannizz;
+
+import java.io.PrintStream;
+
+/**
+ * A MetricsSink that totals every measurement by phase, for the summary Main prints with --metrics.
+ */
+class MetricsSummary implements MetricsSink {
+    private final int numPhases = SolvePhase.values().length;
+    private final long[] calls = new long[numPhases];
+    private final long[] nanos = new long[numPhases];
+    private final long[] maxNanos = new long[numPhases];
+    private final long[] counts = new long[numPhases];
+    private final long[] allocatedBytes = new long[numPhases];
+
+    @Override
+    public synchronized void record(SolvePhase phase, long phaseNanos, long count, long phaseAllocatedBytes) {
+        int i = phase.ordinal();
+        calls[i]++;
+        nanos[i] += phaseNanos;
+        maxNanos[i] = Math.max(maxNanos[i], phaseNanos);
+        counts[i] += count;
+        if (phaseAllocatedBytes > 0) {
+            allocatedBytes[i] += phaseAllocatedBytes;
+        }
+    }
+
+    synchronized long getCalls(SolvePhase phase) {
+        return calls[phase.ordinal()];
+    }
+
+    synchronized long getNanos(SolvePhase phase) {
+        return nanos[phase.ordinal()];
+    }
+
+    synchronized long getCount(SolvePhase phase) {
+        return counts[phase.ordinal()];
+    }
+
+    synchronized long getAllocatedBytes(SolvePhase phase) {
+        return allocatedBytes[phase.ordinal()];
+    }
+
+    /**
+     * Print one line per phase that ran: calls, total and slowest time, work done and bytes allocated.
+     */
+    synchronized void print(PrintStream out) {
+        out.println(String.format("%-20s %8s %12s %12s %16s %14s", "phase", "calls", "total ms", "max ms", "count", "allocated"));
+        for (SolvePhase phase : SolvePhase.values()) {
+            int i = phase.ordinal();
+            if (calls[i] == 0) {
+                continue;
+            }
+            out.println(String.format("%-20s %8d %12.3f %12.3f %16d %14d  (%s)", phase, calls[i], nanos[i] / 1e6,
+                    maxNanos[i] / 1e6, counts[i], allocatedBytes[i], phase.getCountLabel()));
+        }
+    }
+}
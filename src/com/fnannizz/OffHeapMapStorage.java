@@ -0,0 +1,214 @@
+package com.fnannizz;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Map storage read in place from the sections of a memory-mapped compiled map (see BinaryMapFormat). Connections
+ * and items are read straight out of the mapping, and strings are decoded from the string pool each time they are
+ * asked for, which only happens when reading scenarios and writing solutions.
+ *
+ * The connections entering each room and each room's component are read from the mapping too, so neither MapData
+ * nor ConnectivityIndex has to work them out on the heap.
+ *
+ * Looking rooms up by id needs a hash table, which the compiled format doesn't store. It is built once when the
+ * map is opened, in a direct buffer of two to four ints per room. Only reads use the buffers' absolute accessors,
+ * so any number of threads can share one storage.
+ */
+class OffHeapMapStorage extends MapStorage implements IndexedStorage {
+    private final int numRooms;
+    private final IntBuffer roomTable;
+    private final IntBuffer adjacencyOffsets;
+    private final IntBuffer adjacentRooms;
+    private final ByteBuffer adjacentDirections;
+    private final IntBuffer adjacentCosts;
+    private final int maxCost;
+    private final IntBuffer incomingOffsets;
+    private final IntBuffer incomingRooms;
+    private final IntBuffer components;
+    private final int numComponents;
+    private final IntBuffer itemOffsets;
+    private final IntBuffer itemStrings;
+    private final IntBuffer stringOffsets;
+    private final ByteBuffer stringBytes;
+
+    /**
+     * Open addressing table of room index + 1 by hash of the room id, 0 for an empty slot.
+     */
+    private final IntBuffer roomIndex;
+    private final int roomIndexMask;
+
+    /**
+     * @param costs null if every connection costs 1
+     */
+    OffHeapMapStorage(int numRooms, IntBuffer roomTable, IntBuffer adjacencyOffsets, IntBuffer adjacentRooms,
+                      ByteBuffer adjacentDirections, IntBuffer costs, IntBuffer incomingOffsets,
+                      IntBuffer incomingRooms, IntBuffer components, int numComponents, IntBuffer itemOffsets,
+                      IntBuffer itemStrings, IntBuffer stringOffsets, ByteBuffer stringBytes) {
+        this.numRooms = numRooms;
+        this.roomTable = roomTable;
+        this.adjacencyOffsets = adjacencyOffsets;
+        this.adjacentRooms = adjacentRooms;
+        this.adjacentDirections = adjacentDirections;
+        this.adjacentCosts = costs;
+        int highestCost = 1;
+        for (int slot = 0; costs != null && slot < costs.limit(); slot++) {
+            highestCost = Math.max(highestCost, costs.get(slot));
+        }
+        this.maxCost = highestCost;
+        this.incomingOffsets = incomingOffsets;
+        this.incomingRooms = incomingRooms;
+        this.components = components;
+        this.numComponents = numComponents;
+        this.itemOffsets = itemOffsets;
+        this.itemStrings = itemStrings;
+        this.stringOffsets = stringOffsets;
+        this.stringBytes = stringBytes;
+
+        int capacity = Integer.highestOneBit(Math.max(1, numRooms) * 2 - 1) << 1;
+        roomIndex = ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder()).asIntBuffer();
+        roomIndexMask = capacity - 1;
+        for (int room = 0; room < numRooms; room++) {
+            int idString = roomTable.get(room * 2);
+            int slot = hash(stringOffsets.get(idString), stringOffsets.get(idString + 1)) & roomIndexMask;
+            while (roomIndex.get(slot) != 0) {
+                slot = (slot + 1) & roomIndexMask;
+            }
+            roomIndex.put(slot, room + 1);
+        }
+    }
+
+    @Override
+    int getRoomCount() {
+        return numRooms;
+    }
+
+    @Override
+    String getRoomId(int room) {
+        return getString(roomTable.get(room * 2));
+    }
+
+    @Override
+    String getRoomName(int room) {
+        return getString(roomTable.get(room * 2 + 1));
+    }
+
+    @Override
+    int getRoomIndex(String id) {
+        byte[] encoded = id.getBytes(StandardCharsets.UTF_8);
+        for (int slot = hashId(encoded) & roomIndexMask; roomIndex.get(slot) != 0; slot = (slot + 1) & roomIndexMask) {
+            int room = roomIndex.get(slot) - 1;
+            if (stringEquals(roomTable.get(room * 2), encoded)) {
+                return room;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    int getDegree(int room) {
+        return adjacencyOffsets.get(room + 1) - adjacencyOffsets.get(room);
+    }
+
+    @Override
+    int getNeighbor(int room, int i) {
+        return adjacentRooms.get(adjacencyOffsets.get(room) + i);
+    }
+
+    @Override
+    byte getDirection(int room, int i) {
+        return adjacentDirections.get(adjacencyOffsets.get(room) + i);
+    }
+
+    @Override
+    int getCost(int room, int i) {
+        return adjacentCosts == null ? 1 : adjacentCosts.get(adjacencyOffsets.get(room) + i);
+    }
+
+    @Override
+    int getMaxCost() {
+        return maxCost;
+    }
+
+    @Override
+    int getItemCount(int room) {
+        return itemOffsets.get(room + 1) - itemOffsets.get(room);
+    }
+
+    @Override
+    String getItem(int room, int i) {
+        return getString(itemStrings.get(itemOffsets.get(room) + i));
+    }
+
+    @Override
+    public int getIncomingDegree(int room) {
+        return incomingOffsets.get(room + 1) - incomingOffsets.get(room);
+    }
+
+    @Override
+    public int getIncomingNeighbor(int room, int i) {
+        return incomingRooms.get(incomingOffsets.get(room) + i);
+    }
+
+    @Override
+    public int getComponentCount() {
+        return numComponents;
+    }
+
+    @Override
+    public int getComponent(int room) {
+        return components.get(room);
+    }
+
+    private String getString(int string) {
+        int start = stringOffsets.get(string);
+        byte[] bytes = new byte[stringOffsets.get(string + 1) - start];
+        stringBytes.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private boolean stringEquals(int string, byte[] encoded) {
+        int start = stringOffsets.get(string);
+        if (stringOffsets.get(string + 1) - start != encoded.length) {
+            return false;
+        }
+        for (int i = 0; i < encoded.length; i++) {
+            if (stringBytes.get(start + i) != encoded[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Hash of the UTF-8 bytes from start to end of the string pool, matching hashId.
+     */
+    private int hash(int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = hash * 31 + stringBytes.get(i);
+        }
+        return mix(hash);
+    }
+
+    /**
+     * @return the hash of a room id's UTF-8 bytes used to look rooms up, also by PartitionedMapStorage
+     */
+    static int hashId(byte[] encoded) {
+        int hash = 0;
+        for (byte b : encoded) {
+            hash = hash * 31 + b;
+        }
+        return mix(hash);
+    }
+
+    /**
+     * Spread the bits of a polynomial hash so that masking off the low bits doesn't cluster similar ids.
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
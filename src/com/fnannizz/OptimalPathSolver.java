@@ -2,15 +2,47 @@ package com.fnannizz;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.IntConsumer;
 
 /**
  * Solves for the optimal path through a map to collect a given list of items. Implements the following algorithm:
  * 1) create a list of must-visit nodes (the start node, and each node that contains an item on the list)
- * 2) find the length of the shortest path between each pair of must-visit nodes using Dijkstra's algorithm
+ * 2) find the length of the shortest path between each pair of must-visit nodes using Dijkstra's algorithm,
+ *    one independent search per must-visit node, run in parallel on SolverOptions.getSearchPool once there are
+ *    enough of them. The k * k matrix of distances is read out of the searches, but each node's full shortest
+ *    path tree, one distance and one previous room per room in the map, is kept as well to rebuild paths from
  * 3) for every permutation of the list of must-visit nodes (always beginning with the start node), compute the
- *    total path length to find the shortest path through all the nodes
+ *    total path length to find the shortest path through all the nodes. Above configurable numbers of item
+ *    rooms, BranchAndBoundSolver and then the Held-Karp dynamic program in HeldKarpSolver find the same
+ *    optimum without trying every permutation. Beyond that, HeuristicOrderSolver settles for the best order it
+ *    can find within a time budget.
  * 4) once the optimal the must-visit nodes is found, rebuild the path by piecing together the path segments
+ *    and return it as a PathSolution, which a SolutionWriter can then print
+ *
+ * With SolverOptions.setTargetedSearch, step 2 instead runs breadth-first searches that stop once every
+ * must-visit node has been reached, keeping only the distances, and step 4 finds each of the k - 1 segments
+ * actually used with a bidirectional search. Nothing goes through the shortest path cache in that mode, which
+ * suits large maps where the items are close together.
+ *
+ * With SolverOptions.setPathMemoryBudgetBytes, step 2 only keeps the full shortest path trees while k of them fit
+ * in the budget. Past that, it runs the same early-stopping searches as targeted search, which build no trees and
+ * leave the shortest path cache alone, and step 4 finds the k - 1 segments actually used with a bidirectional
+ * search.
+ *
+ * With SolverOptions.setUseGraphReduction, step 2 instead runs Dijkstra's algorithm over the map's ReducedMap,
+ * where item-free corridors are single weighted edges and item-free dead ends are gone, and step 4 expands the
+ * chosen segments back into the original rooms.
+ *
+ * With SolverOptions.setUseHubLabels, step 2 instead reads each distance off the map's HubLabels, with no search
+ * at all, and step 4 follows the labels from room to room along each chosen segment. Until the map has labels,
+ * which are built in the background after an edit, both steps search as they do with targeted search.
+ *
+ * With SolverOptions.setUseHierarchicalSearch, step 2 instead runs Dijkstra's algorithm over the entrances of the
+ * map's HierarchicalMap, and step 4 refines only the chosen segments into rooms, one cluster at a time.
  *
  * There is an important performance trade-off in this implementation of the algorithm. The memory needed to store
  * all possible paths as they are determined is considerable - it increases the memory usage by
@@ -27,78 +59,289 @@ import java.util.Objects;
 class OptimalPathSolver {
 
     private Integer shortestPathLength;
-    private ArrayList<PairStringInteger> shortestPath;
-    private ShortestPathData[][] shortestPaths;
+    private boolean shortestPathProvenOptimal;
+    private ArrayList<PairIntInteger> shortestPath;
+    private ShortestPathData[] shortestPaths;
+    private ReducedMap.Search[] reducedSearches;
+    private HierarchicalMap.Search[] hierarchicalSearches;
+    private HubLabels hubLabels;
+    private int[] distances;
+    private long permutationsEvaluated;
+    private final SolverOptions options;
+
+    /**
+     * A shortest path tree holds a distance and a previous room, one int each, for every room in the map.
+     */
+    private static final int BYTES_PER_TREE_ROOM = 8;
 
     OptimalPathSolver() {
+        this(new SolverOptions());
+    }
+
+    OptimalPathSolver(SolverOptions solverOptions) {
         shortestPathLength = Integer.MAX_VALUE;
+        options = solverOptions;
     }
 
     /**
      * Main method of OptimalPathSolver, which relies on internal helper methods to compute the shortest path
      * through a map that collects a certain set of items.
+     * @return the path found, or PathSolution.noPath() if the items can't all be reached
      */
-    void findOptimalPath(MapData mapData, ArrayList<String> neededItems, String startingLocation) throws InvalidScenarioException {
+    PathSolution findOptimalPath(MapData mapData, List<String> neededItems, String startingLocation) throws InvalidScenarioException {
 
         // Make sure to reset everything if the class is being reused.
+        shortestPathProvenOptimal = true;
         if (shortestPathLength != Integer.MAX_VALUE) {
             shortestPathLength = Integer.MAX_VALUE;
             shortestPath.clear();
         }
 
+        MetricsSink metricsSink = options.getMetricsSink();
+
         // Determine the set of must-visit nodes based on the needed items
-        ArrayList<String> locationsOfNeededItems = getNeededNodes(mapData, startingLocation, neededItems);
+        PhaseTimer timer = PhaseTimer.start(SolvePhase.ITEM_LOOKUP, metricsSink);
+        ArrayList<Integer> locationsOfNeededItems = getNeededNodes(mapData, mapData.getRoomIndex(startingLocation), neededItems);
+        timer.stop(neededItems.size());
         Integer numMustVisitNodes = locationsOfNeededItems.size();
-        shortestPaths = new ShortestPathData[numMustVisitNodes][numMustVisitNodes];
-
-        // Compute the shortest path between every pair of must-visit nodes
-        for (int start = 0; start < numMustVisitNodes; start++) {
-            String currentStartNode = locationsOfNeededItems.get(start);
 
-            ShortestPathData shortestPathData = ShortestPathSolver.findShortestPathFromNode(currentStartNode, mapData.roomMap);
-
-            // update the shortest paths registry
-            for (int end = 0; end < numMustVisitNodes; end++) {
-                shortestPaths[start][end] = shortestPathData;
-            }
+        reducedSearches = null;
+        hierarchicalSearches = null;
+        hubLabels = null;
+        long treeBytes = (long) numMustVisitNodes * mapData.getRoomCount() * BYTES_PER_TREE_ROOM;
+        if (options.getUseGraphReduction()) {
+            shortestPaths = null;
+            distances = findReducedDistances(mapData.getReducedMap(), locationsOfNeededItems);
+        }
+        else if (options.getUseHubLabels() && (hubLabels = mapData.getHubLabels()) != null) {
+            shortestPaths = null;
+            distances = findLabelDistances(hubLabels, locationsOfNeededItems);
+        }
+        else if (options.getUseHierarchicalSearch()) {
+            shortestPaths = null;
+            distances = findHierarchicalDistances(mapData.getHierarchicalMap(), locationsOfNeededItems);
+        }
+        else if (options.getTargetedSearch() || options.getUseHubLabels() || treeBytes > options.getPathMemoryBudgetBytes()) {
+            shortestPaths = null;
+            distances = findTargetedDistances(mapData, locationsOfNeededItems);
+        }
+        else {
+            findShortestPathTrees(mapData, locationsOfNeededItems);
+            distances = getDistanceMatrix(locationsOfNeededItems);
         }
 
         // We need to be able to reorder this list, while still maintaining knowledge of the original index
-        // of the room id in locationsOfNeededItems. This is how we access the matrix of shortest paths.
-        // Because Collections.swap requires a List type, we use a list of room id-index pairs rather than something
-        // like a hash map.
-        ArrayList<PairStringInteger> roomIdsAndLocationIndices = new ArrayList<>();
+        // of the room in locationsOfNeededItems. This is how we access the matrix of shortest paths.
+        // Because Collections.swap requires a List type, we use a list of room index-location index pairs rather
+        // than something like a hash map.
+        ArrayList<PairIntInteger> roomIdsAndLocationIndices = new ArrayList<>();
         for (int i = 0; i < numMustVisitNodes; i++) {
-            roomIdsAndLocationIndices.add(new PairStringInteger(locationsOfNeededItems.get(i), i));
+            roomIdsAndLocationIndices.add(new PairIntInteger(locationsOfNeededItems.get(i), i));
         }
 
         // Find the permutation of must-visit nodes (always beginning with the start node) that
         // gives the shortest total path.
-        findBestPermutationOfMustVisitNodes(roomIdsAndLocationIndices, 1);
+        timer = PhaseTimer.start(SolvePhase.ORDER_SEARCH, metricsSink);
+        permutationsEvaluated = 0;
+        if (numMustVisitNodes - 1 > options.getHeuristicThreshold()) {
+            useVisitOrder(HeuristicOrderSolver.findBestOrder(distances, numMustVisitNodes,
+                    options.getHeuristicTimeBudgetMillis()), roomIdsAndLocationIndices);
+        }
+        else if (numMustVisitNodes - 1 > options.getHeldKarpThreshold()) {
+            useVisitOrder(HeldKarpSolver.findBestOrder(distances, numMustVisitNodes), roomIdsAndLocationIndices);
+        }
+        else if (numMustVisitNodes - 1 > options.getBranchAndBoundThreshold()) {
+            useVisitOrder(BranchAndBoundSolver.findBestOrder(distances, numMustVisitNodes, options.getSearchPool()),
+                    roomIdsAndLocationIndices);
+        }
+        else {
+            findBestPermutationOfMustVisitNodes(roomIdsAndLocationIndices, 1);
+        }
+        timer.stop(permutationsEvaluated);
 
         if (shortestPathLength == Integer.MAX_VALUE) {
-            System.out.println("Unable to find a path to collect all needed items.");
+            return PathSolution.noPath();
         }
-        else {
-            // Piece together the optimal path and print it.
-            ArrayList<String> optimalPath = reconstructShortestPath();
-            printSolution(mapData, optimalPath, neededItems);
+        // Piece together the optimal path.
+        timer = PhaseTimer.start(SolvePhase.PATH_RECONSTRUCTION, metricsSink);
+        ArrayList<Integer> optimalPath = shortestPaths == null ? findSegments(mapData) : reconstructShortestPath();
+        PathSolution solution = buildSolution(mapData, optimalPath, neededItems);
+        timer.stop(solution.getStepCount());
+        return solution;
+    }
+
+    /**
+     * Compute the shortest path tree from every must-visit node.
+     */
+    private void findShortestPathTrees(MapData mapData, ArrayList<Integer> locationsOfNeededItems) {
+        int numMustVisitNodes = locationsOfNeededItems.size();
+        shortestPaths = new ShortestPathData[numMustVisitNodes];
+        forEachSource(numMustVisitNodes, start -> shortestPaths[start] = findShortestPathTree(mapData, locationsOfNeededItems.get(start)));
+    }
+
+    /**
+     * @return the shortest path tree from one room, from the cache when possible. Only searches that actually run
+     * are timed; cache hits show up in the cache's own counters.
+     */
+    private ShortestPathData findShortestPathTree(MapData mapData, int startNode) {
+        ShortestPathData shortestPathData = null;
+        if (options.getUseShortestPathCache()) {
+            shortestPathData = mapData.getShortestPathCache().getIfPresent(startNode, options.getSearchEngine());
+        }
+        if (shortestPathData == null) {
+            PhaseTimer timer = PhaseTimer.start(SolvePhase.SHORTEST_PATH_SEARCH, options.getMetricsSink());
+            shortestPathData = ShortestPathSolver.findShortestPathFromNode(startNode, mapData, options.getSearchEngine());
+            timer.stop(shortestPathData.getNodesExpanded());
+            if (options.getUseShortestPathCache()) {
+                mapData.getShortestPathCache().put(startNode, options.getSearchEngine(), shortestPathData);
+            }
+        }
+        return shortestPathData;
+    }
+
+    /**
+     * Run search for every must-visit node index. Each search is independent and only writes its own slot or row
+     * of the results, so above SolverOptions.getParallelSearchThreshold they are forked onto the search pool;
+     * invoking the pool waits for all of them, which also publishes their results to this thread.
+     */
+    private void forEachSource(int numMustVisitNodes, IntConsumer search) {
+        if (numMustVisitNodes < options.getParallelSearchThreshold()) {
+            for (int start = 0; start < numMustVisitNodes; start++) {
+                search.accept(start);
+            }
+            return;
+        }
+        ForkJoinTask<?>[] tasks = new ForkJoinTask<?>[numMustVisitNodes];
+        for (int start = 0; start < numMustVisitNodes; start++) {
+            int source = start;
+            tasks[start] = ForkJoinTask.adapt(() -> search.accept(source));
+        }
+        options.getSearchPool().invoke(ForkJoinTask.adapt(() -> ForkJoinTask.invokeAll(tasks)));
+    }
+
+    /**
+     * Fill the k * k distance matrix with one early-stopping search per must-visit node.
+     */
+    private int[] findTargetedDistances(MapData mapData, ArrayList<Integer> locationsOfNeededItems) {
+        int numMustVisitNodes = locationsOfNeededItems.size();
+        int[] targets = new int[numMustVisitNodes];
+        for (int i = 0; i < numMustVisitNodes; i++) {
+            targets[i] = locationsOfNeededItems.get(i);
         }
+        int[] matrix = new int[numMustVisitNodes * numMustVisitNodes];
+        forEachSource(numMustVisitNodes, start -> {
+            int[] row = new int[numMustVisitNodes];
+            PhaseTimer timer = PhaseTimer.start(SolvePhase.SHORTEST_PATH_SEARCH, options.getMetricsSink());
+            int nodesExpanded = ShortestPathSolver.findDistancesToTargets(targets[start], targets, mapData, row);
+            timer.stop(nodesExpanded);
+            System.arraycopy(row, 0, matrix, start * numMustVisitNodes, numMustVisitNodes);
+        });
+        return matrix;
+    }
+
+    /**
+     * Fill the k * k distance matrix with one search of the reduced map per must-visit node, keeping the searches
+     * to expand the chosen segments from.
+     */
+    private int[] findReducedDistances(ReducedMap reducedMap, ArrayList<Integer> locationsOfNeededItems) {
+        int numMustVisitNodes = locationsOfNeededItems.size();
+        reducedSearches = new ReducedMap.Search[numMustVisitNodes];
+        int[] matrix = new int[numMustVisitNodes * numMustVisitNodes];
+        forEachSource(numMustVisitNodes, start -> {
+            PhaseTimer timer = PhaseTimer.start(SolvePhase.SHORTEST_PATH_SEARCH, options.getMetricsSink());
+            reducedSearches[start] = reducedMap.searchFrom(locationsOfNeededItems.get(start));
+            timer.stop(reducedSearches[start].getNodesExpanded());
+            for (int end = 0; end < numMustVisitNodes; end++) {
+                matrix[start * numMustVisitNodes + end] = reducedMap.distanceTo(reducedSearches[start],
+                        locationsOfNeededItems.get(end));
+            }
+        });
+        return matrix;
+    }
+
+    /**
+     * Fill the k * k distance matrix with one hub label query per pair of must-visit nodes.
+     */
+    private int[] findLabelDistances(HubLabels labels, ArrayList<Integer> locationsOfNeededItems) {
+        int numMustVisitNodes = locationsOfNeededItems.size();
+        int[] matrix = new int[numMustVisitNodes * numMustVisitNodes];
+        for (int start = 0; start < numMustVisitNodes; start++) {
+            for (int end = 0; end < numMustVisitNodes; end++) {
+                matrix[start * numMustVisitNodes + end] = labels.distance(locationsOfNeededItems.get(start),
+                        locationsOfNeededItems.get(end));
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Fill the k * k distance matrix with one search of the hierarchical map's entrances per must-visit node,
+     * keeping the searches to refine the chosen segments from.
+     */
+    private int[] findHierarchicalDistances(HierarchicalMap hierarchicalMap, ArrayList<Integer> locationsOfNeededItems) {
+        int numMustVisitNodes = locationsOfNeededItems.size();
+        HierarchicalMap.Endpoint[] endpoints = new HierarchicalMap.Endpoint[numMustVisitNodes];
+        forEachSource(numMustVisitNodes, node -> endpoints[node] = hierarchicalMap.endpoint(locationsOfNeededItems.get(node)));
+        hierarchicalSearches = new HierarchicalMap.Search[numMustVisitNodes];
+        int[] matrix = new int[numMustVisitNodes * numMustVisitNodes];
+        forEachSource(numMustVisitNodes, start -> {
+            PhaseTimer timer = PhaseTimer.start(SolvePhase.SHORTEST_PATH_SEARCH, options.getMetricsSink());
+            hierarchicalSearches[start] = hierarchicalMap.searchFrom(endpoints[start], endpoints);
+            timer.stop(hierarchicalSearches[start].getNodesExpanded());
+            for (int end = 0; end < numMustVisitNodes; end++) {
+                matrix[start * numMustVisitNodes + end] = hierarchicalMap.distanceTo(hierarchicalSearches[start], end);
+            }
+        });
+        return matrix;
+    }
+
+    /**
+     * Find the rooms along each segment of the chosen order: by expanding the reduced map's or refining the
+     * hierarchical map's paths when either is in use, by following the hub labels when they are, and otherwise
+     * with a bidirectional search.
+     */
+    private ArrayList<Integer> findSegments(MapData mapData) {
+        int numMustVisitNodes = shortestPath.size();
+        ArrayList<Integer> path = new ArrayList<>();
+        path.add(shortestPath.get(0).getIndex());
+        for (int i = 1; i < numMustVisitNodes; i++) {
+            int from = shortestPath.get(i - 1).getInteger();
+            int to = shortestPath.get(i).getInteger();
+            int[] segment;
+            if (reducedSearches != null) {
+                segment = mapData.getReducedMap().pathTo(reducedSearches[from], shortestPath.get(i).getIndex());
+            }
+            else if (hierarchicalSearches != null) {
+                segment = mapData.getHierarchicalMap().pathTo(hierarchicalSearches[from], to);
+            }
+            else if (hubLabels != null) {
+                segment = hubLabels.pathBetween(shortestPath.get(i - 1).getIndex(), shortestPath.get(i).getIndex());
+            }
+            else {
+                segment = ShortestPathSolver.findPathBetween(shortestPath.get(i - 1).getIndex(), shortestPath.get(i).getIndex(), mapData);
+            }
+            for (int j = 1; j < segment.length; j++) {
+                path.add(segment[j]);
+            }
+        }
+        return path;
     }
 
     /**
      * Determine the list of must-visit nodes - nodes that contain an item on our list of items to collect, or the starting node.
      */
-    private ArrayList<String> getNeededNodes(MapData mapData, String startingLocation, ArrayList<String> neededItems) throws InvalidScenarioException {
-        ArrayList<String> locationsOfNeededItems = mapData.getLocationsOfNeededItems(neededItems);
+    private ArrayList<Integer> getNeededNodes(MapData mapData, int startingLocation, List<String> neededItems) throws InvalidScenarioException {
+        ArrayList<Integer> locationsOfNeededItems = new ArrayList<>();
 
-        // The number of must-visit nodes is the number of nodes containing objects we need, plus the starting node if
-        // it isn't already in the list of must-visits. The starting node must be the first node in the list, so
-        // remove it from it's original location if needed.
-        if (locationsOfNeededItems.contains(startingLocation)) {
-            locationsOfNeededItems.remove(startingLocation);
+        // The number of must-visit nodes is the number of distinct nodes containing objects we need, plus the
+        // starting node if it isn't already in the list of must-visits. The starting node must be the first node
+        // in the list.
+        locationsOfNeededItems.add(startingLocation);
+        for (Integer location : mapData.getLocationsOfNeededItems(neededItems)) {
+            if (!locationsOfNeededItems.contains(location)) {
+                locationsOfNeededItems.add(location);
+            }
         }
-        locationsOfNeededItems.add(0, startingLocation);
 
         return locationsOfNeededItems;
     }
@@ -107,7 +350,7 @@ class OptimalPathSolver {
      * Run through every permutation of the list of must-visit nodes (always beginning with the starting node)
      * and update the shortest path tracking variables if a new shortest path is found.
      */
-    private void findBestPermutationOfMustVisitNodes(ArrayList<PairStringInteger> array, Integer index){
+    private void findBestPermutationOfMustVisitNodes(ArrayList<PairIntInteger> array, Integer index){
         if (Objects.equals(index, array.size())) {
             computePathLength(array);
             return;
@@ -120,12 +363,48 @@ class OptimalPathSolver {
     }
 
     /**
-     * Compute the path length for a given permutation.
+     * Flatten the distances between must-visit nodes into a k * k row-major matrix of primitive ints.
+     */
+    private int[] getDistanceMatrix(ArrayList<Integer> locationsOfNeededItems) {
+        int numMustVisitNodes = locationsOfNeededItems.size();
+        int[] distances = new int[numMustVisitNodes * numMustVisitNodes];
+        for (int start = 0; start < numMustVisitNodes; start++) {
+            for (int end = 0; end < numMustVisitNodes; end++) {
+                distances[start * numMustVisitNodes + end] = shortestPaths[start].getDistance(locationsOfNeededItems.get(end));
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Record an order found by one of the ordering solvers as the shortest path, in the form that
+     * reconstructShortestPath expects.
      */
-    private void computePathLength(ArrayList<PairStringInteger> roomIds) {
+    private void useVisitOrder(VisitOrder visitOrder, ArrayList<PairIntInteger> roomIdsAndLocationIndices) {
+        shortestPathLength = visitOrder.getLength();
+        shortestPathProvenOptimal = visitOrder.isProvenOptimal();
+        permutationsEvaluated = visitOrder.getOrdersEvaluated();
+        if (shortestPathLength != Integer.MAX_VALUE) {
+            shortestPath = new ArrayList<>();
+            for (int location : visitOrder.getOrder()) {
+                shortestPath.add(roomIdsAndLocationIndices.get(location));
+            }
+        }
+    }
+
+    /**
+     * Compute the path length for a given permutation. Permutations that need a segment with no path are skipped
+     * rather than summed, which would overflow.
+     */
+    private void computePathLength(ArrayList<PairIntInteger> roomIds) {
+        permutationsEvaluated++;
         Integer pathLength = 0;
         for (int i = 1; i < roomIds.size(); i++) {
-            pathLength += shortestPaths[roomIds.get(i-1).getInteger()][roomIds.get(i).getInteger()].getDistance(roomIds.get(i).getStr());
+            int distance = distances[roomIds.get(i-1).getInteger() * roomIds.size() + roomIds.get(i).getInteger()];
+            if (distance == Integer.MAX_VALUE) {
+                return;
+            }
+            pathLength += distance;
         }
         if (pathLength < shortestPathLength) {
             shortestPathLength = pathLength;
@@ -134,21 +413,21 @@ class OptimalPathSolver {
     }
 
     /**
-     * Piece together the optimal path from path segments stored in the shortestPaths matrix.
+     * Piece together the optimal path from the shortest path tree of each segment's first node.
      */
-    private ArrayList<String> reconstructShortestPath() {
+    private ArrayList<Integer> reconstructShortestPath() {
         Integer beginSectionIndex = shortestPath.size() - 2;
         Integer endSectionIndex = shortestPath.size() - 1;
-        ArrayList<String> path = new ArrayList<>();
+        ArrayList<Integer> path = new ArrayList<>();
         while (beginSectionIndex >= 0) {
-            String beginSectionNode = shortestPath.get(beginSectionIndex).getStr();
-            String endSectionNode = shortestPath.get(endSectionIndex).getStr();
+            int beginSectionNode = shortestPath.get(beginSectionIndex).getIndex();
+            int endSectionNode = shortestPath.get(endSectionIndex).getIndex();
 
             // Rerunning this algorithm repeatedly is expensive, but the extra time cost outweighs
             // the huge memory cost of storing all the potential paths. Instead of trying to keep
             // this information in memory, we rebuild the paths between critical nodes.
-            ShortestPathData shortestPathData = shortestPaths[shortestPath.get(beginSectionIndex).getInteger()][shortestPath.get(endSectionIndex).getInteger()];
-            while (!Objects.equals(endSectionNode, beginSectionNode)) {
+            ShortestPathData shortestPathData = shortestPaths[shortestPath.get(beginSectionIndex).getInteger()];
+            while (endSectionNode != beginSectionNode) {
                 path.add(endSectionNode);
                 endSectionNode = shortestPathData.getPrevious(endSectionNode);
 
@@ -164,31 +443,31 @@ class OptimalPathSolver {
     }
 
     /**
-     * Print the optimal path with directions and item updates.
+     * Record the rooms of the optimal path along with the direction out of each room and the needed items in it.
      */
-    private void printSolution(MapData mapData, ArrayList<String> path, ArrayList<String> neededItems) {
-        System.out.println("Found an optimal path of length " + shortestPathLength + ".");
-        System.out.println("-------------------------------------------------");
-
-        Integer nextRoomIndex = 1;
-        for (String roomId : path) {
-            System.out.println("Entering " + roomId + ".");
-            Room currentRoom = mapData.roomMap.get(roomId);
-            if (currentRoom.containsItems()) {
-                ArrayList<String> items = currentRoom.getItems();
-                for (String item : items) {
-                    if (neededItems.contains(item)) {
-                        System.out.println("Picking up " + item + ".");
-                    }
+    private PathSolution buildSolution(MapData mapData, ArrayList<Integer> path, List<String> neededItems) {
+        HashSet<String> needed = new HashSet<>(neededItems);
+        String[] rooms = new String[path.size()];
+        String[] moves = new String[path.size()];
+        String[][] pickups = new String[path.size()][];
+        ArrayList<String> pickedUp = new ArrayList<>();
+        for (int step = 0; step < path.size(); step++) {
+            int currentRoom = path.get(step);
+            rooms[step] = mapData.getRoomId(currentRoom);
+            pickedUp.clear();
+            for (int i = 0; i < mapData.getItemCount(currentRoom); i++) {
+                String item = mapData.getItem(currentRoom, i);
+                if (needed.contains(item)) {
+                    pickedUp.add(item);
                 }
             }
-            if (nextRoomIndex < path.size()) {
-                System.out.println("Moving " + currentRoom.getDirectionTo(path.get(nextRoomIndex)) + ".");
+            if (!pickedUp.isEmpty()) {
+                pickups[step] = pickedUp.toArray(new String[0]);
+            }
+            if (step + 1 < path.size()) {
+                moves[step] = mapData.getDirectionTo(currentRoom, path.get(step + 1));
             }
-
-            nextRoomIndex++;
         }
-        System.out.println("All items collected.");
+        return new PathSolution(shortestPathLength, shortestPathProvenOptimal, rooms, moves, pickups);
     }
 }
-
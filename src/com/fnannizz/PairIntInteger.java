@@ -0,0 +1,27 @@
+package com.fnannizz;
+
+/**
+ * Used to implement a priority queue with integer priority values, as well as grouping
+ * room indices to their numeric array index.
+ */
+class PairIntInteger implements Comparable<PairIntInteger> {
+    private int index;
+    private int integer;
+
+    PairIntInteger(int r, int i) {
+        index = r;
+        integer = i;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    int getInteger() {
+        return integer;
+    }
+
+    @Override public int compareTo(PairIntInteger other) {
+        return Integer.compare(this.integer, other.integer);
+    }
+}
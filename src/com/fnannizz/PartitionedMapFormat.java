@@ -0,0 +1,429 @@
+package com.fnannizz;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads and writes partitioned maps: a compiled map split into regions of consecutive rooms, each of which can be
+ * read on its own, for maps too large to keep in memory (see PartitionedMapStorage).
+ *
+ * Rooms are renumbered in breadth-first order, ignoring the direction of connections, so that rooms close together
+ * in the map end up in the same region and a search that stays in one part of the map only touches a few regions.
+ * Region r holds rooms r * 2^regionShift up to the next region. The same traversal finds each room's component.
+ *
+ * All values are little-endian and every section starts on a 4-byte boundary:
+ *
+ *   header         magic, version, room count, region shift, region count, max cost, component count,
+ *                  whether connections have costs, item index size, id table size, item string count
+ *   region table   regionCount + 1 file offsets, as longs
+ *   id table       idTableSize slots of room + 1 (0 when empty), open addressing by OffHeapMapStorage.hashId
+ *   item index     itemIndexSize pairs of (item name string, room), then the string pool for the item names
+ *   regions        one block per region, at the offsets in the region table
+ *
+ * A region block holds, for its n rooms, m connections, i incoming connections and t items:
+ *
+ *   counts         n, m, i, t, string count
+ *   connections    n + 1 offsets, m neighbouring rooms, then m costs if the map has costs
+ *   incoming       n + 1 offsets, i rooms
+ *   components     n component numbers
+ *   items          n + 1 offsets, t item name strings
+ *   room table     n pairs of (id string, name string)
+ *   string pool    string count + 1 byte offsets
+ *   directions     m direction codes, one byte each
+ *   string bytes   the UTF-8 bytes of the region's strings
+ *
+ * Rooms in a region block are numbered from 0; neighbours are numbered across the whole map.
+ */
+class PartitionedMapFormat {
+    static final int MAGIC = 0x54525048;    // the bytes "HPRT" read as a little-endian int
+    static final int VERSION = 1;
+
+    private static final int HEADER_INTS = 11;
+
+    /**
+     * @return true if the file starts with the partitioned map magic number
+     */
+    static boolean isPartitionedMap(String mapFilePath) throws IOException {
+        try (DataInputStream in = new DataInputStream(new FileInputStream(mapFilePath))) {
+            return Integer.reverseBytes(in.readInt()) == MAGIC;
+        }
+        catch (EOFException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Write mapData to outputFilePath split into regions of roomsPerRegion rooms, rounded up to a power of two.
+     * Needs the whole map in memory, so it is meant to be run once, offline.
+     */
+    static void write(MapData mapData, String outputFilePath, int roomsPerRegion) throws IOException {
+        int numRooms = mapData.getRoomCount();
+        int regionShift = 32 - Integer.numberOfLeadingZeros(Math.max(1, roomsPerRegion) - 1);
+        int numRegions = (numRooms + (1 << regionShift) - 1) >>> regionShift;
+
+        // Breadth-first order over connections in both directions, one component after another.
+        int[] order = new int[numRooms];
+        int[] newIndex = new int[numRooms];
+        int[] component = new int[numRooms];
+        Arrays.fill(newIndex, -1);
+        int numOrdered = 0;
+        int numComponents = 0;
+        for (int root = 0; root < numRooms; root++) {
+            if (newIndex[root] != -1) {
+                continue;
+            }
+            int head = numOrdered;
+            newIndex[root] = numOrdered;
+            order[numOrdered++] = root;
+            while (head < numOrdered) {
+                int room = order[head++];
+                component[newIndex[room]] = numComponents;
+                for (int i = 0; i < mapData.getDegree(room) + mapData.getIncomingDegree(room); i++) {
+                    int next = i < mapData.getDegree(room) ? mapData.getNeighbor(room, i)
+                            : mapData.getIncomingNeighbor(room, i - mapData.getDegree(room));
+                    if (newIndex[next] == -1) {
+                        newIndex[next] = numOrdered;
+                        order[numOrdered++] = next;
+                    }
+                }
+            }
+            numComponents++;
+        }
+
+        int idTableSize = Integer.highestOneBit(Math.max(1, numRooms) * 2 - 1) << 1;
+        int[] idTable = new int[idTableSize];
+        for (int room = 0; room < numRooms; room++) {
+            int slot = OffHeapMapStorage.hashId(mapData.getRoomId(order[room]).getBytes(StandardCharsets.UTF_8)) & (idTableSize - 1);
+            while (idTable[slot] != 0) {
+                slot = (slot + 1) & (idTableSize - 1);
+            }
+            idTable[slot] = room + 1;
+        }
+
+        StringPool itemNames = new StringPool();
+        Map<String, Integer> itemLocations = mapData.getItemLocations();
+        int[] itemIndex = new int[itemLocations.size() * 2];
+        int entry = 0;
+        for (Map.Entry<String, Integer> location : itemLocations.entrySet()) {
+            itemIndex[entry++] = itemNames.add(location.getKey());
+            itemIndex[entry++] = newIndex[location.getValue()];
+        }
+
+        try (FileChannel out = FileChannel.open(Paths.get(outputFilePath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long[] regionOffsets = new long[numRegions + 1];
+            long position = HEADER_INTS * 4L + regionOffsets.length * 8L;
+            position += write(out, position, ints(idTable));
+            position += write(out, position, ints(itemIndex));
+            position += write(out, position, ints(itemNames.getOffsets()));
+            position += write(out, position, padded(itemNames.getBytes()));
+
+            for (int region = 0; region < numRegions; region++) {
+                regionOffsets[region] = position;
+                int first = region << regionShift;
+                position += write(out, position, encodeRegion(mapData, order, newIndex, component, first,
+                        Math.min(numRooms, first + (1 << regionShift))));
+            }
+            regionOffsets[numRegions] = position;
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_INTS * 4 + regionOffsets.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(numRooms).putInt(regionShift).putInt(numRegions)
+                    .putInt(mapData.getMaxCost()).putInt(numComponents).putInt(hasCosts(mapData) ? 1 : 0)
+                    .putInt(itemLocations.size()).putInt(idTableSize).putInt(itemNames.size());
+            for (long offset : regionOffsets) {
+                header.putLong(offset);
+            }
+            header.flip();
+            write(out, 0, header);
+        }
+    }
+
+    private static ByteBuffer encodeRegion(MapData mapData, int[] order, int[] newIndex, int[] component,
+                                           int first, int end) {
+        int numRooms = end - first;
+        boolean costs = hasCosts(mapData);
+        StringPool strings = new StringPool();
+        IntArrayList connectionOffsets = new IntArrayList();
+        IntArrayList neighbors = new IntArrayList();
+        IntArrayList costList = new IntArrayList();
+        IntArrayList directions = new IntArrayList();
+        IntArrayList incomingOffsets = new IntArrayList();
+        IntArrayList incomingRooms = new IntArrayList();
+        IntArrayList itemOffsets = new IntArrayList();
+        IntArrayList items = new IntArrayList();
+        int[] roomTable = new int[numRooms * 2];
+        connectionOffsets.add(0);
+        incomingOffsets.add(0);
+        itemOffsets.add(0);
+        for (int room = first; room < end; room++) {
+            int original = order[room];
+            for (int i = 0; i < mapData.getDegree(original); i++) {
+                neighbors.add(newIndex[mapData.getNeighbor(original, i)]);
+                directions.add(mapData.getDirection(original, i));
+                costList.add(mapData.getCost(original, i));
+            }
+            for (int i = 0; i < mapData.getIncomingDegree(original); i++) {
+                incomingRooms.add(newIndex[mapData.getIncomingNeighbor(original, i)]);
+            }
+            for (int i = 0; i < mapData.getItemCount(original); i++) {
+                items.add(strings.add(mapData.getItem(original, i)));
+            }
+            connectionOffsets.add(neighbors.size());
+            incomingOffsets.add(incomingRooms.size());
+            itemOffsets.add(items.size());
+            roomTable[(room - first) * 2] = strings.add(mapData.getRoomId(original));
+            roomTable[(room - first) * 2 + 1] = strings.add(mapData.getRoomName(original));
+        }
+
+        int[] componentTable = new int[numRooms];
+        System.arraycopy(component, first, componentTable, 0, numRooms);
+        byte[] directionBytes = new byte[directions.size()];
+        for (int i = 0; i < directionBytes.length; i++) {
+            directionBytes[i] = (byte) directions.get(i);
+        }
+        ArrayList<ByteBuffer> sections = new ArrayList<>();
+        sections.add(ints(new int[] { numRooms, neighbors.size(), incomingRooms.size(), items.size(), strings.size() }));
+        sections.add(ints(connectionOffsets.toArray()));
+        sections.add(ints(neighbors.toArray()));
+        if (costs) {
+            sections.add(ints(costList.toArray()));
+        }
+        sections.add(ints(incomingOffsets.toArray()));
+        sections.add(ints(incomingRooms.toArray()));
+        sections.add(ints(componentTable));
+        sections.add(ints(itemOffsets.toArray()));
+        sections.add(ints(items.toArray()));
+        sections.add(ints(roomTable));
+        sections.add(ints(strings.getOffsets()));
+        sections.add(padded(directionBytes));
+        sections.add(padded(strings.getBytes()));
+
+        int size = 0;
+        for (ByteBuffer section : sections) {
+            size += section.remaining();
+        }
+        ByteBuffer block = ByteBuffer.allocate(size);
+        for (ByteBuffer section : sections) {
+            block.put(section);
+        }
+        block.flip();
+        return block;
+    }
+
+    private static boolean hasCosts(MapData mapData) {
+        return mapData.getMaxCost() > 1;
+    }
+
+    /**
+     * Open a partitioned map. Only the header, the region table, the id table and the item index are mapped now,
+     * together, since they sit in front of the regions; each region is mapped on its own when a search first
+     * reaches it, so the file may be larger than a single mapping can be. The storage keeps the file open for that.
+     */
+    static MapData read(String mapFilePath, int maxResidentRegions) throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(mapFilePath), StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_INTS * 4).order(ByteOrder.LITTLE_ENDIAN);
+            if (!readFully(channel, header, 0) || header.getInt() != MAGIC) {
+                throw new IOException(mapFilePath + " is not a partitioned map.");
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException(mapFilePath + " was partitioned with format version " + version
+                        + ", but only version " + VERSION + " can be read. Please partition it again.");
+            }
+            try {
+                int numRooms = header.getInt();
+                int regionShift = header.getInt();
+                int numRegions = header.getInt();
+                int maxCost = header.getInt();
+                int numComponents = header.getInt();
+                boolean costs = header.getInt() != 0;
+                int itemIndexSize = header.getInt();
+                int idTableSize = header.getInt();
+                int numItemStrings = header.getInt();
+                ByteBuffer regionTable = ByteBuffer.allocate((numRegions + 1) * 8).order(ByteOrder.LITTLE_ENDIAN);
+                if (!readFully(channel, regionTable, HEADER_INTS * 4)) {
+                    throw new IOException(mapFilePath + " is truncated.");
+                }
+                long[] regionOffsets = new long[numRegions + 1];
+                for (int region = 0; region <= numRegions; region++) {
+                    regionOffsets[region] = regionTable.getLong();
+                    if (region > 0 && (regionOffsets[region] < regionOffsets[region - 1]
+                            || regionOffsets[region] - regionOffsets[region - 1] > Integer.MAX_VALUE)) {
+                        throw new IOException("region " + (region - 1) + " has a bad size");
+                    }
+                }
+                if (regionOffsets[numRegions] > channel.size()) {
+                    throw new IOException(mapFilePath + " is truncated.");
+                }
+
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, regionOffsets[0]);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffer.position(HEADER_INTS * 4 + regionTable.capacity());
+                ByteBuffer idTable = buffer.slice(buffer.position(), idTableSize * 4).order(ByteOrder.LITTLE_ENDIAN);
+                buffer.position(buffer.position() + idTableSize * 4);
+                int[] itemIndex = BinaryMapFormat.readInts(buffer, itemIndexSize * 2);
+                int[] stringOffsets = BinaryMapFormat.readInts(buffer, numItemStrings + 1);
+                byte[] stringBytes = new byte[stringOffsets[numItemStrings]];
+                buffer.get(stringBytes);
+
+                HashMap<String, Integer> itemLocations = new HashMap<>(itemIndexSize * 2);
+                for (int entry = 0; entry < itemIndexSize; entry++) {
+                    int string = itemIndex[entry * 2];
+                    itemLocations.put(new String(stringBytes, stringOffsets[string],
+                            stringOffsets[string + 1] - stringOffsets[string], StandardCharsets.UTF_8), itemIndex[entry * 2 + 1]);
+                }
+                PartitionedMapStorage storage = new PartitionedMapStorage(channel, numRooms, regionShift, regionOffsets,
+                        maxCost, numComponents, costs, idTable.asIntBuffer(), maxResidentRegions);
+                return new MapData(storage, itemLocations);
+            }
+            catch (IOException | RuntimeException e) {
+                throw new IOException(mapFilePath + " is not a valid partitioned map: " + e, e);
+            }
+        }
+        catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Fill buffer from the file at position, and flip it to be read.
+     * @return false if the file ends first
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) {
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    /**
+     * Decode one region block, mapped or read on its own.
+     */
+    static PartitionedMapStorage.Region readRegion(ByteBuffer block, boolean costs) {
+        ByteBuffer buffer = block.order(ByteOrder.LITTLE_ENDIAN);
+        int numRooms = buffer.getInt();
+        int numConnections = buffer.getInt();
+        int numIncoming = buffer.getInt();
+        int numItems = buffer.getInt();
+        int numStrings = buffer.getInt();
+        int[] connectionOffsets = BinaryMapFormat.readInts(buffer, numRooms + 1);
+        int[] neighbors = BinaryMapFormat.readInts(buffer, numConnections);
+        int[] costList = costs ? BinaryMapFormat.readInts(buffer, numConnections) : null;
+        int[] incomingOffsets = BinaryMapFormat.readInts(buffer, numRooms + 1);
+        int[] incomingRooms = BinaryMapFormat.readInts(buffer, numIncoming);
+        int[] components = BinaryMapFormat.readInts(buffer, numRooms);
+        int[] itemOffsets = BinaryMapFormat.readInts(buffer, numRooms + 1);
+        int[] itemStrings = BinaryMapFormat.readInts(buffer, numItems);
+        int[] roomTable = BinaryMapFormat.readInts(buffer, numRooms * 2);
+        int[] stringOffsets = BinaryMapFormat.readInts(buffer, numStrings + 1);
+        byte[] directions = new byte[numConnections];
+        buffer.get(directions);
+        buffer.position(buffer.position() + padding(numConnections));
+        byte[] stringBytes = new byte[stringOffsets[numStrings]];
+        buffer.get(stringBytes);
+
+        String[] strings = new String[numStrings];
+        for (int i = 0; i < numStrings; i++) {
+            strings[i] = new String(stringBytes, stringOffsets[i], stringOffsets[i + 1] - stringOffsets[i], StandardCharsets.UTF_8);
+        }
+        String[] ids = new String[numRooms];
+        String[] names = new String[numRooms];
+        for (int room = 0; room < numRooms; room++) {
+            ids[room] = strings[roomTable[room * 2]];
+            names[room] = strings[roomTable[room * 2 + 1]];
+        }
+        String[] items = new String[numItems];
+        for (int item = 0; item < numItems; item++) {
+            items[item] = strings[itemStrings[item]];
+        }
+        return new PartitionedMapStorage.Region(ids, names, connectionOffsets, neighbors, directions, costList,
+                incomingOffsets, incomingRooms, components, itemOffsets, items);
+    }
+
+    private static long write(FileChannel out, long position, ByteBuffer bytes) throws IOException {
+        long written = 0;
+        while (bytes.hasRemaining()) {
+            written += out.write(bytes, position + written);
+        }
+        return written;
+    }
+
+    private static ByteBuffer ints(int[] values) {
+        ByteBuffer bytes = ByteBuffer.allocate(values.length * 4).order(ByteOrder.LITTLE_ENDIAN);
+        bytes.asIntBuffer().put(values);
+        return bytes;
+    }
+
+    private static ByteBuffer padded(byte[] values) {
+        ByteBuffer bytes = ByteBuffer.allocate(values.length + padding(values.length));
+        bytes.put(values);
+        bytes.rewind();
+        return bytes;
+    }
+
+    private static int padding(int bytes) {
+        return (4 - bytes % 4) % 4;
+    }
+
+    /**
+     * Deduplicating string pool, one per region and one for the item names.
+     */
+    private static class StringPool {
+        private final HashMap<String, Integer> positions = new HashMap<>();
+        private final ArrayList<byte[]> encoded = new ArrayList<>();
+        private int totalBytes;
+
+        int add(String value) {
+            Integer position = positions.get(value);
+            if (position == null) {
+                position = encoded.size();
+                positions.put(value, position);
+                byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+                encoded.add(bytes);
+                totalBytes += bytes.length;
+            }
+            return position;
+        }
+
+        int size() {
+            return encoded.size();
+        }
+
+        int[] getOffsets() {
+            int[] offsets = new int[encoded.size() + 1];
+            for (int i = 0; i < encoded.size(); i++) {
+                offsets[i + 1] = offsets[i] + encoded.get(i).length;
+            }
+            return offsets;
+        }
+
+        byte[] getBytes() {
+            byte[] bytes = new byte[totalBytes];
+            int position = 0;
+            for (byte[] value : encoded) {
+                System.arraycopy(value, 0, bytes, position, value.length);
+                position += value.length;
+            }
+            return bytes;
+        }
+    }
+}
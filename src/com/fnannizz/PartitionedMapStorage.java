@@ -0,0 +1,243 @@
+package com.fnannizz;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Map storage for a partitioned map (see PartitionedMapFormat), which keeps at most maxResidentRegions regions
+ * decoded on the heap at once. A region is mapped and decoded the first time one of its rooms is asked for,
+ * and when the budget is full the least recently used region, approximately, is dropped to make room for it: each
+ * region has a referenced bit, set on every access and cleared by a clock hand sweeping for a region to evict.
+ *
+ * Looking a region up doesn't lock, and a region once read never changes, so threads may keep using a region after
+ * it has been evicted. Only reading a region in is serialized. The room id hash table stays in the mapping.
+ */
+class PartitionedMapStorage extends MapStorage implements IndexedStorage {
+    private final FileChannel channel;
+    private final int numRooms;
+    private final int regionShift;
+    private final long[] regionOffsets;
+    private final int maxCost;
+    private final int numComponents;
+    private final boolean costs;
+    private final IntBuffer idTable;
+    private final int idTableMask;
+    private final int maxResidentRegions;
+
+    /**
+     * Decoded regions, null for the ones that aren't resident.
+     */
+    private final Region[] regions;
+    private final boolean[] referenced;
+    private int clockHand;
+    private int residentRegions;
+    private long regionLoads;
+
+    PartitionedMapStorage(FileChannel channel, int numRooms, int regionShift, long[] regionOffsets, int maxCost,
+                          int numComponents, boolean costs, IntBuffer idTable, int maxResidentRegions) {
+        this.channel = channel;
+        this.numRooms = numRooms;
+        this.regionShift = regionShift;
+        this.regionOffsets = regionOffsets;
+        this.maxCost = maxCost;
+        this.numComponents = numComponents;
+        this.costs = costs;
+        this.idTable = idTable;
+        this.idTableMask = idTable.limit() - 1;
+        this.maxResidentRegions = Math.max(1, maxResidentRegions);
+        regions = new Region[regionOffsets.length - 1];
+        referenced = new boolean[regions.length];
+    }
+
+    /**
+     * @return the number of regions decoded on the heap right now
+     */
+    synchronized int getResidentRegionCount() {
+        return residentRegions;
+    }
+
+    /**
+     * @return how many times a region has been read from the file, counting every time it was read again after
+     * being evicted
+     */
+    synchronized long getRegionLoads() {
+        return regionLoads;
+    }
+
+    int getRegionCount() {
+        return regions.length;
+    }
+
+    private Region region(int room) {
+        int index = room >>> regionShift;
+        Region region = regions[index];
+        if (region == null) {
+            return load(index);
+        }
+        referenced[index] = true;
+        return region;
+    }
+
+    private synchronized Region load(int index) {
+        Region region = regions[index];
+        if (region != null) {
+            return region;
+        }
+        while (residentRegions >= maxResidentRegions) {
+            if (regions[clockHand] != null) {
+                if (referenced[clockHand]) {
+                    referenced[clockHand] = false;
+                }
+                else {
+                    regions[clockHand] = null;
+                    residentRegions--;
+                }
+            }
+            clockHand = (clockHand + 1) % regions.length;
+        }
+        try {
+            region = PartitionedMapFormat.readRegion(channel.map(FileChannel.MapMode.READ_ONLY, regionOffsets[index],
+                    regionOffsets[index + 1] - regionOffsets[index]), costs);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Couldn't read region " + index + " of the map", e);
+        }
+        regions[index] = region;
+        referenced[index] = true;
+        residentRegions++;
+        regionLoads++;
+        return region;
+    }
+
+    private int local(int room) {
+        return room & ((1 << regionShift) - 1);
+    }
+
+    @Override
+    int getRoomCount() {
+        return numRooms;
+    }
+
+    @Override
+    String getRoomId(int room) {
+        return region(room).ids[local(room)];
+    }
+
+    @Override
+    String getRoomName(int room) {
+        return region(room).names[local(room)];
+    }
+
+    @Override
+    int getRoomIndex(String id) {
+        int slot = OffHeapMapStorage.hashId(id.getBytes(StandardCharsets.UTF_8)) & idTableMask;
+        for (; idTable.get(slot) != 0; slot = (slot + 1) & idTableMask) {
+            int room = idTable.get(slot) - 1;
+            if (getRoomId(room).equals(id)) {
+                return room;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    int getDegree(int room) {
+        Region region = region(room);
+        return region.connectionOffsets[local(room) + 1] - region.connectionOffsets[local(room)];
+    }
+
+    @Override
+    int getNeighbor(int room, int i) {
+        Region region = region(room);
+        return region.neighbors[region.connectionOffsets[local(room)] + i];
+    }
+
+    @Override
+    byte getDirection(int room, int i) {
+        Region region = region(room);
+        return region.directions[region.connectionOffsets[local(room)] + i];
+    }
+
+    @Override
+    int getCost(int room, int i) {
+        Region region = region(room);
+        return region.costs == null ? 1 : region.costs[region.connectionOffsets[local(room)] + i];
+    }
+
+    @Override
+    int getMaxCost() {
+        return maxCost;
+    }
+
+    @Override
+    int getItemCount(int room) {
+        Region region = region(room);
+        return region.itemOffsets[local(room) + 1] - region.itemOffsets[local(room)];
+    }
+
+    @Override
+    String getItem(int room, int i) {
+        Region region = region(room);
+        return region.items[region.itemOffsets[local(room)] + i];
+    }
+
+    @Override
+    public int getIncomingDegree(int room) {
+        Region region = region(room);
+        return region.incomingOffsets[local(room) + 1] - region.incomingOffsets[local(room)];
+    }
+
+    @Override
+    public int getIncomingNeighbor(int room, int i) {
+        Region region = region(room);
+        return region.incomingRooms[region.incomingOffsets[local(room)] + i];
+    }
+
+    @Override
+    public int getComponentCount() {
+        return numComponents;
+    }
+
+    @Override
+    public int getComponent(int room) {
+        return region(room).components[local(room)];
+    }
+
+    /**
+     * The decoded rooms of one region, numbered from 0 within the region.
+     */
+    static class Region {
+        final String[] ids;
+        final String[] names;
+        final int[] connectionOffsets;
+        final int[] neighbors;
+        final byte[] directions;
+        final int[] costs;
+        final int[] incomingOffsets;
+        final int[] incomingRooms;
+        final int[] components;
+        final int[] itemOffsets;
+        final String[] items;
+
+        /**
+         * @param costs null if every connection costs 1
+         */
+        Region(String[] ids, String[] names, int[] connectionOffsets, int[] neighbors, byte[] directions, int[] costs,
+               int[] incomingOffsets, int[] incomingRooms, int[] components, int[] itemOffsets, String[] items) {
+            this.ids = ids;
+            this.names = names;
+            this.connectionOffsets = connectionOffsets;
+            this.neighbors = neighbors;
+            this.directions = directions;
+            this.costs = costs;
+            this.incomingOffsets = incomingOffsets;
+            this.incomingRooms = incomingRooms;
+            this.components = components;
+            this.itemOffsets = itemOffsets;
+            this.items = items;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.fnannizz;
+
+/**
+ * The result of solving a scenario: the length of the path, the rooms it enters in order, the direction taken
+ * out of each room but the last, and the needed items picked up in each room. A solution only refers to rooms
+ * by id, so it can be kept and written out independently of the map it was solved on.
+ */
+class PathSolution {
+    private static final String[] NO_ITEMS = new String[0];
+
+    private final int length;
+    private final boolean provenOptimal;
+    private final String[] rooms;
+    private final String[] moves;
+    private final String[][] pickups;
+
+    /**
+     * @param rooms ids of the rooms entered, in order
+     * @param moves direction taken out of each room; the last entry is null
+     * @param pickups items picked up in each room
+     */
+    PathSolution(int l, boolean optimal, String[] rooms, String[] moves, String[][] pickups) {
+        length = l;
+        provenOptimal = optimal;
+        this.rooms = rooms;
+        this.moves = moves;
+        this.pickups = pickups;
+    }
+
+    /**
+     * @return a solution recording that no path collects every needed item
+     */
+    static PathSolution noPath() {
+        return new PathSolution(Integer.MAX_VALUE, true, null, null, null);
+    }
+
+    boolean isFound() {
+        return rooms != null;
+    }
+
+    /**
+     * @return the number of moves in the path, Integer.MAX_VALUE if there is no path
+     */
+    int getLength() {
+        return length;
+    }
+
+    /**
+     * @return false if the path was found by the heuristic solver and may not be the shortest
+     */
+    boolean isProvenOptimal() {
+        return provenOptimal;
+    }
+
+    /**
+     * @return the number of rooms entered, counting the starting room and every revisit
+     */
+    int getStepCount() {
+        return rooms == null ? 0 : rooms.length;
+    }
+
+    String getRoom(int step) {
+        return rooms[step];
+    }
+
+    /**
+     * @return the direction taken out of the room entered at this step, or null for the last step
+     */
+    String getMove(int step) {
+        return moves[step];
+    }
+
+    String[] getPickups(int step) {
+        return pickups[step] == null ? NO_ITEMS : pickups[step];
+    }
+}
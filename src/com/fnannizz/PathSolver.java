@@ -4,9 +4,6 @@ import org.xml.sax.SAXException;
 
 import javax.xml.parsers.ParserConfigurationException;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.io.BufferedReader;
-import java.io.FileReader;
 
 /**
  * This class provides a simplified interface and manages the shared data
@@ -14,8 +11,9 @@ import java.io.FileReader;
  */
 public class PathSolver {
     private MapData mapData;
-    private ArrayList<String> itemsToCollect;
-    private String startingLocation;
+    private Scenario scenario;
+    private final SolverOptions options = new SolverOptions();
+    private SolutionWriter solutionWriter = new TextSolutionWriter();
 
     /**
      * Constructor should not throw exceptions. Constructor call should always
@@ -23,23 +21,52 @@ public class PathSolver {
      * thrown.
      */
     PathSolver() {
-        itemsToCollect = new ArrayList<>();
     }
 
     /**
-     * Initialize map data from map.xml. Should always be called after constructor.
-     * @param mapFilePath path of map.xml
+     * Initialize map data from map.xml, or from a map compiled with Main --compile, as loadMap does with this
+     * solver's options. Should always be called after constructor.
+     * @param mapFilePath path of map.xml or of a compiled map
      * @throws ParserConfigurationException
      * @throws IOException
      * @throws SAXException
      */
     void initializeWithMap(String mapFilePath) throws ParserConfigurationException, IOException, SAXException {
-        mapData = MapFactory.makeMap(mapFilePath);
+        mapData = loadMap(mapFilePath, options);
     }
 
     /**
-     * Initialize scenario data from scenario.txt. Clears old scenario data between uses,
-     * allowing a map to be used with multiple scenarios.
+     * Load a map from map.xml, or from a map compiled with Main --compile, off the heap, reduced and with its
+     * hierarchical index or hub labels if the options ask for it, timing each phase.
+     * @param mapFilePath path of map.xml or of a compiled map
+     */
+    static MapData loadMap(String mapFilePath, SolverOptions options) throws ParserConfigurationException, IOException,
+            SAXException {
+        PhaseTimer timer = PhaseTimer.start(SolvePhase.MAP_PARSE, options.getMetricsSink());
+        MapData mapData = MapFactory.makeMap(mapFilePath, options);
+        timer.stop(mapData.getRoomCount());
+        if (options.getUseGraphReduction()) {
+            timer = PhaseTimer.start(SolvePhase.GRAPH_REDUCTION, options.getMetricsSink());
+            timer.stop(mapData.getReducedMap().getNodeCount());
+        }
+        if (options.getUseHierarchicalSearch()) {
+            timer = PhaseTimer.start(SolvePhase.HIERARCHY_BUILD, options.getMetricsSink());
+            mapData.setHierarchicalMap(HierarchicalMap.loadOrBuild(mapData, mapFilePath + HierarchicalMap.FILE_SUFFIX));
+            timer.stop(mapData.getHierarchicalMap().getEntranceCount());
+        }
+        if (options.getUseHubLabels()) {
+            timer = PhaseTimer.start(SolvePhase.HUB_LABELING, options.getMetricsSink());
+            String labelFilePath = mapFilePath + HubLabels.FILE_SUFFIX;
+            mapData.setHubLabels(HubLabels.loadOrBuild(mapData, labelFilePath));
+            mapData.setHubLabelFile(labelFilePath);
+            timer.stop(mapData.getHubLabels().getLabelEntryCount());
+        }
+        return mapData;
+    }
+
+    /**
+     * Initialize scenario data from scenario.txt, replacing any previous scenario. The map
+     * itself is left untouched, allowing a map to be used with multiple scenarios.
      * @param scenarioFilePath path of scenario.txt
      * @throws InvalidScenarioException
      */
@@ -47,53 +74,46 @@ public class PathSolver {
         if (mapData == null) {
             throw new InvalidScenarioException("Please initialize the map before specifying a scenario.");
         }
-
-        // Allow the mapData to be reused with multiple scenarios
-        if (itemsToCollect.size() > 0) {
-            itemsToCollect.clear();
-            mapData.clearItemLocations();
-        }
-
-        parseScenarioFile(scenarioFilePath);
+        // Forget the previous scenario even if this one turns out to be invalid.
+        scenario = null;
+        scenario = Scenario.readFromFile(scenarioFilePath, mapData);
     }
 
-    /*
-     * Parse scenario file and initialize starting:ocation and itemsToCollect.
+    /**
+     * Print the optimal path through the map given a list of items to collect.
+     * @throws InvalidScenarioException
+     * @throws IOException if the solution can't be written
      */
-    private void parseScenarioFile(String scenarioFilePath) throws InvalidScenarioException, IOException {
-        BufferedReader in = new BufferedReader(new FileReader(scenarioFilePath));
-        String str;
-        startingLocation = in.readLine();
-        if (startingLocation == null || !mapData.nodeExistsInMap(startingLocation)) {
-            throw new InvalidScenarioException("Invalid starting location.");
-        }
-
-        while ((str = in.readLine()) != null) {
-            itemsToCollect.add(str.toLowerCase());
+    void solve() throws InvalidScenarioException, IOException {
+        if (scenario == null) {
+            throw new InvalidScenarioException("Please provide a list of items to collect before attempting to solve.");
         }
+        OptimalPathSolver solver = new OptimalPathSolver(options);
+        PathSolution solution = solver.findOptimalPath(mapData, scenario.getItemsToCollect(), scenario.getStartingLocation());
+        PhaseTimer timer = PhaseTimer.start(SolvePhase.OUTPUT, options.getMetricsSink());
+        solutionWriter.write(solution, System.out);
+        timer.stop(solution.getStepCount());
+    }
 
-        if (itemsToCollect.size() < 1) {
-            throw new InvalidScenarioException("No items found in the scenario input file.");
-        }
+    /**
+     * Format used by every subsequent call to solve; text unless set otherwise.
+     */
+    void setSolutionWriter(SolutionWriter writer) {
+        solutionWriter = writer;
     }
 
     /**
-     * Print the optimal path through the map given a list of items to collect.
-     * @throws InvalidScenarioException
+     * Options used by every subsequent call to solve.
      */
-    void solve() throws InvalidScenarioException {
-        if (itemsToCollect.size() < 1) {
-            throw new InvalidScenarioException("Please provide a list of items to collect before attempting to solve.");
-        }
-        OptimalPathSolver solver = new OptimalPathSolver();
-        solver.findOptimalPath(mapData, itemsToCollect, startingLocation);
+    SolverOptions getOptions() {
+        return options;
     }
 
     /**
      * Print the list of items to be collected.
      */
     void printItemsToCollect() {
-        for (String item : itemsToCollect) {
+        for (String item : scenario.getItemsToCollect()) {
             System.out.println(item);
         }
     }
@@ -0,0 +1,424 @@
+package com.fnannizz;
+
+import java.util.Arrays;
+import java.util.PriorityQueue;
+
+/**
+ * A smaller graph with the same shortest paths between the rooms a solve can need, built from a MapData in two
+ * passes:
+ *
+ * 1) Dead ends without items are pruned: a room whose only connections are a two-way link to one other room is
+ *    removed, and removal repeats up the wing until it reaches a room that holds an item or branches.
+ * 2) Corridors are contracted: a run of item-free rooms that each have exactly two two-way links, to two
+ *    different rooms, becomes one weighted edge in each direction between the rooms at its ends.
+ *
+ * Every other room is kept as a node of the reduced graph. Item rooms are always kept, so every room a solve
+ * has to reach is a node; only the starting room may have been removed, and it enters the reduced graph through
+ * the ends of its corridor or the room its wing hangs off. Enough is recorded about each removed room and each
+ * contracted corridor to expand a path in the reduced graph back into the exact rooms of the original map.
+ *
+ * One-way connections, and two-way ones that cost more one way than the other, are never pruned or contracted,
+ * so they keep their rooms as nodes. A contracted corridor's edge costs the sum of the connections along it.
+ */
+class ReducedMap {
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final MapData mapData;
+    private final int numNodes;
+    private final int[] nodeOfRoom;
+    private final int[] roomOfNode;
+
+    // Reduced edges in CSR form. edgeChains holds chain * 2 + 1 for a corridor walked forwards, chain * 2 + 2 for
+    // one walked backwards, and 0 for a connection between two kept rooms.
+    private final int[] edgeOffsets;
+    private final int[] edgeTargets;
+    private final int[] edgeWeights;
+    private final int[] edgeChains;
+
+    // The rooms inside each corridor, in order from chainStart to chainEnd (both kept rooms).
+    private final int[] chainOffsets;
+    private final int[] chainRooms;
+    private final int[] chainStart;
+    private final int[] chainEnd;
+    private final int[] chainOfRoom;
+    private final int[] positionInChain;
+
+    // The next room towards the rest of the map for a pruned room, otherwise -1.
+    private final int[] prunedParent;
+
+    /**
+     * Shortest distances from one room to every node of the reduced graph, with enough to rebuild the paths.
+     */
+    class Search {
+        private final int room;
+        private final int[] distance;
+        private final int[] previousEdge;
+        private final int[] previousNode;
+        private final Entry[] entryOfNode;
+        private int nodesExpanded;
+
+        private Search(int start) {
+            room = start;
+            distance = new int[numNodes];
+            previousEdge = new int[numNodes];
+            previousNode = new int[numNodes];
+            entryOfNode = new Entry[numNodes];
+            Arrays.fill(distance, UNREACHABLE);
+            Arrays.fill(previousEdge, -1);
+        }
+
+        int getNodesExpanded() {
+            return nodesExpanded;
+        }
+    }
+
+    /**
+     * A way into the reduced graph from a room that may have been removed: the node reached, how far away it is,
+     * and the rooms walked to get there, not counting the node itself.
+     */
+    private static class Entry {
+        private final int node;
+        private final int offset;
+        private final int[] rooms;
+
+        Entry(int n, int o, int[] r) {
+            node = n;
+            offset = o;
+            rooms = r;
+        }
+    }
+
+    ReducedMap(MapData map) {
+        mapData = map;
+        int numRooms = mapData.getRoomCount();
+        boolean[] alive = new boolean[numRooms];
+        prunedParent = new int[numRooms];
+        Arrays.fill(prunedParent, -1);
+        for (int room = 0; room < numRooms; room++) {
+            alive[room] = !mapData.isRoomRemoved(room);
+        }
+
+        // Prune item-free dead ends, following each wing back towards the rest of the map.
+        IntArrayList candidates = new IntArrayList(numRooms);
+        for (int room = 0; room < numRooms; room++) {
+            candidates.add(room);
+        }
+        for (int i = 0; i < candidates.size(); i++) {
+            int room = candidates.get(i);
+            if (!alive[room]) {
+                continue;
+            }
+            int parent = twoWayNeighbors(mapData, room, alive, 1);
+            if (parent >= 0) {
+                alive[room] = false;
+                prunedParent[room] = parent;
+                candidates.add(parent);
+            }
+        }
+
+        // Keep every surviving room that isn't the inside of a corridor.
+        boolean[] corridor = new boolean[numRooms];
+        boolean[] kept = new boolean[numRooms];
+        for (int room = 0; room < numRooms; room++) {
+            corridor[room] = alive[room] && twoWayNeighbors(mapData, room, alive, 2) >= 0;
+            kept[room] = alive[room] && !corridor[room];
+        }
+
+        chainOfRoom = new int[numRooms];
+        positionInChain = new int[numRooms];
+        Arrays.fill(chainOfRoom, -1);
+        IntArrayList chainOffsetList = new IntArrayList();
+        IntArrayList chainRoomList = new IntArrayList();
+        IntArrayList chainStartRooms = new IntArrayList();
+        IntArrayList chainEndRooms = new IntArrayList();
+        IntArrayList chainCosts = new IntArrayList();
+        chainOffsetList.add(0);
+        for (int pass = 0; pass < 2; pass++) {
+            for (int room = 0; room < numRooms; room++) {
+                // Corridors closed into a loop have no kept room to start from, so the second pass keeps one room
+                // of each loop that is still unclaimed.
+                if (pass == 1 && corridor[room] && chainOfRoom[room] == -1) {
+                    kept[room] = true;
+                    corridor[room] = false;
+                }
+                if (!kept[room]) {
+                    continue;
+                }
+                for (int i = 0; i < mapData.getDegree(room); i++) {
+                    int next = mapData.getNeighbor(room, i);
+                    if (!corridor[next] || chainOfRoom[next] != -1) {
+                        continue;
+                    }
+                    int chain = chainStartRooms.size();
+                    int previous = room;
+                    int current = next;
+                    int cost = mapData.getCostTo(room, next);
+                    while (corridor[current]) {
+                        chainOfRoom[current] = chain;
+                        positionInChain[current] = chainRoomList.size() - chainOffsetList.get(chain);
+                        chainRoomList.add(current);
+                        int following = otherNeighbor(mapData, current, previous, alive);
+                        cost += mapData.getCostTo(current, following);
+                        previous = current;
+                        current = following;
+                    }
+                    chainCosts.add(cost);
+                    chainStartRooms.add(room);
+                    chainEndRooms.add(current);
+                    chainOffsetList.add(chainRoomList.size());
+                }
+            }
+        }
+
+        nodeOfRoom = new int[numRooms];
+        Arrays.fill(nodeOfRoom, -1);
+        IntArrayList keptRooms = new IntArrayList();
+        for (int room = 0; room < numRooms; room++) {
+            if (kept[room]) {
+                nodeOfRoom[room] = keptRooms.size();
+                keptRooms.add(room);
+            }
+        }
+        numNodes = keptRooms.size();
+        roomOfNode = keptRooms.toArray();
+        chainOffsets = chainOffsetList.toArray();
+        chainRooms = chainRoomList.toArray();
+        chainStart = chainStartRooms.toArray();
+        chainEnd = chainEndRooms.toArray();
+
+        // Every connection out of a kept room becomes an edge, either straight to another kept room or along
+        // the corridor it leads into.
+        IntArrayList targets = new IntArrayList();
+        IntArrayList weights = new IntArrayList();
+        IntArrayList chains = new IntArrayList();
+        edgeOffsets = new int[numNodes + 1];
+        for (int node = 0; node < numNodes; node++) {
+            int room = roomOfNode[node];
+            for (int i = 0; i < mapData.getDegree(room); i++) {
+                int next = mapData.getNeighbor(room, i);
+                if (kept[next]) {
+                    targets.add(nodeOfRoom[next]);
+                    weights.add(mapData.getCost(room, i));
+                    chains.add(0);
+                }
+                else if (corridor[next]) {
+                    int chain = chainOfRoom[next];
+                    if (chainStart[chain] == room && positionInChain[next] == 0) {
+                        targets.add(nodeOfRoom[chainEnd[chain]]);
+                        chains.add(chain * 2 + 1);
+                    }
+                    else {
+                        targets.add(nodeOfRoom[chainStart[chain]]);
+                        chains.add(chain * 2 + 2);
+                    }
+                    weights.add(chainCosts.get(chain));
+                }
+            }
+            edgeOffsets[node + 1] = targets.size();
+        }
+        edgeTargets = targets.toArray();
+        edgeWeights = weights.toArray();
+        edgeChains = chains.toArray();
+    }
+
+    /**
+     * @return the single room an item-free room is linked to both ways, at the same cost each way, when it has
+     * exactly wanted such links (1 for a dead end, 2 for a corridor) and no others to live rooms; otherwise -1
+     */
+    private static int twoWayNeighbors(MapData mapData, int room, boolean[] alive, int wanted) {
+        if (mapData.getItemCount(room) > 0) {
+            return -1;
+        }
+        int first = -1;
+        int second = -1;
+        int outgoing = 0;
+        for (int i = 0; i < mapData.getDegree(room); i++) {
+            int next = mapData.getNeighbor(room, i);
+            if (!alive[next]) {
+                continue;
+            }
+            if (next == room || next == first || ++outgoing > wanted) {
+                return -1;
+            }
+            if (first == -1) {
+                first = next;
+            }
+            else {
+                second = next;
+            }
+        }
+        if (outgoing != wanted) {
+            return -1;
+        }
+        boolean fromFirst = false;
+        boolean fromSecond = wanted == 1;
+        for (int i = 0; i < mapData.getIncomingDegree(room); i++) {
+            int source = mapData.getIncomingNeighbor(room, i);
+            if (!alive[source]) {
+                continue;
+            }
+            if (mapData.getCostTo(source, room) != mapData.getCostTo(room, source)) {
+                return -1;
+            }
+            if (source == first && !fromFirst) {
+                fromFirst = true;
+            }
+            else if (source == second && !fromSecond) {
+                fromSecond = true;
+            }
+            else {
+                return -1;
+            }
+        }
+        return fromFirst && fromSecond ? first : -1;
+    }
+
+    private static int otherNeighbor(MapData mapData, int room, int previous, boolean[] alive) {
+        for (int i = 0; i < mapData.getDegree(room); i++) {
+            int next = mapData.getNeighbor(room, i);
+            if (next != previous && alive[next]) {
+                return next;
+            }
+        }
+        return previous;
+    }
+
+    int getNodeCount() {
+        return numNodes;
+    }
+
+    int getEdgeCount() {
+        return edgeTargets.length;
+    }
+
+    /**
+     * The ways into the reduced graph from a room: the room itself if it was kept, otherwise up its wing and then
+     * to either end of the corridor it leads into.
+     */
+    private Entry[] entriesOf(int room) {
+        IntArrayList walked = new IntArrayList();
+        int current = room;
+        while (prunedParent[current] != -1) {
+            walked.add(current);
+            current = prunedParent[current];
+        }
+        if (nodeOfRoom[current] != -1) {
+            return new Entry[] { entry(nodeOfRoom[current], walked.toArray()) };
+        }
+
+        int chain = chainOfRoom[current];
+        int first = chainOffsets[chain];
+        int length = chainOffsets[chain + 1] - first;
+        int position = positionInChain[current];
+        int[] towardsStart = Arrays.copyOf(walked.toArray(), walked.size() + position + 1);
+        for (int i = 0; i <= position; i++) {
+            towardsStart[walked.size() + i] = chainRooms[first + position - i];
+        }
+        int[] towardsEnd = Arrays.copyOf(walked.toArray(), walked.size() + length - position);
+        for (int i = 0; i < length - position; i++) {
+            towardsEnd[walked.size() + i] = chainRooms[first + position + i];
+        }
+        return new Entry[] { entry(nodeOfRoom[chainStart[chain]], towardsStart), entry(nodeOfRoom[chainEnd[chain]], towardsEnd) };
+    }
+
+    private Entry entry(int node, int[] rooms) {
+        int offset = 0;
+        for (int i = 0; i < rooms.length; i++) {
+            offset += mapData.getCostTo(rooms[i], i + 1 < rooms.length ? rooms[i + 1] : roomOfNode[node]);
+        }
+        return new Entry(node, offset, rooms);
+    }
+
+    /**
+     * Dijkstra's algorithm over the weighted reduced graph, starting from every way into it from room.
+     */
+    Search searchFrom(int room) {
+        Search search = new Search(room);
+        PriorityQueue<PairIntInteger> unvisitedSet = new PriorityQueue<>();
+        for (Entry entry : entriesOf(room)) {
+            if (entry.offset < search.distance[entry.node]) {
+                search.distance[entry.node] = entry.offset;
+                search.entryOfNode[entry.node] = entry;
+                unvisitedSet.add(new PairIntInteger(entry.node, entry.offset));
+            }
+        }
+
+        while (unvisitedSet.size() > 0) {
+            PairIntInteger current = unvisitedSet.remove();
+            int node = current.getIndex();
+            if (current.getInteger() > search.distance[node]) {
+                continue;
+            }
+            search.nodesExpanded++;
+            for (int edge = edgeOffsets[node]; edge < edgeOffsets[node + 1]; edge++) {
+                int target = edgeTargets[edge];
+                int alternateDistance = search.distance[node] + edgeWeights[edge];
+                if (alternateDistance < search.distance[target]) {
+                    search.distance[target] = alternateDistance;
+                    search.previousEdge[target] = edge;
+                    search.previousNode[target] = node;
+                    search.entryOfNode[target] = null;
+                    unvisitedSet.add(new PairIntInteger(target, alternateDistance));
+                }
+            }
+        }
+        return search;
+    }
+
+    /**
+     * @return the distance from the search's room to a room, Integer.MAX_VALUE if it can't be reached. Exact
+     * whenever either room was kept; between two removed rooms it is only an upper bound, as it goes by way of
+     * the reduced graph.
+     */
+    int distanceTo(Search search, int room) {
+        if (room == search.room) {
+            return 0;
+        }
+        int best = UNREACHABLE;
+        for (Entry entry : entriesOf(room)) {
+            // Pruned wings and corridors are two-way, so the way in is also the way out.
+            if (search.distance[entry.node] != UNREACHABLE) {
+                best = Math.min(best, search.distance[entry.node] + entry.offset);
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @return the rooms of the original map along the shortest path from the search's room to a kept room,
+     * both ends included, or null if there is no path
+     */
+    int[] pathTo(Search search, int room) {
+        int node = nodeOfRoom[room];
+        if (search.distance[node] == UNREACHABLE) {
+            return null;
+        }
+
+        IntArrayList edges = new IntArrayList();
+        while (search.previousEdge[node] != -1) {
+            edges.add(search.previousEdge[node]);
+            node = search.previousNode[node];
+        }
+        IntArrayList path = new IntArrayList();
+        for (int walked : search.entryOfNode[node].rooms) {
+            path.add(walked);
+        }
+        path.add(roomOfNode[node]);
+        for (int i = edges.size() - 1; i >= 0; i--) {
+            int edge = edges.get(i);
+            int chain = (edgeChains[edge] - 1) / 2;
+            if (edgeChains[edge] % 2 == 1) {
+                for (int j = chainOffsets[chain]; j < chainOffsets[chain + 1]; j++) {
+                    path.add(chainRooms[j]);
+                }
+            }
+            else if (edgeChains[edge] != 0) {
+                for (int j = chainOffsets[chain + 1] - 1; j >= chainOffsets[chain]; j--) {
+                    path.add(chainRooms[j]);
+                }
+            }
+            path.add(roomOfNode[edgeTargets[edge]]);
+        }
+        return path.toArray();
+    }
+}
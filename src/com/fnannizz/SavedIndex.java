@@ -0,0 +1,131 @@
+package com.fnannizz;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Supplier;
+
+/**
+ * Saves an index built from a map, such as a HierarchicalMap or HubLabels, in a file next to the map file, so that
+ * it doesn't have to be built again every time the map is loaded.
+ *
+ * All values are little-endian ints: the index's magic number and format version, the map's room count and its
+ * connection fingerprint as two ints, then the index's own counts and int sections one after another. The room
+ * count and fingerprint tie the file to the map it was built for, so a stale index is never read back.
+ */
+class SavedIndex {
+    private static final int HEADER_INTS = 5;
+
+    interface Reader<T> {
+        T read(String filePath) throws IOException;
+    }
+
+    interface Writer<T> {
+        void write(T index, String filePath) throws IOException;
+    }
+
+    interface Decoder<T> {
+        /**
+         * @param buffer the file, positioned after the common header
+         */
+        T decode(ByteBuffer buffer);
+    }
+
+    /**
+     * Read the index saved at filePath, or build it and save it there if there is none yet, it was built for a
+     * different map or it can't be read. Saving is only a convenience for next time, so if the file can't be
+     * written the index is kept in memory only.
+     */
+    static <T> T loadOrBuild(String filePath, Reader<T> reader, Supplier<T> builder, Writer<T> writer) {
+        T index = null;
+        try {
+            index = reader.read(filePath);
+        }
+        catch (IOException e) {
+            System.err.println("Rebuilding " + filePath + ": " + e.getMessage());
+        }
+        if (index == null) {
+            index = builder.get();
+            save(index, filePath, writer);
+        }
+        return index;
+    }
+
+    /**
+     * Save an index built in memory at filePath for next time, or leave it in memory only if the file can't be
+     * written.
+     */
+    static <T> void save(T index, String filePath, Writer<T> writer) {
+        try {
+            writer.write(index, filePath);
+        }
+        catch (IOException e) {
+            System.err.println("Couldn't save " + filePath + ", keeping it in memory only: " + e.toString());
+        }
+    }
+
+    /**
+     * Save an index of mapData: the common header, then counts, then each section.
+     */
+    static void write(String filePath, int magic, int version, MapData mapData, int[] counts, int[]... sections)
+            throws IOException {
+        long numInts = HEADER_INTS + counts.length;
+        for (int[] section : sections) {
+            numInts += section.length;
+        }
+        if (numInts * 4 > Integer.MAX_VALUE) {
+            throw new IOException("The index is too large to save.");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate((int) numInts * 4).order(ByteOrder.LITTLE_ENDIAN);
+        long fingerprint = mapData.getConnectionFingerprint();
+        buffer.putInt(magic).putInt(version).putInt(mapData.getRoomCount()).putInt((int) fingerprint)
+                .putInt((int) (fingerprint >>> 32));
+        buffer.asIntBuffer().put(counts);
+        buffer.position(buffer.position() + counts.length * 4);
+        for (int[] section : sections) {
+            buffer.asIntBuffer().put(section);
+            buffer.position(buffer.position() + section.length * 4);
+        }
+        buffer.flip();
+        try (FileChannel out = FileChannel.open(Paths.get(filePath), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                out.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * @return the index saved at filePath, or null if there is no file there or it was built for a different map or
+     * with a different format version
+     * @throws IOException if the file can't be read or ends early
+     */
+    static <T> T read(String filePath, int magic, int version, MapData mapData, Decoder<T> decoder) throws IOException {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            if (buffer.remaining() < HEADER_INTS * 4 || buffer.getInt() != magic || buffer.getInt() != version) {
+                return null;
+            }
+            int numRooms = buffer.getInt();
+            long fingerprint = (buffer.getInt() & 0xFFFFFFFFL) | ((long) buffer.getInt() << 32);
+            if (numRooms != mapData.getRoomCount() || fingerprint != mapData.getConnectionFingerprint()) {
+                return null;
+            }
+            return decoder.decode(buffer);
+        }
+        catch (RuntimeException e) {
+            throw new IOException(filePath + " is not a valid saved index: " + e, e);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.fnannizz;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A starting location and the items to collect, as read from scenario.txt. Scenarios never change once read and
+ * leave the map untouched, so any number of them can be solved against one MapData at the same time.
+ */
+class Scenario {
+    private final String startingLocation;
+    private final List<String> itemsToCollect;
+
+    Scenario(String start, List<String> items) {
+        startingLocation = start;
+        itemsToCollect = Collections.unmodifiableList(new ArrayList<>(items));
+    }
+
+    /**
+     * Parse scenario file: the starting location on the first line, then one item per line.
+     * @throws InvalidScenarioException if the starting location isn't in the map or there are no items
+     */
+    static Scenario readFromFile(String scenarioFilePath, MapData mapData) throws InvalidScenarioException, IOException {
+        try (BufferedReader in = new BufferedReader(new FileReader(scenarioFilePath))) {
+            String str;
+            String startingLocation = in.readLine();
+            ArrayList<String> itemsToCollect = new ArrayList<>();
+            while ((str = in.readLine()) != null) {
+                itemsToCollect.add(str);
+            }
+            return create(startingLocation, itemsToCollect, mapData);
+        }
+    }
+
+    /**
+     * Check a scenario against the map it will be solved on. Item names are matched case-insensitively. Items that
+     * aren't in the map are only reported when the scenario is solved.
+     * @throws InvalidScenarioException if the starting location isn't in the map, there are no items, or the map's
+     * ConnectivityIndex shows that some of the items can't be reached from the starting location
+     */
+    static Scenario create(String startingLocation, List<String> items, MapData mapData) throws InvalidScenarioException {
+        if (startingLocation == null || !mapData.nodeExistsInMap(startingLocation)) {
+            throw new InvalidScenarioException("Invalid starting location.");
+        }
+
+        ArrayList<String> itemsToCollect = new ArrayList<>();
+        for (String item : items) {
+            itemsToCollect.add(item.toLowerCase());
+        }
+
+        if (itemsToCollect.size() < 1) {
+            throw new InvalidScenarioException("No items found in the scenario input file.");
+        }
+
+        int start = mapData.getRoomIndex(startingLocation);
+        Map<String, Integer> itemLocations = mapData.getItemLocations();
+        ArrayList<String> unreachableItems = new ArrayList<>();
+        for (String item : itemsToCollect) {
+            Integer room = itemLocations.get(item);
+            if (room != null && !mapData.getConnectivityIndex().mayReach(start, room)) {
+                unreachableItems.add(item);
+            }
+        }
+        if (!unreachableItems.isEmpty()) {
+            throw new InvalidScenarioException((unreachableItems.size() == 1 ? "The item " : "The items ")
+                    + String.join(", ", unreachableItems) + " can't be reached from the starting location.");
+        }
+        return new Scenario(startingLocation, itemsToCollect);
+    }
+
+    String getStartingLocation() {
+        return startingLocation;
+    }
+
+    List<String> getItemsToCollect() {
+        return itemsToCollect;
+    }
+}
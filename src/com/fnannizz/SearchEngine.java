@@ -0,0 +1,23 @@
+package com.fnannizz;
+
+/**
+ * The graph search used to compute shortest paths from a single room.
+ */
+enum SearchEngine {
+    /**
+     * Breadth-first search over reusable per-thread buffers. Exact because every connection costs 1; on maps
+     * where some connections cost more, BUCKET runs instead.
+     */
+    BREADTH_FIRST,
+
+    /**
+     * Dial's algorithm over reusable per-thread buffers: Dijkstra's algorithm with the priority queue replaced by
+     * one bucket of rooms per possible distance modulo (highest connection cost + 1), which suits small costs.
+     */
+    BUCKET,
+
+    /**
+     * The original priority queue based Dijkstra's algorithm, kept as a fallback.
+     */
+    DIJKSTRA
+}
@@ -0,0 +1,133 @@
+package com.fnannizz;
+
+import java.util.Arrays;
+
+/**
+ * Scratch buffers for a single-source search. Searches run over primitive arrays that are sized
+ * for the largest map seen so far and reused by every later search on the same thread, so the
+ * search itself never allocates.
+ */
+class SearchWorkspace {
+    private static final ThreadLocal<SearchWorkspace> workspaces = ThreadLocal.withInitial(SearchWorkspace::new);
+
+    int[] distance = new int[0];
+    int[] previous = new int[0];
+    int[] frontier = new int[0];
+
+    /**
+     * Buffers for searches that usually stop long before reaching every room. A room's entries only count when
+     * its stamp equals the current generation, so starting such a search costs O(1) rather than O(rooms).
+     * The forward buffers also serve the targeted search; the backward ones are for bidirectional search.
+     */
+    int generation;
+    int[] forwardStamp = new int[0];
+    int[] forwardDistance = new int[0];
+    int[] forwardPrevious = new int[0];
+    int[] targetStamp = new int[0];
+    int[] targetSlot = new int[0];
+    int[] backwardStamp = new int[0];
+    int[] backwardDistance = new int[0];
+    int[] backwardNext = new int[0];
+    int[] backwardFrontier = new int[0];
+
+    /**
+     * Doubly linked bucket lists for Dial's algorithm, which reuses the forward stamped buffers for distances.
+     * bucketHeads has one entry per bucket rather than per room.
+     */
+    int[] bucketNext = new int[0];
+    int[] bucketPrevious = new int[0];
+    int[] bucketHeads = new int[0];
+
+    /**
+     * @return this thread's workspace, with room for at least numRooms rooms
+     */
+    static SearchWorkspace forCurrentThread(int numRooms) {
+        SearchWorkspace workspace = workspaces.get();
+        workspace.ensureCapacity(numRooms);
+        return workspace;
+    }
+
+    private void ensureCapacity(int numRooms) {
+        if (distance.length < numRooms) {
+            distance = new int[numRooms];
+            previous = new int[numRooms];
+            frontier = new int[numRooms];
+        }
+    }
+
+    /**
+     * @return this thread's workspace, with stamped buffers for at least numRooms rooms and a fresh generation
+     */
+    static SearchWorkspace forCurrentThreadStamped(int numRooms) {
+        SearchWorkspace workspace = forCurrentThread(numRooms);
+        workspace.ensureStampedCapacity(numRooms);
+        workspace.nextGeneration();
+        return workspace;
+    }
+
+    private void ensureStampedCapacity(int numRooms) {
+        if (forwardStamp.length < numRooms) {
+            forwardStamp = new int[numRooms];
+            forwardDistance = new int[numRooms];
+            forwardPrevious = new int[numRooms];
+            targetStamp = new int[numRooms];
+            targetSlot = new int[numRooms];
+            backwardStamp = new int[numRooms];
+            backwardDistance = new int[numRooms];
+            backwardNext = new int[numRooms];
+            backwardFrontier = new int[numRooms];
+            bucketNext = new int[numRooms];
+            bucketPrevious = new int[numRooms];
+        }
+    }
+
+    /**
+     * @return bucketHeads with at least numBuckets entries, the first numBuckets of them empty (-1)
+     */
+    int[] emptyBuckets(int numBuckets) {
+        if (bucketHeads.length < numBuckets) {
+            bucketHeads = new int[numBuckets];
+        }
+        Arrays.fill(bucketHeads, 0, numBuckets, -1);
+        return bucketHeads;
+    }
+
+    private void nextGeneration() {
+        if (generation == Integer.MAX_VALUE) {
+            Arrays.fill(forwardStamp, 0);
+            Arrays.fill(targetStamp, 0);
+            Arrays.fill(backwardStamp, 0);
+            generation = 0;
+        }
+        generation++;
+    }
+
+    /**
+     * Mark the first numRooms rooms as unreached.
+     */
+    void reset(int numRooms) {
+        Arrays.fill(distance, 0, numRooms, Integer.MAX_VALUE);
+        Arrays.fill(previous, 0, numRooms, -1);
+    }
+
+    /**
+     * Copy the result of the last search out of the workspace so it can outlive the next one.
+     */
+    ShortestPathData toShortestPathData(int numRooms, int nodesExpanded) {
+        return new ShortestPathData(Arrays.copyOf(distance, numRooms), Arrays.copyOf(previous, numRooms), nodesExpanded);
+    }
+
+    /**
+     * Copy the result of the last search run on the forward stamped buffers, with unstamped rooms unreached.
+     */
+    ShortestPathData stampedToShortestPathData(int numRooms, int nodesExpanded) {
+        int[] distances = new int[numRooms];
+        int[] previousRooms = new int[numRooms];
+        for (int room = 0; room < numRooms; room++) {
+            boolean reached = forwardStamp[room] == generation;
+            distances[room] = reached ? forwardDistance[room] : Integer.MAX_VALUE;
+            previousRooms[room] = reached ? forwardPrevious[room] : -1;
+        }
+        return new ShortestPathData(distances, previousRooms, nodesExpanded);
+    }
+}
@@ -0,0 +1,179 @@
+package com.fnannizz;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of single-source search results for one map, keyed by source room and search engine. Scenarios on
+ * the same map tend to share item rooms, so most of the searches OptimalPathSolver asks for have already been run.
+ *
+ * Each entry holds two ints per room, so the cache is bounded by an approximate memory budget rather than an entry
+ * count, and evicts the least recently used entries when it goes over. Safe to share between threads; a result is
+ * computed outside the lock, so two threads missing on the same source at once may both run the search.
+ *
+ * When the map is edited, MapData tells the cache which connection changed and every cached result is repaired
+ * by ShortestPathRepair, which only revisits the rooms whose distance the edit can change.
+ *
+ * A copy made for another version of the map starts out sharing its results with the original. A shared result
+ * is only copied when an edit to the new version actually changes it, so readers of the old version never see a
+ * repair meant for the new one.
+ */
+class ShortestPathCache {
+    static final long DEFAULT_MEMORY_BUDGET_BYTES = 256L * 1024 * 1024;
+
+    private final MapData mapData;
+    private final LinkedHashMap<Long, ShortestPathData> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long memoryBudgetBytes = DEFAULT_MEMORY_BUDGET_BYTES;
+
+    /**
+     * Results still shared with the cache this one was copied from, which must be copied before being repaired.
+     */
+    private final Set<ShortestPathData> sharedEntries = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    ShortestPathCache(MapData map) {
+        mapData = map;
+    }
+
+    /**
+     * @return the shortest paths from startNode, running the search only if they aren't already cached
+     */
+    ShortestPathData get(int startNode, SearchEngine engine) {
+        ShortestPathData shortestPathData = getIfPresent(startNode, engine);
+        if (shortestPathData == null) {
+            shortestPathData = ShortestPathSolver.findShortestPathFromNode(startNode, mapData, engine);
+            put(startNode, engine, shortestPathData);
+        }
+        return shortestPathData;
+    }
+
+    /**
+     * @return the cached shortest paths from startNode, or null (counted as a miss) if they need to be searched for
+     */
+    ShortestPathData getIfPresent(int startNode, SearchEngine engine) {
+        ShortestPathData cached;
+        synchronized (this) {
+            cached = entries.get(key(startNode, engine));
+        }
+        if (cached == null) {
+            misses.incrementAndGet();
+        }
+        else {
+            hits.incrementAndGet();
+        }
+        return cached;
+    }
+
+    synchronized void put(int startNode, SearchEngine engine, ShortestPathData shortestPathData) {
+        entries.put(key(startNode, engine), shortestPathData);
+        evictOverBudget();
+    }
+
+    /**
+     * @return a cache for map, a copy of this cache's map, holding the same results as this one
+     */
+    synchronized ShortestPathCache copyFor(MapData map) {
+        ShortestPathCache copy = new ShortestPathCache(map);
+        copy.memoryBudgetBytes = memoryBudgetBytes;
+        copy.entries.putAll(entries);
+        copy.sharedEntries.addAll(entries.values());
+        return copy;
+    }
+
+    /**
+     * Repair every cached result after a connection from one room to another was added.
+     */
+    synchronized void connectionAdded(int from, int to) {
+        for (Map.Entry<Long, ShortestPathData> entry : entries.entrySet()) {
+            if (ShortestPathRepair.isChangedByAddition(mapData, entry.getValue(), from, to)) {
+                ShortestPathRepair.afterConnectionAdded(mapData, ownEntry(entry), from, to);
+            }
+        }
+    }
+
+    /**
+     * Repair every cached result after a connection from one room to another was removed.
+     */
+    synchronized void connectionRemoved(int from, int to) {
+        for (Map.Entry<Long, ShortestPathData> entry : entries.entrySet()) {
+            if (ShortestPathRepair.isChangedByRemoval(entry.getValue(), from, to)) {
+                ShortestPathRepair.afterConnectionRemoved(mapData, ownEntry(entry), from, to);
+            }
+        }
+    }
+
+    /**
+     * @return the entry's result, replaced by a copy first if it is shared with another cache
+     */
+    private ShortestPathData ownEntry(Map.Entry<Long, ShortestPathData> entry) {
+        if (sharedEntries.remove(entry.getValue())) {
+            entry.setValue(entry.getValue().copy());
+        }
+        return entry.getValue();
+    }
+
+    /**
+     * Forget every result searched from a room that has been removed from the map.
+     */
+    synchronized void removeSource(int startNode) {
+        for (SearchEngine engine : SearchEngine.values()) {
+            ShortestPathData removed = entries.remove(key(startNode, engine));
+            if (removed != null) {
+                sharedEntries.remove(removed);
+            }
+        }
+    }
+
+    private static Long key(int startNode, SearchEngine engine) {
+        return (long) startNode * SearchEngine.values().length + engine.ordinal();
+    }
+
+    /**
+     * Approximate heap used by one cached result.
+     */
+    long bytesPerEntry() {
+        return 8L * mapData.getRoomCount() + 64;
+    }
+
+    synchronized void setMemoryBudgetBytes(long bytes) {
+        memoryBudgetBytes = bytes;
+        evictOverBudget();
+    }
+
+    synchronized long getMemoryBudgetBytes() {
+        return memoryBudgetBytes;
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    synchronized void clear() {
+        entries.clear();
+        sharedEntries.clear();
+    }
+
+    long getHits() {
+        return hits.get();
+    }
+
+    long getMisses() {
+        return misses.get();
+    }
+
+    private void evictOverBudget() {
+        long maxEntries = memoryBudgetBytes / bytesPerEntry();
+        Iterator<Map.Entry<Long, ShortestPathData>> eldest = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && eldest.hasNext()) {
+            sharedEntries.remove(eldest.next().getValue());
+            eldest.remove();
+        }
+    }
+}
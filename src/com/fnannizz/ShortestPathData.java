@@ -0,0 +1,60 @@
+package com.fnannizz;
+
+import java.util.Arrays;
+
+/**
+ * Created by francesca on 11/27/16.
+ */
+class ShortestPathData {
+    private int[] distanceFromStart;
+    private int[] previousNodesInShortestPath;
+    private final int nodesExpanded;
+
+    ShortestPathData(int[] d, int[] p, int expanded) {
+        distanceFromStart = d;
+        previousNodesInShortestPath = p;
+        nodesExpanded = expanded;
+    }
+
+    /**
+     * Rooms added to the map after the search ran are unreached until a repair says otherwise.
+     */
+    int getDistance(int node) {
+        return node < distanceFromStart.length ? distanceFromStart[node] : Integer.MAX_VALUE;
+    }
+
+    int getPrevious(int node) {
+        return node < previousNodesInShortestPath.length ? previousNodesInShortestPath[node] : -1;
+    }
+
+    /**
+     * Only called by ShortestPathRepair, which keeps cached results in step with edits to the map.
+     */
+    void set(int node, int distance, int previous) {
+        if (node >= distanceFromStart.length) {
+            int oldLength = distanceFromStart.length;
+            int newLength = Math.max(node + 1, oldLength * 2);
+            distanceFromStart = Arrays.copyOf(distanceFromStart, newLength);
+            previousNodesInShortestPath = Arrays.copyOf(previousNodesInShortestPath, newLength);
+            Arrays.fill(distanceFromStart, oldLength, newLength, Integer.MAX_VALUE);
+            Arrays.fill(previousNodesInShortestPath, oldLength, newLength, -1);
+        }
+        distanceFromStart[node] = distance;
+        previousNodesInShortestPath[node] = previous;
+    }
+
+    /**
+     * @return a copy that can be repaired without changing this result
+     */
+    ShortestPathData copy() {
+        return new ShortestPathData(distanceFromStart.clone(), previousNodesInShortestPath.clone(), nodesExpanded);
+    }
+
+    /**
+     * @return the number of rooms the search that produced this result took off its frontier
+     */
+    int getNodesExpanded() {
+        return nodesExpanded;
+    }
+
+}
@@ -0,0 +1,126 @@
+package com.fnannizz;
+
+import java.util.PriorityQueue;
+
+/**
+ * Brings a single-source search result up to date after one connection of the map changed, touching only the
+ * rooms whose distance can change rather than searching the whole map again.
+ *
+ * Adding a connection u -> v can only shorten paths through v, so the repair is a search that starts at v with its
+ * new distance and stops wherever it fails to improve a room.
+ *
+ * Removing u -> v only matters if it was v's link in the shortest path tree. The rooms that can get further away
+ * are then exactly v's subtree, found by walking from v to every neighbour whose recorded predecessor is the room
+ * just visited. Those rooms are reset, given the best distance offered by a connection from outside the subtree,
+ * and settled among themselves in order of distance.
+ */
+class ShortestPathRepair {
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    /**
+     * @return whether adding the connection shortens any path in shortestPaths, checked in O(1)
+     */
+    static boolean isChangedByAddition(MapData mapData, ShortestPathData shortestPaths, int from, int to) {
+        int fromDistance = shortestPaths.getDistance(from);
+        return fromDistance != UNREACHABLE && fromDistance + mapData.getCostTo(from, to) < shortestPaths.getDistance(to);
+    }
+
+    /**
+     * @return whether removing the connection takes away a link of the shortest path tree in shortestPaths
+     */
+    static boolean isChangedByRemoval(ShortestPathData shortestPaths, int from, int to) {
+        return shortestPaths.getPrevious(to) == from;
+    }
+
+    /**
+     * @return the number of rooms whose distance improved
+     */
+    static int afterConnectionAdded(MapData mapData, ShortestPathData shortestPaths, int from, int to) {
+        if (!isChangedByAddition(mapData, shortestPaths, from, to)) {
+            return 0;
+        }
+        shortestPaths.set(to, shortestPaths.getDistance(from) + mapData.getCostTo(from, to), from);
+
+        // When every connection costs 1, each room queued is one further than the room that queued it, so the
+        // queue stays in order of distance. With costs a room can improve again after it was queued; it is then
+        // queued again, and the distances still end up exact once nothing improves.
+        IntArrayList frontier = new IntArrayList();
+        frontier.add(to);
+        for (int head = 0; head < frontier.size(); head++) {
+            int currentRoom = frontier.get(head);
+            int currentDistance = shortestPaths.getDistance(currentRoom);
+            for (int i = 0; i < mapData.getDegree(currentRoom); i++) {
+                int roomId = mapData.getNeighbor(currentRoom, i);
+                int alternateDistance = currentDistance + mapData.getCost(currentRoom, i);
+                if (alternateDistance < shortestPaths.getDistance(roomId)) {
+                    shortestPaths.set(roomId, alternateDistance, currentRoom);
+                    frontier.add(roomId);
+                }
+            }
+        }
+        return frontier.size();
+    }
+
+    /**
+     * Called after the connection has been taken out of mapData.
+     * @return the number of rooms whose distance had to be recomputed
+     */
+    static int afterConnectionRemoved(MapData mapData, ShortestPathData shortestPaths, int from, int to) {
+        if (!isChangedByRemoval(shortestPaths, from, to)) {
+            return 0;
+        }
+
+        // Collect the subtree hanging off the removed connection, then forget how it was reached.
+        IntArrayList subtree = new IntArrayList();
+        subtree.add(to);
+        for (int head = 0; head < subtree.size(); head++) {
+            int currentRoom = subtree.get(head);
+            for (int i = 0; i < mapData.getDegree(currentRoom); i++) {
+                int roomId = mapData.getNeighbor(currentRoom, i);
+                if (shortestPaths.getPrevious(roomId) == currentRoom && shortestPaths.getDistance(roomId) != UNREACHABLE) {
+                    subtree.add(roomId);
+                }
+            }
+        }
+        for (int i = 0; i < subtree.size(); i++) {
+            shortestPaths.set(subtree.get(i), UNREACHABLE, -1);
+        }
+
+        // Re-enter the subtree over connections from rooms outside it, whose distances are still correct.
+        PriorityQueue<PairIntInteger> unsettled = new PriorityQueue<>();
+        for (int i = 0; i < subtree.size(); i++) {
+            int room = subtree.get(i);
+            for (int j = 0; j < mapData.getIncomingDegree(room); j++) {
+                int source = mapData.getIncomingNeighbor(room, j);
+                int sourceDistance = shortestPaths.getDistance(source);
+                if (sourceDistance == UNREACHABLE) {
+                    continue;
+                }
+                int alternateDistance = sourceDistance + mapData.getCostTo(source, room);
+                if (alternateDistance < shortestPaths.getDistance(room)) {
+                    shortestPaths.set(room, alternateDistance, source);
+                }
+            }
+            if (shortestPaths.getDistance(room) != UNREACHABLE) {
+                unsettled.add(new PairIntInteger(room, shortestPaths.getDistance(room)));
+            }
+        }
+
+        while (!unsettled.isEmpty()) {
+            PairIntInteger current = unsettled.remove();
+            int currentRoom = current.getIndex();
+            if (current.getInteger() > shortestPaths.getDistance(currentRoom)) {
+                continue;
+            }
+            for (int i = 0; i < mapData.getDegree(currentRoom); i++) {
+                int roomId = mapData.getNeighbor(currentRoom, i);
+                int alternateDistance = current.getInteger() + mapData.getCost(currentRoom, i);
+                if (alternateDistance < shortestPaths.getDistance(roomId)) {
+                    shortestPaths.set(roomId, alternateDistance, currentRoom);
+                    unsettled.add(new PairIntInteger(roomId, alternateDistance));
+                }
+            }
+        }
+        return subtree.size();
+    }
+}
@@ -1,58 +1,340 @@
 package com.fnannizz;
 
-import java.util.HashMap;
-import java.util.Objects;
+import java.util.Arrays;
 import java.util.PriorityQueue;
 
-/**
- * Created by francesca on 11/27/16.
- */
-class ShortestPathData {
-    private final HashMap<String, Integer> distanceFromStart;
-    private final HashMap<String, String> previousNodesInShortestPath;
+class ShortestPathSolver {
+    static ShortestPathData findShortestPathFromNode(int startNode, MapData mapData) {
+        return findShortestPathFromNode(startNode, mapData, SearchEngine.BREADTH_FIRST);
+    }
 
-    ShortestPathData(HashMap<String, Integer> d, HashMap<String, String> p) {
-        distanceFromStart = d;
-        previousNodesInShortestPath = p;
+    static ShortestPathData findShortestPathFromNode(int startNode, MapData mapData, SearchEngine engine) {
+        if (engine == SearchEngine.DIJKSTRA) {
+            return findShortestPathWithDijkstra(startNode, mapData);
+        }
+        if (engine == SearchEngine.BUCKET || mapData.getMaxCost() > 1) {
+            SearchWorkspace workspace = SearchWorkspace.forCurrentThreadStamped(mapData.getRoomCount());
+            int nodesExpanded = bucketSearch(startNode, mapData, workspace, 0);
+            return workspace.stampedToShortestPathData(mapData.getRoomCount(), nodesExpanded);
+        }
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThread(mapData.getRoomCount());
+        int nodesExpanded = breadthFirstSearch(startNode, mapData, workspace);
+        return workspace.toShortestPathData(mapData.getRoomCount(), nodesExpanded);
     }
 
-    Integer getDistance(String node) {
-        return distanceFromStart.get(node);
+    /**
+     * Every connection costs 1, so rooms leave a FIFO frontier in order of distance and the first time a room
+     * is reached is along a shortest path. Results are left in the workspace's distance and previous buffers.
+     * @return the number of rooms expanded
+     */
+    static int breadthFirstSearch(int startNode, MapData mapData, SearchWorkspace workspace) {
+        int[] distance = workspace.distance;
+        int[] previous = workspace.previous;
+        int[] frontier = workspace.frontier;
+        workspace.reset(mapData.getRoomCount());
+
+        int head = 0;
+        int tail = 0;
+        distance[startNode] = 0;
+        frontier[tail++] = startNode;
+        while (head < tail) {
+            int currentRoom = frontier[head++];
+            int alternateDistance = distance[currentRoom] + 1;
+            int degree = mapData.getDegree(currentRoom);
+            for (int i = 0; i < degree; i++) {
+                int roomId = mapData.getNeighbor(currentRoom, i);
+                if (distance[roomId] == Integer.MAX_VALUE) {
+                    distance[roomId] = alternateDistance;
+                    previous[roomId] = currentRoom;
+                    frontier[tail++] = roomId;
+                }
+            }
+        }
+        return head;
     }
 
-    String getPrevious(String node) {
-        return previousNodesInShortestPath.get(node);
+    /**
+     * Dial's algorithm over the workspace's forward stamped buffers. Rooms wait in maxCost + 1 buckets, one per
+     * distance modulo maxCost + 1: every room still waiting is less than maxCost + 1 further than the distance
+     * being expanded, so no two waiting distances share a bucket, and the buckets are emptied in order of
+     * distance by walking round them. A room whose distance improves is unlinked from its old bucket rather than
+     * queued twice. Connections cost at least 1, so a room being expanded can never improve.
+     * @param targetsLeft if positive, stop once this many rooms marked in targetStamp have been expanded
+     * @return the number of rooms expanded
+     */
+    static int bucketSearch(int startNode, MapData mapData, SearchWorkspace workspace, int targetsLeft) {
+        int generation = workspace.generation;
+        int[] stamp = workspace.forwardStamp;
+        int[] distance = workspace.forwardDistance;
+        int[] previous = workspace.forwardPrevious;
+        int[] next = workspace.bucketNext;
+        int[] before = workspace.bucketPrevious;
+        int numBuckets = mapData.getMaxCost() + 1;
+        int[] heads = workspace.emptyBuckets(numBuckets);
+
+        stamp[startNode] = generation;
+        distance[startNode] = 0;
+        previous[startNode] = -1;
+        next[startNode] = -1;
+        before[startNode] = -1;
+        heads[0] = startNode;
+        int waiting = 1;
+        int nodesExpanded = 0;
+        for (int currentDistance = 0; waiting > 0; currentDistance++) {
+            int bucket = currentDistance % numBuckets;
+            while (heads[bucket] != -1) {
+                int currentRoom = heads[bucket];
+                heads[bucket] = next[currentRoom];
+                if (next[currentRoom] != -1) {
+                    before[next[currentRoom]] = -1;
+                }
+                waiting--;
+                nodesExpanded++;
+                if (targetsLeft > 0 && workspace.targetStamp[currentRoom] == generation && --targetsLeft == 0) {
+                    return nodesExpanded;
+                }
+
+                int degree = mapData.getDegree(currentRoom);
+                for (int i = 0; i < degree; i++) {
+                    int roomId = mapData.getNeighbor(currentRoom, i);
+                    int alternateDistance = currentDistance + mapData.getCost(currentRoom, i);
+                    if (stamp[roomId] != generation) {
+                        stamp[roomId] = generation;
+                        waiting++;
+                    }
+                    else if (alternateDistance < distance[roomId]) {
+                        // Unlink the room from the bucket it was waiting in.
+                        if (before[roomId] == -1) {
+                            heads[distance[roomId] % numBuckets] = next[roomId];
+                        }
+                        else {
+                            next[before[roomId]] = next[roomId];
+                        }
+                        if (next[roomId] != -1) {
+                            before[next[roomId]] = before[roomId];
+                        }
+                    }
+                    else {
+                        continue;
+                    }
+                    distance[roomId] = alternateDistance;
+                    previous[roomId] = currentRoom;
+                    int newBucket = alternateDistance % numBuckets;
+                    next[roomId] = heads[newBucket];
+                    before[roomId] = -1;
+                    if (heads[newBucket] != -1) {
+                        before[heads[newBucket]] = roomId;
+                    }
+                    heads[newBucket] = roomId;
+                }
+            }
+        }
+        return nodesExpanded;
     }
 
-}
+    /**
+     * Breadth-first search from startNode that stops as soon as every target has been reached, for when only the
+     * distances between a handful of rooms are needed rather than a path to every room. On maps with costs the
+     * search is Dial's algorithm instead, stopping the same way.
+     * @param distances receives the distance to each target, Integer.MAX_VALUE for targets that can't be reached
+     * @return the number of rooms expanded
+     */
+    static int findDistancesToTargets(int startNode, int[] targets, MapData mapData, int[] distances) {
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThreadStamped(mapData.getRoomCount());
+        int generation = workspace.generation;
+        int[] stamp = workspace.forwardStamp;
+        int[] distance = workspace.forwardDistance;
+        int[] frontier = workspace.frontier;
 
-class ShortestPathSolver {
-    static ShortestPathData findShortestPathFromNode(String startNode, HashMap<String, Room> roomMap) {
-        HashMap<String, Integer> distance = new HashMap<>();
-        HashMap<String, String> previous = new HashMap<>();
-        PriorityQueue<PairStringInteger> unvisitedSet = new PriorityQueue<>();
-        distance.put(startNode, 0);
+        int targetsLeft = 0;
+        for (int i = 0; i < targets.length; i++) {
+            distances[i] = Integer.MAX_VALUE;
+            if (workspace.targetStamp[targets[i]] != generation) {
+                workspace.targetStamp[targets[i]] = generation;
+                workspace.targetSlot[targets[i]] = i;
+                targetsLeft++;
+            }
+        }
 
-        for (String key : roomMap.keySet()) {
-            if (!Objects.equals(key, startNode)) {
-                distance.put(key, Integer.MAX_VALUE);
+        if (mapData.getMaxCost() > 1) {
+            int nodesExpanded = bucketSearch(startNode, mapData, workspace, targetsLeft);
+            for (int i = 0; i < targets.length; i++) {
+                distances[i] = stamp[targets[i]] == generation ? distance[targets[i]] : Integer.MAX_VALUE;
+            }
+            return nodesExpanded;
+        }
+
+        int head = 0;
+        int tail = 0;
+        stamp[startNode] = generation;
+        distance[startNode] = 0;
+        frontier[tail++] = startNode;
+        while (head < tail) {
+            int currentRoom = frontier[head++];
+            if (workspace.targetStamp[currentRoom] == generation) {
+                distances[workspace.targetSlot[currentRoom]] = distance[currentRoom];
+                if (--targetsLeft == 0) {
+                    break;
+                }
+            }
+            int alternateDistance = distance[currentRoom] + 1;
+            int degree = mapData.getDegree(currentRoom);
+            for (int i = 0; i < degree; i++) {
+                int roomId = mapData.getNeighbor(currentRoom, i);
+                if (stamp[roomId] != generation) {
+                    stamp[roomId] = generation;
+                    distance[roomId] = alternateDistance;
+                    frontier[tail++] = roomId;
+                }
             }
-            unvisitedSet.add(new PairStringInteger(key, distance.get(key)));
         }
 
+        // Repeated targets share a room, so copy the distance to every slot that asked for it.
+        for (int i = 0; i < targets.length; i++) {
+            distances[i] = distances[workspace.targetSlot[targets[i]]];
+        }
+        return head;
+    }
+
+    /**
+     * Shortest path between two rooms by breadth-first search from both ends at once, each step growing whichever
+     * side has the smaller frontier by one whole level. Once the two searches meet, finishing that level is
+     * enough: any shorter path would have had to meet at an earlier level. On maps with costs, levels no longer
+     * line up with distances, so a one-sided Dial's search that stops at endNode is used instead.
+     * @return the rooms along the path, from startNode to endNode inclusive, or null if there is none
+     */
+    static int[] findPathBetween(int startNode, int endNode, MapData mapData) {
+        if (startNode == endNode) {
+            return new int[] { startNode };
+        }
+        SearchWorkspace workspace = SearchWorkspace.forCurrentThreadStamped(mapData.getRoomCount());
+        if (mapData.getMaxCost() > 1) {
+            workspace.targetStamp[endNode] = workspace.generation;
+            bucketSearch(startNode, mapData, workspace, 1);
+            if (workspace.forwardStamp[endNode] != workspace.generation) {
+                return null;
+            }
+            IntArrayList reversed = new IntArrayList();
+            for (int room = endNode; room != -1; room = workspace.forwardPrevious[room]) {
+                reversed.add(room);
+            }
+            int[] path = new int[reversed.size()];
+            for (int i = 0; i < path.length; i++) {
+                path[i] = reversed.get(path.length - 1 - i);
+            }
+            return path;
+        }
+        int generation = workspace.generation;
+        int[] forwardStamp = workspace.forwardStamp;
+        int[] forwardDistance = workspace.forwardDistance;
+        int[] forwardPrevious = workspace.forwardPrevious;
+        int[] forwardFrontier = workspace.frontier;
+        int[] backwardStamp = workspace.backwardStamp;
+        int[] backwardDistance = workspace.backwardDistance;
+        int[] backwardNext = workspace.backwardNext;
+        int[] backwardFrontier = workspace.backwardFrontier;
+
+        forwardStamp[startNode] = generation;
+        forwardDistance[startNode] = 0;
+        forwardPrevious[startNode] = -1;
+        forwardFrontier[0] = startNode;
+        int forwardHead = 0;
+        int forwardTail = 1;
+        backwardStamp[endNode] = generation;
+        backwardDistance[endNode] = 0;
+        backwardNext[endNode] = -1;
+        backwardFrontier[0] = endNode;
+        int backwardHead = 0;
+        int backwardTail = 1;
+
+        int bestLength = Integer.MAX_VALUE;
+        int meetingRoom = -1;
+        while (meetingRoom == -1 && forwardHead < forwardTail && backwardHead < backwardTail) {
+            if (forwardTail - forwardHead <= backwardTail - backwardHead) {
+                int levelEnd = forwardTail;
+                for (; forwardHead < levelEnd; forwardHead++) {
+                    int currentRoom = forwardFrontier[forwardHead];
+                    for (int i = 0; i < mapData.getDegree(currentRoom); i++) {
+                        int roomId = mapData.getNeighbor(currentRoom, i);
+                        if (forwardStamp[roomId] == generation) {
+                            continue;
+                        }
+                        forwardStamp[roomId] = generation;
+                        forwardDistance[roomId] = forwardDistance[currentRoom] + 1;
+                        forwardPrevious[roomId] = currentRoom;
+                        forwardFrontier[forwardTail++] = roomId;
+                        if (backwardStamp[roomId] == generation && forwardDistance[roomId] + backwardDistance[roomId] < bestLength) {
+                            bestLength = forwardDistance[roomId] + backwardDistance[roomId];
+                            meetingRoom = roomId;
+                        }
+                    }
+                }
+            }
+            else {
+                int levelEnd = backwardTail;
+                for (; backwardHead < levelEnd; backwardHead++) {
+                    int currentRoom = backwardFrontier[backwardHead];
+                    for (int i = 0; i < mapData.getIncomingDegree(currentRoom); i++) {
+                        int roomId = mapData.getIncomingNeighbor(currentRoom, i);
+                        if (backwardStamp[roomId] == generation) {
+                            continue;
+                        }
+                        backwardStamp[roomId] = generation;
+                        backwardDistance[roomId] = backwardDistance[currentRoom] + 1;
+                        backwardNext[roomId] = currentRoom;
+                        backwardFrontier[backwardTail++] = roomId;
+                        if (forwardStamp[roomId] == generation && forwardDistance[roomId] + backwardDistance[roomId] < bestLength) {
+                            bestLength = forwardDistance[roomId] + backwardDistance[roomId];
+                            meetingRoom = roomId;
+                        }
+                    }
+                }
+            }
+        }
+        if (meetingRoom == -1) {
+            return null;
+        }
+
+        int[] path = new int[bestLength + 1];
+        int position = forwardDistance[meetingRoom];
+        for (int room = meetingRoom; room != -1; room = forwardPrevious[room]) {
+            path[position--] = room;
+        }
+        position = forwardDistance[meetingRoom];
+        for (int room = backwardNext[meetingRoom]; room != -1; room = backwardNext[room]) {
+            path[++position] = room;
+        }
+        return path;
+    }
+
+    private static ShortestPathData findShortestPathWithDijkstra(int startNode, MapData mapData) {
+        int[] distance = new int[mapData.getRoomCount()];
+        int[] previous = new int[mapData.getRoomCount()];
+        Arrays.fill(distance, Integer.MAX_VALUE);
+        Arrays.fill(previous, -1);
+        PriorityQueue<PairIntInteger> unvisitedSet = new PriorityQueue<>();
+        distance[startNode] = 0;
+        unvisitedSet.add(new PairIntInteger(startNode, 0));
+        int nodesExpanded = 0;
+
         while (unvisitedSet.size() > 0) {
-            String currentRoom = unvisitedSet.remove().getStr();
-            HashMap<String, String> adjacentRooms = roomMap.get(currentRoom).getAdjacentRooms();
-            for (String roomId : adjacentRooms.keySet()) {
-                Integer alternateDistance = distance.get(currentRoom) + 1;
-                if (alternateDistance < distance.get(roomId)) {
-                    unvisitedSet.remove(new PairStringInteger(roomId, distance.get(roomId)));
-                    distance.put(roomId, alternateDistance);
-                    previous.put(roomId, currentRoom);
-                    unvisitedSet.add(new PairStringInteger(roomId, alternateDistance));
+            PairIntInteger current = unvisitedSet.remove();
+            int currentRoom = current.getIndex();
+            // Rooms are re-queued rather than updated in place, so skip entries that are out of date.
+            if (current.getInteger() > distance[currentRoom]) {
+                continue;
+            }
+            nodesExpanded++;
+            for (int i = 0; i < mapData.getDegree(currentRoom); i++) {
+                int roomId = mapData.getNeighbor(currentRoom, i);
+                int alternateDistance = distance[currentRoom] + mapData.getCost(currentRoom, i);
+                if (alternateDistance < distance[roomId]) {
+                    distance[roomId] = alternateDistance;
+                    previous[roomId] = currentRoom;
+                    unvisitedSet.add(new PairIntInteger(roomId, alternateDistance));
                 }
             }
         }
-        return new ShortestPathData(distance, previous);
+        return new ShortestPathData(distance, previous, nodesExpanded);
     }
-}
\ No newline at end of file
+}
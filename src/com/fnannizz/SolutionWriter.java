@@ -0,0 +1,34 @@
+package com.fnannizz;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Writes a PathSolution to a stream in some format. Writers buffer their own output and flush it before returning,
+ * but leave the stream open so several solutions, or other output, can follow.
+ */
+interface SolutionWriter {
+
+    void write(PathSolution solution, OutputStream out) throws IOException;
+
+    /**
+     * @return the suffix of files holding a solution in this format, such as ".solution.txt"
+     */
+    String getFileExtension();
+
+    /**
+     * @param format text, json or binary
+     */
+    static SolutionWriter forFormat(String format) {
+        switch (format) {
+            case "text":
+                return new TextSolutionWriter();
+            case "json":
+                return new JsonSolutionWriter();
+            case "binary":
+                return new BinarySolutionWriter();
+            default:
+                throw new IllegalArgumentException("Unknown solution format " + format + ".");
+        }
+    }
+}
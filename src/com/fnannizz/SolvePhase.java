@@ -0,0 +1,27 @@
+package com.fnannizz;
+
+/**
+ * The stages of loading a map and solving a scenario that are timed when metrics are enabled, each with what its
+ * count measures.
+ */
+enum SolvePhase {
+    MAP_PARSE("rooms"),
+    GRAPH_REDUCTION("rooms kept"),
+    HIERARCHY_BUILD("entrances"),
+    HUB_LABELING("label entries"),
+    ITEM_LOOKUP("items"),
+    SHORTEST_PATH_SEARCH("nodes expanded"),
+    ORDER_SEARCH("orders evaluated"),
+    PATH_RECONSTRUCTION("steps"),
+    OUTPUT("steps");
+
+    private final String countLabel;
+
+    SolvePhase(String label) {
+        countLabel = label;
+    }
+
+    String getCountLabel() {
+        return countLabel;
+    }
+}
@@ -0,0 +1,29 @@
+package com.fnannizz;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Flight recorder event for one instrumented phase. Recorded whenever a JFR recording has it enabled, for
+ * example with -XX:StartFlightRecording, whether or not a MetricsSink is set.
+ */
+@Name("com.fnannizz.SolvePhase")
+@Label("Solve Phase")
+@Category("Hoardpath")
+@Description("A timed stage of loading a map or solving a scenario")
+class SolvePhaseEvent extends Event {
+    @Label("Phase")
+    String phase;
+
+    @Label("Count")
+    @Description("Work done, in units that depend on the phase")
+    long count;
+
+    @Label("Allocated")
+    @DataAmount
+    long allocatedBytes;
+}
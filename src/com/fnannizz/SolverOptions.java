@@ -0,0 +1,231 @@
+package com.fnannizz;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Tuning knobs for OptimalPathSolver. The defaults suit the maps and scenarios we see day to day.
+ */
+class SolverOptions {
+
+    /**
+     * Scenarios with more item rooms than this are ordered by a parallel branch-and-bound search rather than by
+     * trying every permutation.
+     */
+    private int branchAndBoundThreshold = 8;
+
+    /**
+     * Scenarios with more item rooms than this are ordered with the Held-Karp dynamic program. Held-Karp needs
+     * O(2^n * n) memory whatever the distances, while branch and bound usually prunes most of its O(n!) tree,
+     * so branch and bound is preferred up to here.
+     */
+    private int heldKarpThreshold = 16;
+
+    /**
+     * Scenarios with more item rooms than this are too big to solve exactly (Held-Karp would need gigabytes), and
+     * are ordered by a heuristic search that stops after heuristicTimeBudgetMillis with the best order found.
+     */
+    private int heuristicThreshold = 20;
+    private long heuristicTimeBudgetMillis = 500;
+
+    /**
+     * Scenarios with at least this many must-visit rooms (the start included) run their single-source searches in
+     * parallel on searchPool rather than one after another.
+     */
+    private int parallelSearchThreshold = 4;
+
+    private ForkJoinPool searchPool = ForkJoinPool.commonPool();
+
+    private SearchEngine searchEngine = SearchEngine.BREADTH_FIRST;
+
+    /**
+     * Whether to reuse single-source search results through the map's ShortestPathCache.
+     */
+    private boolean useShortestPathCache = true;
+
+    /**
+     * Whether to find distances with searches that stop once every must-visit room is reached, and only the
+     * segments of the chosen order with bidirectional searches, instead of full shortest path trees. Bypasses
+     * the shortest path cache, and is always breadth-first whatever the search engine.
+     */
+    private boolean targetedSearch = false;
+
+    /**
+     * Whether to search the map's ReducedMap, with its item-free corridors contracted and dead ends pruned,
+     * instead of the full map. Takes precedence over targetedSearch and bypasses the shortest path cache.
+     */
+    private boolean useGraphReduction = false;
+
+    /**
+     * Whether to find distances and segments on the map's HierarchicalMap, searching between cluster entrances
+     * instead of rooms. Where the map is loaded with these options, the index is read from next to the map file, or
+     * built and saved there. Comes after useGraphReduction and before targetedSearch, and bypasses the shortest
+     * path cache.
+     */
+    private boolean useHierarchicalSearch = false;
+
+    /**
+     * Whether to fill the distance matrix from the map's HubLabels instead of searching, and find the chosen segments
+     * by following the labels. Where the map is loaded with these options, the labels are read from next to the map
+     * file, or built and saved there. Comes after useGraphReduction and before useHierarchicalSearch.
+     */
+    private boolean useHubLabels = false;
+
+    /**
+     * Whether to load compiled maps with OffHeapMapStorage, reading them in place from the mapped file rather than
+     * copying them onto the heap. Only applies where the map is loaded with these options.
+     */
+    private boolean offHeapMaps = false;
+
+    static final int DEFAULT_MAX_RESIDENT_REGIONS = 64;
+
+    /**
+     * How many regions of a partitioned map (see PartitionedMapStorage) to keep in memory at once. Only applies where
+     * the map is loaded with these options.
+     */
+    private int maxResidentRegions = DEFAULT_MAX_RESIDENT_REGIONS;
+
+    /**
+     * Memory the solver may keep for rebuilding paths between must-visit rooms. While the k full shortest path trees
+     * (8 bytes per room each) fit, they are kept; beyond that only the k * k distances are, and the segments used
+     * are searched for again. Unlimited by default.
+     */
+    private long pathMemoryBudgetBytes = Long.MAX_VALUE;
+
+    /**
+     * Receives a measurement for every instrumented phase, or null (the default) to skip measuring unless a JFR
+     * recording wants SolvePhaseEvents.
+     */
+    private MetricsSink metricsSink;
+
+    int getBranchAndBoundThreshold() {
+        return branchAndBoundThreshold;
+    }
+
+    void setBranchAndBoundThreshold(int threshold) {
+        branchAndBoundThreshold = threshold;
+    }
+
+    int getHeldKarpThreshold() {
+        return heldKarpThreshold;
+    }
+
+    void setHeldKarpThreshold(int threshold) {
+        heldKarpThreshold = threshold;
+    }
+
+    int getHeuristicThreshold() {
+        return heuristicThreshold;
+    }
+
+    void setHeuristicThreshold(int threshold) {
+        heuristicThreshold = threshold;
+    }
+
+    long getHeuristicTimeBudgetMillis() {
+        return heuristicTimeBudgetMillis;
+    }
+
+    void setHeuristicTimeBudgetMillis(long millis) {
+        heuristicTimeBudgetMillis = millis;
+    }
+
+    SearchEngine getSearchEngine() {
+        return searchEngine;
+    }
+
+    void setSearchEngine(SearchEngine engine) {
+        searchEngine = engine;
+    }
+
+    int getParallelSearchThreshold() {
+        return parallelSearchThreshold;
+    }
+
+    void setParallelSearchThreshold(int threshold) {
+        parallelSearchThreshold = threshold;
+    }
+
+    /**
+     * Pool that the branch-and-bound search and the per-source searches are split across, the common pool by
+     * default.
+     */
+    ForkJoinPool getSearchPool() {
+        return searchPool;
+    }
+
+    void setSearchPool(ForkJoinPool pool) {
+        searchPool = pool;
+    }
+
+    boolean getUseShortestPathCache() {
+        return useShortestPathCache;
+    }
+
+    void setUseShortestPathCache(boolean use) {
+        useShortestPathCache = use;
+    }
+
+    boolean getTargetedSearch() {
+        return targetedSearch;
+    }
+
+    void setTargetedSearch(boolean targeted) {
+        targetedSearch = targeted;
+    }
+
+    boolean getUseGraphReduction() {
+        return useGraphReduction;
+    }
+
+    void setUseGraphReduction(boolean use) {
+        useGraphReduction = use;
+    }
+
+    boolean getUseHierarchicalSearch() {
+        return useHierarchicalSearch;
+    }
+
+    void setUseHierarchicalSearch(boolean use) {
+        useHierarchicalSearch = use;
+    }
+
+    boolean getUseHubLabels() {
+        return useHubLabels;
+    }
+
+    void setUseHubLabels(boolean use) {
+        useHubLabels = use;
+    }
+
+    boolean getOffHeapMaps() {
+        return offHeapMaps;
+    }
+
+    void setOffHeapMaps(boolean offHeap) {
+        offHeapMaps = offHeap;
+    }
+
+    int getMaxResidentRegions() {
+        return maxResidentRegions;
+    }
+
+    void setMaxResidentRegions(int regions) {
+        maxResidentRegions = regions;
+    }
+
+    long getPathMemoryBudgetBytes() {
+        return pathMemoryBudgetBytes;
+    }
+
+    void setPathMemoryBudgetBytes(long bytes) {
+        pathMemoryBudgetBytes = bytes;
+    }
+
+    MetricsSink getMetricsSink() {
+        return metricsSink;
+    }
+
+    void setMetricsSink(MetricsSink sink) {
+        metricsSink = sink;
+    }
+}
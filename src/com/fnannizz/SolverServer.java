@@ -0,0 +1,260 @@
+package com.fnannizz;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resident solver that keeps one or more maps loaded and answers solve requests over a local TCP port or Unix
+ * domain socket, so a request pays for neither JVM start-up nor map loading.
+ *
+ * The protocol is line based, with tab-separated fields:
+ *
+ *   SOLVE \t map name \t starting room \t item \t item ...
+ *   MAPS
+ *   QUIT
+ *
+ * Every reply ends with a line holding a single "." A solved request replies with exactly what
+ * TextSolutionWriter writes; a bad request replies "ERROR message"; and when the request queue is
+ * full the server replies "BUSY" straight away rather than letting work pile up, so clients can back off.
+ *
+ * Each connection is read by its own thread and its requests are answered in order. Solves run on a fixed pool
+ * of worker threads in front of a bounded queue, shared by every connection.
+ *
+ * Each map is served through MapVersions, so the process hosting the server can edit a map while it is being
+ * solved on. A request pins the version that is current when it arrives and is solved entirely against it.
+ */
+class SolverServer implements Closeable {
+    static final String END_OF_REPLY = ".";
+
+    private final Map<String, MapVersions> maps = new LinkedHashMap<>();
+    private final SolverOptions options;
+    private final ThreadPoolExecutor workers;
+    private final ExecutorService connections = Executors.newCachedThreadPool();
+    private final Semaphore connectionSlots;
+    private final SolutionWriter solutionWriter = new TextSolutionWriter();
+
+    private ServerSocketChannel serverChannel;
+    private Path unixSocketPath;
+    private Thread acceptor;
+    private volatile boolean running;
+
+    /**
+     * @param loadedMaps maps to serve, by the name requests use for them. They can only be edited through
+     *                   getMapVersions from now on.
+     * @param threads number of requests solved at once
+     * @param queueCapacity number of requests that may wait for a worker before the server replies BUSY
+     * @param maxConnections number of clients that may be connected at once
+     */
+    SolverServer(Map<String, MapData> loadedMaps, SolverOptions solverOptions, int threads, int queueCapacity, int maxConnections) {
+        for (Map.Entry<String, MapData> map : loadedMaps.entrySet()) {
+            maps.put(map.getKey(), new MapVersions(map.getValue()));
+        }
+        options = solverOptions;
+        workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new ThreadPoolExecutor.AbortPolicy());
+        connectionSlots = new Semaphore(maxConnections);
+    }
+
+    /**
+     * Listen on 127.0.0.1 at the given port (0 for any free port).
+     */
+    void startTcp(int port) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open();
+        channel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+        start(channel);
+    }
+
+    /**
+     * Listen on a Unix domain socket at the given path, which must not already exist.
+     */
+    void startUnix(String socketPath) throws IOException {
+        ServerSocketChannel channel = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+        channel.bind(UnixDomainSocketAddress.of(socketPath));
+        unixSocketPath = Paths.get(socketPath);
+        start(channel);
+    }
+
+    SocketAddress getLocalAddress() throws IOException {
+        return serverChannel.getLocalAddress();
+    }
+
+    private void start(ServerSocketChannel channel) {
+        serverChannel = channel;
+        running = true;
+        acceptor = new Thread(this::acceptConnections, "solver-server-acceptor");
+        acceptor.start();
+    }
+
+    private void acceptConnections() {
+        while (running) {
+            try {
+                SocketChannel client = serverChannel.accept();
+                if (!connectionSlots.tryAcquire()) {
+                    try (OutputStream out = Channels.newOutputStream(client)) {
+                        out.write(("BUSY\n" + END_OF_REPLY + "\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                    continue;
+                }
+                connections.execute(() -> {
+                    try {
+                        serve(client);
+                    }
+                    finally {
+                        connectionSlots.release();
+                    }
+                });
+            }
+            catch (IOException e) {
+                if (running) {
+                    System.err.println("Error accepting connection: " + e.toString());
+                }
+            }
+        }
+    }
+
+    private void serve(SocketChannel client) {
+        try (SocketChannel channel = client;
+             BufferedReader in = new BufferedReader(new InputStreamReader(Channels.newInputStream(channel), StandardCharsets.UTF_8));
+             PrintStream out = new PrintStream(Channels.newOutputStream(channel), false, "UTF-8")) {
+            String request;
+            while ((request = in.readLine()) != null) {
+                if (request.equals("QUIT")) {
+                    break;
+                }
+                out.print(handle(request));
+                out.println(END_OF_REPLY);
+                out.flush();
+            }
+        }
+        catch (IOException e) {
+            // The client went away; nothing to reply to.
+        }
+    }
+
+    /**
+     * @return the versions of the map served under name, or null if there is no such map
+     */
+    MapVersions getMapVersions(String name) {
+        return maps.get(name);
+    }
+
+    /**
+     * @return the number of requests waiting for a worker
+     */
+    int getWaitingRequestCount() {
+        return workers.getQueue().size();
+    }
+
+    /**
+     * @return the reply to a single request line, without the terminating "." line
+     */
+    String handle(String request) {
+        String[] fields = request.split("\t");
+        if (fields[0].equals("MAPS")) {
+            StringBuilder reply = new StringBuilder();
+            for (String name : maps.keySet()) {
+                reply.append(name).append('\n');
+            }
+            return reply.toString();
+        }
+        if (!fields[0].equals("SOLVE") || fields.length < 3) {
+            return "ERROR Expected SOLVE, map, starting room and items separated by tabs.\n";
+        }
+        MapVersions versions = maps.get(fields[1]);
+        if (versions == null) {
+            return "ERROR Unknown map " + fields[1] + ".\n";
+        }
+        MapData mapData = versions.current();
+
+        Future<String> reply;
+        try {
+            reply = workers.submit(() -> solve(mapData, fields[2], Arrays.asList(fields).subList(3, fields.length)));
+        }
+        catch (RejectedExecutionException e) {
+            return "BUSY\n";
+        }
+        try {
+            return reply.get();
+        }
+        catch (ExecutionException e) {
+            return "ERROR " + e.getCause().toString() + "\n";
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return "ERROR Interrupted.\n";
+        }
+    }
+
+    private String solve(MapData mapData, String startingLocation, List<String> items) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+            Scenario scenario = Scenario.create(startingLocation, items, mapData);
+            PathSolution solution = new OptimalPathSolver(options).findOptimalPath(mapData, scenario.getItemsToCollect(),
+                    scenario.getStartingLocation());
+            PhaseTimer timer = PhaseTimer.start(SolvePhase.OUTPUT, options.getMetricsSink());
+            solutionWriter.write(solution, buffer);
+            timer.stop(solution.getStepCount());
+        }
+        catch (InvalidScenarioException e) {
+            return "ERROR " + e.getMessage() + "\n";
+        }
+        catch (IOException e) {
+            return "ERROR " + e.toString() + "\n";
+        }
+        return new String(buffer.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+        if (unixSocketPath != null) {
+            Files.deleteIfExists(unixSocketPath);
+        }
+        connections.shutdownNow();
+        workers.shutdownNow();
+        for (MapVersions versions : maps.values()) {
+            versions.close();
+        }
+        if (acceptor != null) {
+            try {
+                acceptor.join();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.fnannizz;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes a solution as the step-by-step directions the solver has always printed.
+ */
+class TextSolutionWriter implements SolutionWriter {
+
+    @Override
+    public void write(PathSolution solution, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        if (!solution.isFound()) {
+            writer.write("Unable to find a path to collect all needed items.\n");
+            writer.flush();
+            return;
+        }
+
+        if (solution.isProvenOptimal()) {
+            writer.write("Found an optimal path of length " + solution.getLength() + ".\n");
+        }
+        else {
+            writer.write("Found a path of length " + solution.getLength() + " (not proven optimal).\n");
+        }
+        writer.write("-------------------------------------------------\n");
+        for (int step = 0; step < solution.getStepCount(); step++) {
+            writer.write("Entering ");
+            writer.write(solution.getRoom(step));
+            writer.write(".\n");
+            for (String item : solution.getPickups(step)) {
+                writer.write("Picking up ");
+                writer.write(item);
+                writer.write(".\n");
+            }
+            if (solution.getMove(step) != null) {
+                writer.write("Moving ");
+                writer.write(solution.getMove(step));
+                writer.write(".\n");
+            }
+        }
+        writer.write("All items collected.\n");
+        writer.flush();
+    }
+
+    @Override
+    public String getFileExtension() {
+        return ".solution.txt";
+    }
+}
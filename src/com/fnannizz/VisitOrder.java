@@ -0,0 +1,43 @@
+package com.fnannizz;
+
+/**
+ * The order in which to visit the must-visit nodes, given as indices into the must-visit list
+ * (so the start node is always 0 and comes first), together with the total length of that order
+ * and whether it is known to be the shortest.
+ *
+ * ordersEvaluated counts the complete or partial orders the solver priced on the way, as a measure of how hard
+ * it had to work.
+ */
+class VisitOrder {
+    private final int[] order;
+    private final int length;
+    private final boolean provenOptimal;
+    private final long ordersEvaluated;
+
+    VisitOrder(int[] o, int l) {
+        this(o, l, true, 0);
+    }
+
+    VisitOrder(int[] o, int l, boolean optimal, long evaluated) {
+        order = o;
+        length = l;
+        provenOptimal = optimal;
+        ordersEvaluated = evaluated;
+    }
+
+    int[] getOrder() {
+        return order;
+    }
+
+    int getLength() {
+        return length;
+    }
+
+    boolean isProvenOptimal() {
+        return provenOptimal;
+    }
+
+    long getOrdersEvaluated() {
+        return ordersEvaluated;
+    }
+}
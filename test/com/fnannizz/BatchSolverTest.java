@@ -0,0 +1,81 @@
+package com.fnannizz;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing solving a directory of scenarios against one map.
+ */
+public class BatchSolverTest {
+
+    private final String testfilesPath = "./test/com/fnannizz/testfiles/";
+
+    private String read(Path path) throws Exception {
+        return new String(Files.readAllBytes(path), StandardCharsets.UTF_8).trim();
+    }
+
+    @Test
+    public void testSolveDirectory() throws Exception {
+        Path scenarioDirectory = Files.createTempDirectory("scenarios");
+        Path outputDirectory = Files.createTempDirectory("batch");
+        for (String scenario : new String[] { "scenario_no_items.txt", "scenario.txt", "scenario_extra_item.txt", "scenario_empty.txt" }) {
+            Files.copy(Paths.get(testfilesPath, "basic", scenario), scenarioDirectory.resolve(scenario));
+        }
+        MapData mapData = MapFactory.makeMap(testfilesPath + "basic/map.xml");
+        List<String> scenarios = BatchSolver.listScenarios(scenarioDirectory.toString());
+        ByteArrayOutputStream summary = new ByteArrayOutputStream();
+        ExecutorService executor = BatchSolver.createExecutor(4, false);
+        int failures;
+        try {
+            failures = new BatchSolver(mapData, new SolverOptions()).solveAll(scenarios, outputDirectory.toString(),
+                    executor, new PrintStream(summary, true, "UTF-8"));
+        }
+        finally {
+            executor.shutdown();
+        }
+
+        assertEquals(4, scenarios.size());
+        assertEquals(3, failures);
+        assertEquals(read(Paths.get(testfilesPath, "basic/solution.txt")), read(outputDirectory.resolve("scenario.solution.txt")));
+        assertEquals("The item turkey baster does not exist in the given map.",
+                read(outputDirectory.resolve("scenario_extra_item.solution.txt")));
+
+        String[] lines = summary.toString("UTF-8").trim().split("\n");
+        assertEquals(4, lines.length);
+        assertTrue(lines[0].endsWith("scenario.txt: solved"));
+        assertTrue(lines[1].endsWith("scenario_empty.txt: invalid scenario: Invalid starting location."));
+
+        for (Path directory : new Path[] { scenarioDirectory, outputDirectory }) {
+            for (File file : directory.toFile().listFiles()) {
+                file.delete();
+            }
+            directory.toFile().delete();
+        }
+    }
+
+    @Test
+    public void testManifestKeepsOrder() throws Exception {
+        Path manifest = Files.createTempFile("manifest", ".lst");
+        String basic = new File(testfilesPath + "basic").getAbsolutePath();
+        Files.write(manifest, Arrays.asList(basic + "/scenario_no_items.txt", "", basic + "/scenario.txt"));
+        try {
+            assertEquals(Arrays.asList(basic + "/scenario_no_items.txt", basic + "/scenario.txt"),
+                    BatchSolver.listScenarios(manifest.toString()));
+        }
+        finally {
+            manifest.toFile().delete();
+        }
+    }
+}
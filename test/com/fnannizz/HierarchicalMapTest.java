@@ -0,0 +1,177 @@
+package com.fnannizz;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing that searching the hierarchical map finds exact distances and real paths, and that its index is saved
+ * and only reused for the map it was built for.
+ */
+public class HierarchicalMapTest {
+
+    private final String testfilesPath = "./test/com/fnannizz/testfiles/";
+
+    private static SolverOptions hierarchicalOptions() {
+        SolverOptions options = new SolverOptions();
+        options.setUseHierarchicalSearch(true);
+        return options;
+    }
+
+    private static MapData buildMap(MapGenerator generator) throws Exception {
+        File mapFile = File.createTempFile("generated", ".xml");
+        try {
+            generator.writeMap(mapFile.getPath());
+            return MapFactory.makeMap(mapFile.getPath());
+        }
+        finally {
+            mapFile.delete();
+        }
+    }
+
+    @Test
+    public void testComplexScenarioMatchesFullMap() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+        Scenario scenario = Scenario.readFromFile(testfilesPath + "complex/scenario.txt", mapData);
+        PathSolution expected = new OptimalPathSolver().findOptimalPath(mapData, scenario.getItemsToCollect(),
+                scenario.getStartingLocation());
+        PathSolution hierarchical = new OptimalPathSolver(hierarchicalOptions()).findOptimalPath(mapData,
+                scenario.getItemsToCollect(), scenario.getStartingLocation());
+        assertEquals(expected.getLength(), hierarchical.getLength());
+        ReducedMapTest.assertValidSolution(mapData, hierarchical, scenario.getStartingLocation(), scenario.getItemsToCollect());
+    }
+
+    @Test
+    public void testGeneratedScenariosMatchFullMap() throws Exception {
+        for (int maxCost : new int[] { 1, 5 }) {
+            for (MapGenerator.Shape shape : MapGenerator.Shape.values()) {
+                MapGenerator generator = new MapGenerator(shape, 2000, 11, maxCost);
+                MapData mapData = buildMap(generator);
+                for (int i = 0; i < 10; i++) {
+                    List<String> scenario = generator.generateScenario(6);
+                    List<String> items = scenario.subList(1, scenario.size());
+                    PathSolution expected = new OptimalPathSolver().findOptimalPath(mapData, items, scenario.get(0));
+                    PathSolution hierarchical = new OptimalPathSolver(hierarchicalOptions()).findOptimalPath(mapData,
+                            items, scenario.get(0));
+                    assertEquals(shape + " scenario " + i, expected.getLength(), hierarchical.getLength());
+                    ReducedMapTest.assertValidSolution(mapData, hierarchical, scenario.get(0), items);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDistancesAndPathsWithOneWayConnections() throws Exception {
+        MapData mapData = buildMap(new MapGenerator(MapGenerator.Shape.GRID, 900, 5, 4));
+        Random random = new Random(3);
+        for (int i = 0; i < 60; i++) {
+            int from = random.nextInt(mapData.getRoomCount());
+            int to = random.nextInt(mapData.getRoomCount());
+            mapData.addConnection(mapData.getRoomId(from), MapData.directions[random.nextInt(MapData.directions.length)],
+                    mapData.getRoomId(to), 1 + random.nextInt(3));
+        }
+        HierarchicalMap hierarchicalMap = new HierarchicalMap(mapData, 16);
+        assertTrue(hierarchicalMap.getClusterCount() >= mapData.getRoomCount() / 16);
+
+        HierarchicalMap.Endpoint[] endpoints = new HierarchicalMap.Endpoint[40];
+        int[] rooms = new int[endpoints.length];
+        for (int i = 0; i < endpoints.length; i++) {
+            rooms[i] = random.nextInt(mapData.getRoomCount());
+            endpoints[i] = hierarchicalMap.endpoint(rooms[i]);
+        }
+        for (int source = 0; source < endpoints.length; source++) {
+            ShortestPathData expected = ShortestPathSolver.findShortestPathFromNode(rooms[source], mapData);
+            HierarchicalMap.Search search = hierarchicalMap.searchFrom(endpoints[source], endpoints);
+            for (int target = 0; target < endpoints.length; target++) {
+                int distance = expected.getDistance(rooms[target]);
+                assertEquals(distance, hierarchicalMap.distanceTo(search, target));
+                int[] path = hierarchicalMap.pathTo(search, target);
+                if (distance == Integer.MAX_VALUE) {
+                    assertNull(path);
+                    continue;
+                }
+                assertEquals(rooms[source], path[0]);
+                assertEquals(rooms[target], path[path.length - 1]);
+                int cost = 0;
+                for (int i = 1; i < path.length; i++) {
+                    cost += mapData.getCostTo(path[i - 1], path[i]);
+                }
+                assertEquals(distance, cost);
+            }
+        }
+    }
+
+    @Test
+    public void testIndexIsSavedNextToTheMap() throws Exception {
+        File mapFile = File.createTempFile("generated", ".xml");
+        File indexFile = new File(mapFile.getPath() + HierarchicalMap.FILE_SUFFIX);
+        try {
+            new MapGenerator(MapGenerator.Shape.RANDOM_SPARSE, 1000, 7, 3).writeMap(mapFile.getPath());
+            PathSolver solver = new PathSolver();
+            solver.getOptions().setUseHierarchicalSearch(true);
+            MetricsSummary metrics = new MetricsSummary();
+            solver.getOptions().setMetricsSink(metrics);
+            solver.initializeWithMap(mapFile.getPath());
+            assertEquals(1, metrics.getCalls(SolvePhase.HIERARCHY_BUILD));
+            assertTrue(indexFile.exists());
+
+            MapData mapData = MapFactory.makeMap(mapFile.getPath());
+            HierarchicalMap built = new HierarchicalMap(mapData);
+            HierarchicalMap saved = HierarchicalMap.read(mapData, indexFile.getPath());
+            assertNotNull(saved);
+            assertEquals(built.getClusterCount(), saved.getClusterCount());
+            assertEquals(built.getEntranceCount(), saved.getEntranceCount());
+
+            // The index goes with edits, and a saved index isn't used for a map that has changed since.
+            mapData.setHierarchicalMap(saved);
+            assertSame(saved, mapData.getHierarchicalMap());
+            mapData.addConnection(mapData.getRoomId(0), "north", mapData.getRoomId(mapData.getRoomCount() - 1));
+            assertNotSame(saved, mapData.getHierarchicalMap());
+            assertNull(HierarchicalMap.read(mapData, indexFile.getPath()));
+        }
+        finally {
+            mapFile.delete();
+            indexFile.delete();
+        }
+    }
+
+    @Test
+    public void testUnreadableOrUnwritableIndex() throws Exception {
+        File mapFile = File.createTempFile("generated", ".xml");
+        File indexFile = new File(mapFile.getPath() + HierarchicalMap.FILE_SUFFIX);
+        try {
+            new MapGenerator(MapGenerator.Shape.GRID, 400, 7, 1).writeMap(mapFile.getPath());
+            MapData mapData = MapFactory.makeMap(mapFile.getPath());
+            int entrances = new HierarchicalMap(mapData).getEntranceCount();
+
+            // A truncated index is rebuilt and saved again.
+            HierarchicalMap.loadOrBuild(mapData, indexFile.getPath());
+            try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+                file.setLength(file.length() / 2);
+            }
+            try {
+                HierarchicalMap.read(mapData, indexFile.getPath());
+                fail("Expected the truncated index to be rejected");
+            }
+            catch (IOException e) {
+                // expected
+            }
+            assertEquals(entrances, HierarchicalMap.loadOrBuild(mapData, indexFile.getPath()).getEntranceCount());
+            assertNotNull(HierarchicalMap.read(mapData, indexFile.getPath()));
+
+            // An index that can't be saved is still used.
+            String unwritable = new File(mapFile.getPath() + ".missing", "map.xml" + HierarchicalMap.FILE_SUFFIX).getPath();
+            assertEquals(entrances, HierarchicalMap.loadOrBuild(mapData, unwritable).getEntranceCount());
+        }
+        finally {
+            mapFile.delete();
+            indexFile.delete();
+        }
+    }
+}
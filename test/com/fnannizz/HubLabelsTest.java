@@ -0,0 +1,181 @@
+package com.fnannizz;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing that pruning the hub labels loses no distances, that paths can be walked off the labels, that labels are
+ * built off the solving thread for the newest version of a map only, and that saved labels read back the same.
+ */
+public class HubLabelsTest {
+
+    private final String testfilesPath = "./test/com/fnannizz/testfiles/";
+
+    /**
+     * A generated map with extra one-way connections, so that the outgoing and incoming labels differ.
+     */
+    private static MapData oneWayMap(File mapFile) throws Exception {
+        new MapGenerator(MapGenerator.Shape.RANDOM_SPARSE, 300, 5, 4).writeMap(mapFile.getPath());
+        MapData mapData = MapFactory.makeMap(mapFile.getPath());
+        Random random = new Random(3);
+        for (int i = 0; i < 30; i++) {
+            int from = random.nextInt(mapData.getRoomCount());
+            int to = random.nextInt(mapData.getRoomCount());
+            mapData.addConnection(mapData.getRoomId(from), MapData.directions[random.nextInt(MapData.directions.length)],
+                    mapData.getRoomId(to), 1 + random.nextInt(3));
+        }
+        return mapData;
+    }
+
+    @Test
+    public void testPruningKeepsEveryDistance() throws Exception {
+        File mapFile = File.createTempFile("generated", ".xml");
+        try {
+            MapData mapData = oneWayMap(mapFile);
+            HubLabels pruned = new HubLabels(mapData);
+            HubLabels unpruned = new HubLabels(mapData, false);
+            assertTrue(pruned.getLabelEntryCount() < unpruned.getLabelEntryCount() / 4);
+            for (int from = 0; from < mapData.getRoomCount(); from++) {
+                ShortestPathData expected = ShortestPathSolver.findShortestPathFromNode(from, mapData);
+                for (int to = 0; to < mapData.getRoomCount(); to++) {
+                    assertEquals(expected.getDistance(to), unpruned.distance(from, to));
+                    assertEquals(unpruned.distance(from, to), pruned.distance(from, to));
+                }
+            }
+        }
+        finally {
+            mapFile.delete();
+        }
+    }
+
+    @Test
+    public void testWalkingPathsOffTheLabels() throws Exception {
+        File mapFile = File.createTempFile("generated", ".xml");
+        try {
+            MapData mapData = oneWayMap(mapFile);
+            HubLabels hubLabels = new HubLabels(mapData);
+            Random random = new Random(5);
+            for (int i = 0; i < 200; i++) {
+                int from = random.nextInt(mapData.getRoomCount());
+                int to = random.nextInt(mapData.getRoomCount());
+                int[] path = hubLabels.pathBetween(from, to);
+                if (hubLabels.distance(from, to) == Integer.MAX_VALUE) {
+                    assertNull(path);
+                    continue;
+                }
+                assertEquals(from, path[0]);
+                assertEquals(to, path[path.length - 1]);
+                int cost = 0;
+                for (int step = 1; step < path.length; step++) {
+                    cost += mapData.getCostTo(path[step - 1], path[step]);
+                }
+                assertEquals(hubLabels.distance(from, to), cost);
+            }
+
+            MapData complex = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+            complex.setHubLabels(new HubLabels(complex));
+            Scenario scenario = Scenario.readFromFile(testfilesPath + "complex/scenario.txt", complex);
+            SolverOptions options = new SolverOptions();
+            options.setUseHubLabels(true);
+            PathSolution solution = new OptimalPathSolver(options).findOptimalPath(complex, scenario.getItemsToCollect(),
+                    scenario.getStartingLocation());
+            assertEquals(21, solution.getLength());
+            ReducedMapTest.assertValidSolution(complex, solution, scenario.getStartingLocation(), scenario.getItemsToCollect());
+        }
+        finally {
+            mapFile.delete();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testLabelingRunsInTheBackground() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+        Scenario scenario = Scenario.readFromFile(testfilesPath + "complex/scenario.txt", mapData);
+        SolverOptions options = new SolverOptions();
+        options.setUseHubLabels(true);
+        File labelFile = File.createTempFile("complex", HubLabels.FILE_SUFFIX);
+        labelFile.delete();
+        try {
+            // Graph reduction takes precedence, so solving with it doesn't ask for labels.
+            options.setUseGraphReduction(true);
+            new OptimalPathSolver(options).findOptimalPath(mapData, scenario.getItemsToCollect(),
+                    scenario.getStartingLocation());
+            assertNull(mapData.awaitHubLabels());
+            options.setUseGraphReduction(false);
+
+            // Asking for labels the map doesn't have yet starts building them and returns none, and the solver
+            // searches instead until they're ready. Labels built after the map was loaded are saved next to it.
+            mapData.setHubLabelFile(labelFile.getPath());
+            assertNull(mapData.getHubLabels());
+            PathSolution solution = new OptimalPathSolver(options).findOptimalPath(mapData, scenario.getItemsToCollect(),
+                    scenario.getStartingLocation());
+            assertEquals(21, solution.getLength());
+            HubLabels labels = mapData.awaitHubLabels();
+            assertSame(labels, mapData.getHubLabels());
+            assertEquals(0, labels.distance(0, 0));
+            assertNotNull(HubLabels.read(mapData, labelFile.getPath()));
+
+            mapData.addConnection(mapData.getRoomId(0), "north", mapData.getRoomId(mapData.getRoomCount() - 1));
+            assertNull(mapData.getHubLabels());
+            assertNotSame(labels, mapData.awaitHubLabels());
+            assertEquals(1, mapData.getHubLabels().distance(0, mapData.getRoomCount() - 1));
+        }
+        finally {
+            labelFile.delete();
+        }
+    }
+
+    @Test(timeout = 60000)
+    public void testOnlyTheNewestVersionIsLabeled() throws Exception {
+        MapVersions versions = new MapVersions(MapFactory.makeMap(testfilesPath + "complex/map.xml"));
+        try {
+            MapData first = versions.current();
+            MapData second = versions.edit(map -> map.addConnection(map.getRoomId(0), "north",
+                    map.getRoomId(map.getRoomCount() - 1)));
+            assertNull(second.getHubLabels());
+            assertNull(first.getHubLabels());
+            assertNull(first.awaitHubLabels());
+            assertEquals(1, second.awaitHubLabels().distance(0, second.getRoomCount() - 1));
+
+            // Once the versions are closed, nothing more is labeled.
+            MapData third = versions.edit(map -> map.removeConnection(map.getRoomId(0), "north"));
+            versions.close();
+            assertNull(third.getHubLabels());
+            assertNull(third.awaitHubLabels());
+        }
+        finally {
+            versions.close();
+        }
+    }
+
+    @Test
+    public void testSavedLabelsReadBackTheSame() throws Exception {
+        File mapFile = File.createTempFile("generated", ".xml");
+        File labelFile = new File(mapFile.getPath() + HubLabels.FILE_SUFFIX);
+        try {
+            new MapGenerator(MapGenerator.Shape.GRID, 400, 7, 3).writeMap(mapFile.getPath());
+            Main.main(new String[] { "--label", mapFile.getPath() });
+            MapData mapData = MapFactory.makeMap(mapFile.getPath());
+            HubLabels built = new HubLabels(mapData);
+            HubLabels saved = HubLabels.read(mapData, labelFile.getPath());
+            assertNotNull(saved);
+            assertEquals(built.getLabelEntryCount(), saved.getLabelEntryCount());
+            for (int from = 0; from < mapData.getRoomCount(); from += 7) {
+                for (int to = 0; to < mapData.getRoomCount(); to++) {
+                    assertEquals(built.distance(from, to), saved.distance(from, to));
+                }
+            }
+
+            mapData.addConnection(mapData.getRoomId(0), "north", mapData.getRoomId(mapData.getRoomCount() - 1));
+            assertNull(HubLabels.read(mapData, labelFile.getPath()));
+        }
+        finally {
+            mapFile.delete();
+            labelFile.delete();
+        }
+    }
+}
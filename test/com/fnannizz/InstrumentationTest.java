@@ -0,0 +1,90 @@
+package com.fnannizz;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.HashSet;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the per-phase metrics and flight recorder events.
+ */
+public class InstrumentationTest {
+
+    private final String testfilesPath = "./test/com/fnannizz/testfiles/";
+
+    private PathSolution solve(MapData mapData, SolverOptions options) throws Exception {
+        Scenario scenario = Scenario.readFromFile(testfilesPath + "complex/scenario.txt", mapData);
+        return new OptimalPathSolver(options).findOptimalPath(mapData, scenario.getItemsToCollect(),
+                scenario.getStartingLocation());
+    }
+
+    @Test
+    public void testMetricsSummary() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+        MetricsSummary metrics = new MetricsSummary();
+        SolverOptions options = new SolverOptions();
+        options.setMetricsSink(metrics);
+
+        PathSolution solution = solve(mapData, options);
+        assertEquals(1, metrics.getCalls(SolvePhase.ITEM_LOOKUP));
+        long searches = metrics.getCalls(SolvePhase.SHORTEST_PATH_SEARCH);
+        assertTrue(searches > 1);
+        assertTrue(metrics.getCount(SolvePhase.SHORTEST_PATH_SEARCH) >= searches);
+        assertEquals(1, metrics.getCalls(SolvePhase.ORDER_SEARCH));
+        assertTrue(metrics.getCount(SolvePhase.ORDER_SEARCH) > 0);
+        assertEquals(solution.getStepCount(), metrics.getCount(SolvePhase.PATH_RECONSTRUCTION));
+        assertTrue(metrics.getNanos(SolvePhase.ORDER_SEARCH) > 0);
+
+        // The second solve finds every search result in the map's cache.
+        solve(mapData, options);
+        assertEquals(searches, metrics.getCalls(SolvePhase.SHORTEST_PATH_SEARCH));
+        assertEquals(2, metrics.getCalls(SolvePhase.ORDER_SEARCH));
+    }
+
+    @Test
+    public void testOrdersEvaluatedBySolver() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+        for (int solver = 0; solver < 3; solver++) {
+            MetricsSummary metrics = new MetricsSummary();
+            SolverOptions options = new SolverOptions();
+            options.setMetricsSink(metrics);
+            options.setBranchAndBoundThreshold(solver == 1 ? 0 : 8);
+            options.setHeldKarpThreshold(solver == 2 ? 0 : 16);
+            solve(mapData, options);
+            assertTrue("solver " + solver, metrics.getCount(SolvePhase.ORDER_SEARCH) > 0);
+        }
+    }
+
+    @Test
+    public void testFlightRecorderEvents() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+        SolverOptions options = new SolverOptions();
+        options.setUseShortestPathCache(false);
+        File recordingFile = File.createTempFile("solve", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("com.fnannizz.SolvePhase").withoutThreshold();
+            recording.start();
+            solve(mapData, options);
+            recording.stop();
+            recording.dump(recordingFile.toPath());
+
+            HashSet<String> phases = new HashSet<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(recordingFile.toPath())) {
+                if (event.getEventType().getName().equals("com.fnannizz.SolvePhase")) {
+                    phases.add(event.getString("phase"));
+                }
+            }
+            assertTrue(phases.contains("SHORTEST_PATH_SEARCH"));
+            assertTrue(phases.contains("ORDER_SEARCH"));
+            assertTrue(phases.contains("PATH_RECONSTRUCTION"));
+        }
+        finally {
+            recordingFile.delete();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.fnannizz;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing editing a loaded map and repairing the cached search results it holds.
+ */
+public class MapEditTest {
+
+    private final String testfilesPath = "./test/com/fnannizz/testfiles/";
+
+    private PathSolution solveBasicScenario(MapData mapData) throws Exception {
+        return new OptimalPathSolver().findOptimalPath(mapData, Arrays.asList("potted plant", "knife"), "2");
+    }
+
+    @Test
+    public void testEditConnections() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "basic/map.xml");
+        assertEquals(3, solveBasicScenario(mapData).getLength());
+
+        // A shortcut from the sun room straight to the kitchen replaces its way back to the dining room.
+        mapData.addConnection("4", "west", "3");
+        int sunRoom = mapData.getRoomIndex("4");
+        assertEquals(1, mapData.getDegree(sunRoom));
+        assertEquals("west", mapData.getDirectionTo(sunRoom, mapData.getRoomIndex("3")));
+        assertEquals(2, solveBasicScenario(mapData).getLength());
+
+        assertTrue(mapData.removeConnection("4", "west"));
+        assertFalse(mapData.removeConnection("4", "west"));
+        assertEquals(0, mapData.getDegree(sunRoom));
+        mapData.addConnection("4", "west", "2");
+        assertEquals(3, solveBasicScenario(mapData).getLength());
+    }
+
+    @Test
+    public void testDirectionOfParallelConnections() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "basic/map.xml");
+        int hallway = mapData.getRoomIndex("1");
+        int diningRoom = mapData.getRoomIndex("2");
+        mapData.addConnection("1", "north", "2", 5);
+        mapData.addConnection("1", "east", "2", 2);
+        mapData.addConnection("1", "west", "2", 2);
+        assertEquals(2, mapData.getCostTo(hallway, diningRoom));
+        assertEquals("east", mapData.getDirectionTo(hallway, diningRoom));
+    }
+
+    @Test
+    public void testEditRoomsAndItems() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "basic/map.xml");
+        int pantry = mapData.addRoom("5", "Pantry");
+        assertEquals(4, pantry);
+        assertEquals(5, mapData.getRoomCount());
+        mapData.addConnection("3", "north", "5");
+        mapData.addConnection("5", "south", "3");
+        mapData.addItem("5", "Flour");
+        assertEquals(pantry, (int) mapData.getItemLocations().get("flour"));
+
+        PathSolution solution = new OptimalPathSolver().findOptimalPath(mapData, Arrays.asList("flour"), "2");
+        assertEquals(2, solution.getLength());
+        assertArrayEquals(new String[] { "flour" }, solution.getPickups(2));
+
+        assertTrue(mapData.removeItem("knife"));
+        assertEquals(0, mapData.getItemCount(mapData.getRoomIndex("3")));
+        assertFalse(mapData.getItemLocations().containsKey("knife"));
+
+        mapData.removeRoom("3");
+        assertFalse(mapData.nodeExistsInMap("3"));
+        assertTrue(mapData.isRoomRemoved(2));
+        assertEquals(2, mapData.getDegree(mapData.getRoomIndex("2")));
+        assertEquals(0, mapData.getDegree(pantry));
+        assertEquals(pantry, (int) mapData.getItemLocations().get("flour"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testAddDuplicateRoom() throws Exception {
+        MapFactory.makeMap(testfilesPath + "basic/map.xml").addRoom("1", "Another Hallway");
+    }
+
+    @Test
+    public void testRepairedCacheMatchesFreshSearch() throws Exception {
+        checkRepairedCache(1);
+    }
+
+    @Test
+    public void testRepairedCacheMatchesFreshSearchWithCosts() throws Exception {
+        checkRepairedCache(6);
+    }
+
+    @Test
+    public void testVersionsLeavePinnedMapsUntouched() throws Exception {
+        MapVersions versions = new MapVersions(MapFactory.makeMap(testfilesPath + "basic/map.xml"));
+        MapData pinned = versions.current();
+        assertEquals(3, solveBasicScenario(pinned).getLength());
+        ShortestPathData cached = pinned.getShortestPathCache().getIfPresent(pinned.getRoomIndex("4"), SearchEngine.BREADTH_FIRST);
+        int[] cachedDistances = new int[pinned.getRoomCount()];
+        for (int room = 0; room < cachedDistances.length; room++) {
+            cachedDistances[room] = cached.getDistance(room);
+        }
+
+        MapData edited = versions.edit(map -> {
+            map.addConnection("4", "west", "3");
+            map.addRoom("5", "Pantry");
+        });
+        assertSame(edited, versions.current());
+        assertEquals(2, versions.getVersion());
+        assertEquals(2, solveBasicScenario(edited).getLength());
+        assertEquals(1, edited.getShortestPathCache().getIfPresent(edited.getRoomIndex("4"), SearchEngine.BREADTH_FIRST)
+                .getDistance(edited.getRoomIndex("3")));
+
+        // The pinned version, and the cached search it shared with the edited one, are as they were.
+        assertEquals(4, pinned.getRoomCount());
+        assertEquals("west", pinned.getDirectionTo(pinned.getRoomIndex("4"), pinned.getRoomIndex("2")));
+        for (int room = 0; room < cachedDistances.length; room++) {
+            assertEquals(cachedDistances[room], cached.getDistance(room));
+        }
+        assertEquals(3, solveBasicScenario(pinned).getLength());
+
+        // An edit that fails part way publishes nothing.
+        try {
+            versions.edit(map -> {
+                map.removeItem("knife");
+                map.addRoom("1", "Another Hallway");
+            });
+            fail();
+        }
+        catch (IllegalArgumentException e) {
+            assertSame(edited, versions.current());
+            assertTrue(edited.getItemLocations().containsKey("knife"));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testPublishedMapCannotBeEdited() throws Exception {
+        new MapVersions(MapFactory.makeMap(testfilesPath + "basic/map.xml")).current().removeItem("knife");
+    }
+
+    private void checkRepairedCache(int maxCost) throws Exception {
+        MapGenerator generator = new MapGenerator(MapGenerator.Shape.RANDOM_SPARSE, 300, 11, maxCost);
+        File mapFile = File.createTempFile("edits", ".xml");
+        MapData mapData;
+        try {
+            generator.writeMap(mapFile.getPath());
+            mapData = MapFactory.makeMap(mapFile.getPath());
+        }
+        finally {
+            mapFile.delete();
+        }
+
+        ShortestPathCache cache = mapData.getShortestPathCache();
+        int[] sources = { 0, 17, 150, 299 };
+        for (int source : sources) {
+            cache.get(source, SearchEngine.BREADTH_FIRST);
+        }
+
+        Random random = new Random(5);
+        int nextRoom = 300;
+        for (int edit = 0; edit < 400; edit++) {
+            String from = MapGenerator.roomId(random.nextInt(nextRoom));
+            String to = MapGenerator.roomId(random.nextInt(nextRoom));
+            String direction = MapData.directions[random.nextInt(4)];
+            if (!mapData.nodeExistsInMap(from) || !mapData.nodeExistsInMap(to)) {
+                continue;
+            }
+            int choice = random.nextInt(10);
+            if (choice < 4) {
+                mapData.addConnection(from, direction, to, 1 + random.nextInt(maxCost));
+            }
+            else if (choice < 8) {
+                mapData.removeConnection(from, direction);
+            }
+            else if (choice < 9) {
+                mapData.addRoom(MapGenerator.roomId(nextRoom++), "Added");
+            }
+            else if (Arrays.stream(sources).noneMatch(source -> MapGenerator.roomId(source).equals(from))) {
+                mapData.removeRoom(from);
+            }
+
+            for (int source : sources) {
+                ShortestPathData repaired = cache.getIfPresent(source, SearchEngine.BREADTH_FIRST);
+                ShortestPathData fresh = ShortestPathSolver.findShortestPathFromNode(source, mapData);
+                for (int room = 0; room < mapData.getRoomCount(); room++) {
+                    assertEquals("edit " + edit + " room " + room, fresh.getDistance(room), repaired.getDistance(room));
+                    int previous = repaired.getPrevious(room);
+                    if (previous != -1) {
+                        assertEquals(repaired.getDistance(previous) + mapData.getCostTo(previous, room), repaired.getDistance(room));
+                        assertFalse(mapData.getDirectionTo(previous, room).startsWith("Room "));
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package com.fnannizz;
+
+import org.junit.Test;
+import org.xml.sax.SAXException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing that every way of loading a map produces the same MapData.
+ */
+public class MapFactoryTest {
+
+    private final String testfilesPath = "./test/com/fnannizz/testfiles/";
+
+    static void assertSameMap(MapData expected, MapData actual) {
+        assertEquals(expected.getRoomCount(), actual.getRoomCount());
+        for (int room = 0; room < expected.getRoomCount(); room++) {
+            assertEquals(expected.getRoomId(room), actual.getRoomId(room));
+            assertEquals(expected.getRoomName(room), actual.getRoomName(room));
+            assertEquals(room, actual.getRoomIndex(expected.getRoomId(room)));
+            assertEquals(expected.getDegree(room), actual.getDegree(room));
+            for (int i = 0; i < expected.getDegree(room); i++) {
+                assertEquals(expected.getNeighbor(room, i), actual.getNeighbor(room, i));
+                assertEquals(expected.getDirection(room, i), actual.getDirection(room, i));
+                assertEquals(expected.getCost(room, i), actual.getCost(room, i));
+            }
+            assertEquals(expected.getItemCount(room), actual.getItemCount(room));
+            for (int i = 0; i < expected.getItemCount(room); i++) {
+                assertEquals(expected.getItem(room, i), actual.getItem(room, i));
+            }
+        }
+    }
+
+    @Test
+    public void testStreamingMatchesDom() throws Exception {
+        for (String map : new String[] { "basic/map.xml", "complex/map.xml" }) {
+            MapData dom = MapFactory.makeMap(testfilesPath + map);
+            MapData streamed = MapFactory.parseXMLStreaming(testfilesPath + map, null);
+            assertSameMap(dom, streamed);
+        }
+    }
+
+    @Test
+    public void testStreamingReportsProgress() throws Exception {
+        final long[] lastUpdate = new long[3];
+        MapFactory.makeMap(testfilesPath + "complex/map.xml", (roomsLoaded, bytesRead, totalBytes) -> {
+            lastUpdate[0] = roomsLoaded;
+            lastUpdate[1] = bytesRead;
+            lastUpdate[2] = totalBytes;
+        });
+        assertEquals(20, lastUpdate[0]);
+        assertEquals(lastUpdate[2], lastUpdate[1]);
+    }
+
+    @Test
+    public void testCompiledMapMatchesXml() throws Exception {
+        File compiled = File.createTempFile("complex", ".hpth");
+        try {
+            MapFactory.compileMap(testfilesPath + "complex/map.xml", compiled.getPath());
+            assertTrue(BinaryMapFormat.isCompiledMap(compiled.getPath()));
+            assertFalse(BinaryMapFormat.isCompiledMap(testfilesPath + "complex/map.xml"));
+
+            MapData xml = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+            MapData binary = MapFactory.makeMap(compiled.getPath());
+            assertSameMap(xml, binary);
+            assertEquals(xml.getItemLocations(), binary.getItemLocations());
+        }
+        finally {
+            compiled.delete();
+        }
+    }
+
+    @Test
+    public void testOffHeapMatchesHeap() throws Exception {
+        File mapFile = File.createTempFile("costs", ".xml");
+        File compiled = File.createTempFile("costs", ".hpth");
+        try {
+            new MapGenerator(MapGenerator.Shape.RANDOM_SPARSE, 200, 3, 7).writeMap(mapFile.getPath());
+            for (String map : new String[] { testfilesPath + "complex/map.xml", mapFile.getPath() }) {
+                MapFactory.compileMap(map, compiled.getPath());
+                MapData heap = MapFactory.makeMap(map);
+                MapData offHeap = MapFactory.makeMap(compiled.getPath(), true);
+                assertSameMap(heap, offHeap);
+                assertEquals(heap.getItemLocations(), offHeap.getItemLocations());
+                assertEquals(heap.getMaxCost(), offHeap.getMaxCost());
+                assertEquals(-1, offHeap.getRoomIndex("no such room"));
+
+                // The incoming connections and components come from the file rather than the heap.
+                IndexedStorage indexed = (IndexedStorage) offHeap.getStorage();
+                ConnectivityIndex connectivity = ConnectivityIndex.build(heap.getStorage());
+                for (int room = 0; room < heap.getRoomCount(); room++) {
+                    assertEquals(heap.getIncomingDegree(room), indexed.getIncomingDegree(room));
+                    for (int i = 0; i < heap.getIncomingDegree(room); i++) {
+                        assertEquals(heap.getIncomingNeighbor(room, i), indexed.getIncomingNeighbor(room, i));
+                    }
+                    assertEquals(connectivity.mayReach(0, room), indexed.getComponent(0) == indexed.getComponent(room));
+                }
+            }
+
+            // Edits go to the overrides, including re-adding the id of a room that was removed.
+            MapFactory.compileMap(testfilesPath + "basic/map.xml", compiled.getPath());
+            MapData offHeap = MapFactory.makeMap(compiled.getPath(), true);
+            offHeap.removeRoom("4");
+            assertEquals(-1, offHeap.getRoomIndex("4"));
+            int sunRoom = offHeap.addRoom("4", "Sun Room");
+            assertEquals(4, sunRoom);
+            assertEquals("Sun Room", offHeap.getRoomName(offHeap.getRoomIndex("4")));
+            offHeap.addConnection("2", "east", "4");
+            assertEquals(sunRoom, offHeap.getNeighbor(offHeap.getRoomIndex("2"), offHeap.getDegree(offHeap.getRoomIndex("2")) - 1));
+        }
+        finally {
+            mapFile.delete();
+            compiled.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testOffHeapNeedsCompiledMap() throws Exception {
+        MapFactory.makeMap(testfilesPath + "basic/map.xml", true);
+    }
+
+    @Test
+    public void testPartitionedMatchesHeap() throws Exception {
+        File mapFile = File.createTempFile("costs", ".xml");
+        File partitioned = File.createTempFile("costs", ".hprt");
+        try {
+            new MapGenerator(MapGenerator.Shape.RANDOM_SPARSE, 500, 3, 7).writeMap(mapFile.getPath());
+            for (String map : new String[] { testfilesPath + "complex/map.xml", mapFile.getPath() }) {
+                MapFactory.partitionMap(map, partitioned.getPath(), 32);
+                assertTrue(PartitionedMapFormat.isPartitionedMap(partitioned.getPath()));
+                assertFalse(PartitionedMapFormat.isPartitionedMap(map));
+
+                MapData heap = MapFactory.makeMap(map);
+                SolverOptions options = new SolverOptions();
+                options.setMaxResidentRegions(3);
+                MapData paged = MapFactory.makeMap(partitioned.getPath(), options);
+
+                // Rooms are renumbered, so compare them by id.
+                assertEquals(heap.getRoomCount(), paged.getRoomCount());
+                for (int room = 0; room < heap.getRoomCount(); room++) {
+                    int pagedRoom = paged.getRoomIndex(heap.getRoomId(room));
+                    assertEquals(heap.getRoomId(room), paged.getRoomId(pagedRoom));
+                    assertEquals(heap.getRoomName(room), paged.getRoomName(pagedRoom));
+                    assertEquals(heap.getDegree(room), paged.getDegree(pagedRoom));
+                    for (int i = 0; i < heap.getDegree(room); i++) {
+                        assertEquals(heap.getRoomId(heap.getNeighbor(room, i)), paged.getRoomId(paged.getNeighbor(pagedRoom, i)));
+                        assertEquals(heap.getDirection(room, i), paged.getDirection(pagedRoom, i));
+                        assertEquals(heap.getCost(room, i), paged.getCost(pagedRoom, i));
+                    }
+                    assertEquals(heap.getIncomingDegree(room), paged.getIncomingDegree(pagedRoom));
+                    assertEquals(heap.getItemCount(room), paged.getItemCount(pagedRoom));
+                    for (int i = 0; i < heap.getItemCount(room); i++) {
+                        assertEquals(heap.getItem(room, i), paged.getItem(pagedRoom, i));
+                    }
+                }
+                for (String item : heap.getItemLocations().keySet()) {
+                    assertEquals(heap.getRoomId(heap.getItemLocations().get(item)),
+                            paged.getRoomId(paged.getItemLocations().get(item)));
+                }
+                assertEquals(heap.getMaxCost(), paged.getMaxCost());
+                assertEquals(-1, paged.getRoomIndex("no such room"));
+            }
+
+            PartitionedMapStorage storage = (PartitionedMapStorage) PartitionedMapFormat.read(partitioned.getPath(), 3).getStorage();
+            assertTrue(storage.getRegionCount() > 3);
+            for (int room = 0; room < storage.getRoomCount(); room++) {
+                storage.getDegree(room);
+            }
+            assertTrue(storage.getResidentRegionCount() <= 3);
+            assertEquals(storage.getRegionCount(), storage.getRegionLoads());
+        }
+        finally {
+            mapFile.delete();
+            partitioned.delete();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testTruncatedPartitionedMap() throws Exception {
+        File partitioned = File.createTempFile("complex", ".hprt");
+        try {
+            MapFactory.partitionMap(testfilesPath + "complex/map.xml", partitioned.getPath(), 4);
+            try (RandomAccessFile file = new RandomAccessFile(partitioned, "rw")) {
+                file.setLength(file.length() - 1);
+            }
+            PartitionedMapFormat.read(partitioned.getPath(), 3);
+        }
+        finally {
+            partitioned.delete();
+        }
+    }
+
+    @Test
+    public void testConnectionCosts() throws Exception {
+        File mapFile = File.createTempFile("costs", ".xml");
+        File compiled = File.createTempFile("costs", ".hpth");
+        try {
+            new MapGenerator(MapGenerator.Shape.RANDOM_SPARSE, 200, 3, 7).writeMap(mapFile.getPath());
+            MapData dom = MapFactory.makeMap(mapFile.getPath());
+            assertEquals(7, dom.getMaxCost());
+            assertSameMap(dom, MapFactory.parseXMLStreaming(mapFile.getPath(), null));
+            MapFactory.compileMap(mapFile.getPath(), compiled.getPath());
+            assertSameMap(dom, MapFactory.makeMap(compiled.getPath()));
+
+            // Unit-cost maps load without any costs stored.
+            assertEquals(1, MapFactory.makeMap(testfilesPath + "basic/map.xml").getMaxCost());
+        }
+        finally {
+            mapFile.delete();
+            compiled.delete();
+        }
+    }
+
+    @Test(expected = SAXException.class)
+    public void testInvalidConnectionCost() throws Exception {
+        File mapFile = File.createTempFile("costs", ".xml");
+        try {
+            Files.write(mapFile.toPath(), ("<map>\n  <room id=\"1\" name=\"Hall\" east=\"2\" east-cost=\"0\"/>\n"
+                    + "  <room id=\"2\" name=\"Study\" west=\"1\"/>\n</map>\n").getBytes(StandardCharsets.UTF_8));
+            MapFactory.makeMap(mapFile.getPath());
+        }
+        finally {
+            mapFile.delete();
+        }
+    }
+}
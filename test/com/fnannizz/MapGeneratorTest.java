@@ -0,0 +1,58 @@
+package com.fnannizz;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing that generated maps load, are connected and can be solved.
+ */
+public class MapGeneratorTest {
+
+    @Test
+    public void testEveryShapeIsConnectedAndSolvable() throws Exception {
+        for (MapGenerator.Shape shape : MapGenerator.Shape.values()) {
+            MapGenerator generator = new MapGenerator(shape, 500, 42);
+            File mapFile = File.createTempFile("generated", ".xml");
+            try {
+                generator.writeMap(mapFile.getPath());
+                MapData mapData = MapFactory.makeMap(mapFile.getPath());
+                assertEquals(500, mapData.getRoomCount());
+
+                ShortestPathData shortestPathData = ShortestPathSolver.findShortestPathFromNode(0, mapData);
+                for (int room = 0; room < mapData.getRoomCount(); room++) {
+                    assertNotEquals(shape + " room " + room, Integer.MAX_VALUE, shortestPathData.getDistance(room));
+                }
+
+                List<String> scenario = generator.generateScenario(5);
+                PathSolution solution = new OptimalPathSolver().findOptimalPath(mapData, scenario.subList(1, scenario.size()),
+                        scenario.get(0));
+                assertTrue(shape.toString(), solution.isFound() && solution.isProvenOptimal());
+            }
+            finally {
+                mapFile.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testSameSeedSameMap() throws Exception {
+        MapData first = buildMap(new MapGenerator(MapGenerator.Shape.RANDOM_SPARSE, 200, 7));
+        MapData second = buildMap(new MapGenerator(MapGenerator.Shape.RANDOM_SPARSE, 200, 7));
+        MapFactoryTest.assertSameMap(first, second);
+    }
+
+    private MapData buildMap(MapGenerator generator) throws Exception {
+        File mapFile = File.createTempFile("generated", ".xml");
+        try {
+            generator.writeMap(mapFile.getPath());
+            return MapFactory.makeMap(mapFile.getPath());
+        }
+        finally {
+            mapFile.delete();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package com.fnannizz;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the solvers that order must-visit nodes against an exhaustive search over small random matrices.
+ */
+public class OrderingSolversTest {
+
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // Distances between random points on a grid, which satisfy the triangle inequality like real map distances.
+    private int[] randomDistanceMatrix(Random random, int k) {
+        int[] x = new int[k];
+        int[] y = new int[k];
+        for (int i = 0; i < k; i++) {
+            x[i] = random.nextInt(50);
+            y[i] = random.nextInt(50);
+        }
+        int[] distances = new int[k * k];
+        for (int i = 0; i < k; i++) {
+            for (int j = 0; j < k; j++) {
+                distances[i * k + j] = Math.abs(x[i] - x[j]) + Math.abs(y[i] - y[j]);
+            }
+        }
+        return distances;
+    }
+
+    private int exhaustiveBestLength(int[] distances, int k, int[] order, int index) {
+        if (index == k) {
+            return pathLength(distances, k, order);
+        }
+        int best = UNREACHABLE;
+        for (int j = index; j < k; j++) {
+            int swap = order[index]; order[index] = order[j]; order[j] = swap;
+            best = Math.min(best, exhaustiveBestLength(distances, k, order, index + 1));
+            swap = order[index]; order[index] = order[j]; order[j] = swap;
+        }
+        return best;
+    }
+
+    private int pathLength(int[] distances, int k, int[] order) {
+        int length = 0;
+        for (int i = 1; i < order.length; i++) {
+            if (distances[order[i - 1] * k + order[i]] == UNREACHABLE) {
+                return UNREACHABLE;
+            }
+            length += distances[order[i - 1] * k + order[i]];
+        }
+        return length;
+    }
+
+    private int exhaustiveBestLength(int[] distances, int k) {
+        int[] order = new int[k];
+        for (int i = 0; i < k; i++) {
+            order[i] = i;
+        }
+        return exhaustiveBestLength(distances, k, order, 1);
+    }
+
+    private void assertValidOrder(VisitOrder visitOrder, int[] distances, int k) {
+        boolean[] seen = new boolean[k];
+        assertEquals(0, visitOrder.getOrder()[0]);
+        for (int node : visitOrder.getOrder()) {
+            assertFalse(seen[node]);
+            seen[node] = true;
+        }
+        assertEquals(visitOrder.getLength(), pathLength(distances, k, visitOrder.getOrder()));
+    }
+
+    @Test
+    public void testHeldKarpMatchesExhaustiveSearch() {
+        Random random = new Random(17);
+        for (int k = 1; k <= 8; k++) {
+            int[] distances = randomDistanceMatrix(random, k);
+            VisitOrder visitOrder = HeldKarpSolver.findBestOrder(distances, k);
+            assertEquals(exhaustiveBestLength(distances, k), visitOrder.getLength());
+            assertValidOrder(visitOrder, distances, k);
+        }
+    }
+
+    @Test
+    public void testHeldKarpUnreachable() {
+        int[] distances = { 0, 1, UNREACHABLE, 1, 0, UNREACHABLE, UNREACHABLE, UNREACHABLE, 0 };
+        assertEquals(UNREACHABLE, HeldKarpSolver.findBestOrder(distances, 3).getLength());
+    }
+
+    @Test
+    public void testBranchAndBoundMatchesHeldKarp() {
+        Random random = new Random(23);
+        for (int k = 1; k <= 12; k++) {
+            int[] distances = randomDistanceMatrix(random, k);
+            VisitOrder visitOrder = BranchAndBoundSolver.findBestOrder(distances, k, ForkJoinPool.commonPool());
+            assertEquals(HeldKarpSolver.findBestOrder(distances, k).getLength(), visitOrder.getLength());
+            assertValidOrder(visitOrder, distances, k);
+        }
+    }
+
+    @Test
+    public void testBranchAndBoundIsDeterministic() {
+        int[] distances = randomDistanceMatrix(new Random(5), 11);
+        int[] expected = BranchAndBoundSolver.findBestOrder(distances, 11, ForkJoinPool.commonPool()).getOrder();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int run = 0; run < 5; run++) {
+                assertArrayEquals(expected, BranchAndBoundSolver.findBestOrder(distances, 11, pool).getOrder());
+            }
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testBranchAndBoundUnreachable() {
+        int[] distances = { 0, 1, UNREACHABLE, 1, 0, UNREACHABLE, UNREACHABLE, UNREACHABLE, 0 };
+        assertEquals(UNREACHABLE, BranchAndBoundSolver.findBestOrder(distances, 3, ForkJoinPool.commonPool()).getLength());
+    }
+
+    @Test
+    public void testHeuristicFindsValidOrderWithinBudget() {
+        Random random = new Random(31);
+        for (int k = 1; k <= 60; k += 7) {
+            int[] distances = randomDistanceMatrix(random, k);
+            long start = System.nanoTime();
+            VisitOrder visitOrder = HeuristicOrderSolver.findBestOrder(distances, k, 50);
+            assertTrue(System.nanoTime() - start < 1_000_000_000L);
+            assertValidOrder(visitOrder, distances, k);
+            if (k <= 15) {
+                assertTrue(visitOrder.getLength() >= HeldKarpSolver.findBestOrder(distances, k).getLength());
+            }
+        }
+    }
+
+    @Test
+    public void testHeuristicFindsSmallOptimum() {
+        Random random = new Random(37);
+        for (int k = 1; k <= 7; k++) {
+            int[] distances = randomDistanceMatrix(random, k);
+            assertEquals(exhaustiveBestLength(distances, k), HeuristicOrderSolver.findBestOrder(distances, k, 20).getLength());
+        }
+    }
+
+    @Test
+    public void testHeuristicPricesSmallOrdersWithoutTime() {
+        int[] distances = { 0, 1, 10, 1, 0, 100, 10, 5, 0 };
+        VisitOrder visitOrder = HeuristicOrderSolver.findBestOrder(distances, 3, 0);
+        assertEquals(15, visitOrder.getLength());
+        assertArrayEquals(new int[] { 0, 2, 1 }, visitOrder.getOrder());
+        assertTrue(visitOrder.isProvenOptimal());
+    }
+
+    @Test
+    public void testHeuristicStopsWhenNoDoubleBridgeHelps() {
+        int[] distances = randomDistanceMatrix(new Random(41), 5);
+        long start = System.nanoTime();
+        VisitOrder visitOrder = HeuristicOrderSolver.findBestOrder(distances, 5, 5_000);
+        assertTrue(System.nanoTime() - start < 500_000_000L);
+        assertEquals(exhaustiveBestLength(distances, 5), visitOrder.getLength());
+        assertFalse(visitOrder.isProvenOptimal());
+    }
+}
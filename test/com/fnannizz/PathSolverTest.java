@@ -8,6 +8,8 @@ import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.junit.Assert.*;
 
@@ -50,6 +52,18 @@ public class PathSolverTest {
         assertEquals("potted plant\n" + "knife".trim(), outputStream.toString().trim());
     }
 
+    @Test
+    public void testReusingMapForSecondScenario() throws Exception {
+        PathSolver solver = new PathSolver();
+        solver.initializeWithMap(testfilesPath + "basic/map.xml");
+        solver.setScenario(testfilesPath + "basic/scenario.txt");
+        solver.setScenario(testfilesPath + "basic/scenario.txt");
+        String solution = readSolutionFile(testfilesPath + "basic/solution.txt");
+        solver.solve();
+
+        assertEquals(solution.trim(), outputStream.toString().trim());
+    }
+
     @Test(expected = InvalidScenarioException.class)
     public void testSetScenarioExtraItem() throws Exception {
         PathSolver solver = new PathSolver();
@@ -78,6 +92,57 @@ public class PathSolverTest {
         solver.setScenario(testfilesPath + "basic/scenario_empty.txt");
     }
 
+    private MapData writeAndLoadMap(String xml) throws Exception {
+        File mapFile = File.createTempFile("map", ".xml");
+        try {
+            Files.write(mapFile.toPath(), xml.getBytes(StandardCharsets.UTF_8));
+            return MapFactory.makeMap(mapFile.getPath());
+        }
+        finally {
+            mapFile.delete();
+        }
+    }
+
+    @Test
+    public void testSetScenarioUnreachableItem() throws Exception {
+        MapData mapData = writeAndLoadMap("<map>\n  <room id=\"1\" name=\"Hall\" east=\"2\"/>\n"
+                + "  <room id=\"2\" name=\"Study\" west=\"1\"><object name=\"Pen\"/></room>\n"
+                + "  <room id=\"3\" name=\"Attic\"><object name=\"Trunk\"/><object name=\"Lamp\"/></room>\n</map>\n");
+        try {
+            Scenario.create("1", Arrays.asList("Pen", "Trunk"), mapData);
+            fail();
+        }
+        catch (InvalidScenarioException e) {
+            assertEquals("The item trunk can't be reached from the starting location.", e.getMessage());
+        }
+        try {
+            Scenario.create("1", Arrays.asList("Trunk", "Pen", "Lamp"), mapData);
+            fail();
+        }
+        catch (InvalidScenarioException e) {
+            assertEquals("The items trunk, lamp can't be reached from the starting location.", e.getMessage());
+        }
+
+        // Joining the attic to the rest of the map makes the scenario valid.
+        mapData.addConnection("2", "north", "3");
+        mapData.addConnection("3", "south", "2");
+        assertEquals(2, new OptimalPathSolver().findOptimalPath(mapData, Arrays.asList("pen", "trunk"), "1").getLength());
+    }
+
+    @Test
+    public void testOneWayUnreachableItem() throws Exception {
+        // The attic leads down to the hall but nothing leads up to it, so every order that ends anywhere but the
+        // attic adds an unreachable distance to the others.
+        MapData mapData = writeAndLoadMap("<map>\n  <room id=\"1\" name=\"Hall\" east=\"2\"/>\n"
+                + "  <room id=\"2\" name=\"Study\" west=\"1\"><object name=\"Pen\"/></room>\n"
+                + "  <room id=\"3\" name=\"Attic\" south=\"1\"><object name=\"Trunk\"/></room>\n</map>\n");
+        Scenario scenario = Scenario.create("1", Arrays.asList("Pen", "Trunk"), mapData);
+        PathSolution solution = new OptimalPathSolver().findOptimalPath(mapData, scenario.getItemsToCollect(),
+                scenario.getStartingLocation());
+        assertFalse(solution.isFound());
+        assertEquals(Integer.MAX_VALUE, solution.getLength());
+    }
+
     @Test
     public void testSolvingBasicMap() throws Exception {
         PathSolver solver = new PathSolver();
@@ -100,6 +165,165 @@ public class PathSolverTest {
         assertEquals(solution.trim(), outputStream.toString().trim());
     }
 
+    @Test
+    public void testSolvingComplexMapWithHeldKarp() throws Exception {
+        PathSolver solver = new PathSolver();
+        solver.getOptions().setHeldKarpThreshold(0);
+        solver.initializeWithMap(testfilesPath + "complex/map.xml");
+        solver.setScenario(testfilesPath + "complex/scenario.txt");
+        String solution = readSolutionFile(testfilesPath + "complex/solution.txt");
+        solver.solve();
+
+        assertEquals(solution.trim(), outputStream.toString().trim());
+    }
+
+    @Test
+    public void testSolvingComplexMapWithBranchAndBound() throws Exception {
+        PathSolver solver = new PathSolver();
+        solver.getOptions().setBranchAndBoundThreshold(0);
+        solver.initializeWithMap(testfilesPath + "complex/map.xml");
+        solver.setScenario(testfilesPath + "complex/scenario.txt");
+        solver.solve();
+
+        // Several orders tie at 21, and branch and bound settles ties differently from the exhaustive search.
+        assertTrue(outputStream.toString().startsWith("Found an optimal path of length 21."));
+    }
+
+    @Test
+    public void testSolvingComplexMapWithHeuristic() throws Exception {
+        PathSolver solver = new PathSolver();
+        solver.getOptions().setHeuristicThreshold(0);
+        solver.getOptions().setHeuristicTimeBudgetMillis(50);
+        solver.initializeWithMap(testfilesPath + "complex/map.xml");
+        solver.setScenario(testfilesPath + "complex/scenario.txt");
+        solver.solve();
+
+        assertTrue(outputStream.toString().startsWith("Found a path of length 21 (not proven optimal)."));
+    }
+
+    @Test
+    public void testSolvingComplexMapWithSequentialSearches() throws Exception {
+        PathSolver solver = new PathSolver();
+        solver.getOptions().setParallelSearchThreshold(Integer.MAX_VALUE);
+        solver.initializeWithMap(testfilesPath + "complex/map.xml");
+        solver.setScenario(testfilesPath + "complex/scenario.txt");
+        String solution = readSolutionFile(testfilesPath + "complex/solution.txt");
+        solver.solve();
+
+        assertEquals(solution.trim(), outputStream.toString().trim());
+    }
+
+    @Test
+    public void testSolvingComplexMapWithParallelSearchesOnOwnPool() throws Exception {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            PathSolver solver = new PathSolver();
+            solver.getOptions().setParallelSearchThreshold(2);
+            solver.getOptions().setSearchPool(pool);
+            solver.getOptions().setUseShortestPathCache(false);
+            solver.initializeWithMap(testfilesPath + "complex/map.xml");
+            solver.setScenario(testfilesPath + "complex/scenario.txt");
+            String solution = readSolutionFile(testfilesPath + "complex/solution.txt");
+            solver.solve();
+
+            assertEquals(solution.trim(), outputStream.toString().trim());
+        }
+        finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testSolvingComplexMapWithTargetedSearch() throws Exception {
+        PathSolver solver = new PathSolver();
+        solver.getOptions().setTargetedSearch(true);
+        solver.initializeWithMap(testfilesPath + "complex/map.xml");
+        solver.setScenario(testfilesPath + "complex/scenario.txt");
+        String solution = readSolutionFile(testfilesPath + "complex/solution.txt");
+        solver.solve();
+
+        assertEquals(solution.trim(), outputStream.toString().trim());
+    }
+
+    @Test
+    public void testSolvingComplexMapWithMemoryBudget() throws Exception {
+        // Both budgets are below the k full trees, so no tree is built and none ends up in the cache.
+        for (long budget : new long[] { 1, 400 }) {
+            outputStream.reset();
+            PathSolver solver = new PathSolver();
+            solver.getOptions().setPathMemoryBudgetBytes(budget);
+            solver.initializeWithMap(testfilesPath + "complex/map.xml");
+            solver.setScenario(testfilesPath + "complex/scenario.txt");
+            String solution = readSolutionFile(testfilesPath + "complex/solution.txt");
+            solver.solve();
+
+            assertEquals(solution.trim(), outputStream.toString().trim());
+
+            MapData mapData = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+            Scenario scenario = Scenario.readFromFile(testfilesPath + "complex/scenario.txt", mapData);
+            new OptimalPathSolver(solver.getOptions()).findOptimalPath(mapData, scenario.getItemsToCollect(),
+                    scenario.getStartingLocation());
+            assertEquals(0, mapData.getShortestPathCache().size());
+        }
+    }
+
+    @Test
+    public void testSolvingCompiledComplexMap() throws Exception {
+        File compiled = File.createTempFile("complex", ".hpth");
+        try {
+            MapFactory.compileMap(testfilesPath + "complex/map.xml", compiled.getPath());
+            PathSolver solver = new PathSolver();
+            solver.initializeWithMap(compiled.getPath());
+            solver.setScenario(testfilesPath + "complex/scenario.txt");
+            String solution = readSolutionFile(testfilesPath + "complex/solution.txt");
+            solver.solve();
+
+            assertEquals(solution.trim(), outputStream.toString().trim());
+        }
+        finally {
+            compiled.delete();
+        }
+    }
+
+    @Test
+    public void testSolvingCompiledComplexMapOffHeap() throws Exception {
+        File compiled = File.createTempFile("complex", ".hpth");
+        try {
+            MapFactory.compileMap(testfilesPath + "complex/map.xml", compiled.getPath());
+            PathSolver solver = new PathSolver();
+            solver.getOptions().setOffHeapMaps(true);
+            solver.initializeWithMap(compiled.getPath());
+            solver.setScenario(testfilesPath + "complex/scenario.txt");
+            String solution = readSolutionFile(testfilesPath + "complex/solution.txt");
+            solver.solve();
+
+            assertEquals(solution.trim(), outputStream.toString().trim());
+        }
+        finally {
+            compiled.delete();
+        }
+    }
+
+    @Test
+    public void testSolvingPartitionedComplexMap() throws Exception {
+        File partitioned = File.createTempFile("complex", ".hprt");
+        try {
+            MapFactory.partitionMap(testfilesPath + "complex/map.xml", partitioned.getPath(), 4);
+            PathSolver solver = new PathSolver();
+            solver.getOptions().setMaxResidentRegions(2);
+            solver.getOptions().setTargetedSearch(true);
+            solver.initializeWithMap(partitioned.getPath());
+            solver.setScenario(testfilesPath + "complex/scenario.txt");
+            String solution = readSolutionFile(testfilesPath + "complex/solution.txt");
+            solver.solve();
+
+            assertEquals(solution.trim(), outputStream.toString().trim());
+        }
+        finally {
+            partitioned.delete();
+        }
+    }
+
     @After
     public void tearDown() throws Exception {
         // Unset output and error streams before shutting down
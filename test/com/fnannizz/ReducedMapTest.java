@@ -0,0 +1,166 @@
+package com.fnannizz;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing that searching the reduced map finds the same distances and solutions as searching the full map, and
+ * that its paths expand back into real moves.
+ */
+public class ReducedMapTest {
+
+    private final String testfilesPath = "./test/com/fnannizz/testfiles/";
+
+    private static SolverOptions reducedOptions() {
+        SolverOptions options = new SolverOptions();
+        options.setUseGraphReduction(true);
+        return options;
+    }
+
+    private static MapData buildMap(MapGenerator generator) throws Exception {
+        File mapFile = File.createTempFile("generated", ".xml");
+        try {
+            generator.writeMap(mapFile.getPath());
+            return MapFactory.makeMap(mapFile.getPath());
+        }
+        finally {
+            mapFile.delete();
+        }
+    }
+
+    /**
+     * Check that a solution starts in the right room, only takes real connections, picks up every item and costs
+     * as much as it claims.
+     */
+    static void assertValidSolution(MapData mapData, PathSolution solution, String start, List<String> items) {
+        assertTrue(solution.isFound());
+        assertEquals(start, solution.getRoom(0));
+        HashSet<String> pickedUp = new HashSet<>();
+        int cost = 0;
+        for (int step = 0; step < solution.getStepCount(); step++) {
+            pickedUp.addAll(Arrays.asList(solution.getPickups(step)));
+            if (step + 1 < solution.getStepCount()) {
+                int from = mapData.getRoomIndex(solution.getRoom(step));
+                int to = mapData.getRoomIndex(solution.getRoom(step + 1));
+                assertEquals(mapData.getDirectionTo(from, to), solution.getMove(step));
+                cost += mapData.getCostTo(from, to);
+            }
+        }
+        assertEquals(new HashSet<>(items), pickedUp);
+        assertEquals(solution.getLength(), cost);
+    }
+
+    @Test
+    public void testComplexScenarioMatchesFullMap() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+        Scenario scenario = Scenario.readFromFile(testfilesPath + "complex/scenario.txt", mapData);
+        PathSolution expected = new OptimalPathSolver().findOptimalPath(mapData, scenario.getItemsToCollect(),
+                scenario.getStartingLocation());
+        PathSolution reduced = new OptimalPathSolver(reducedOptions()).findOptimalPath(mapData,
+                scenario.getItemsToCollect(), scenario.getStartingLocation());
+        assertEquals(expected.getLength(), reduced.getLength());
+        assertValidSolution(mapData, reduced, scenario.getStartingLocation(), scenario.getItemsToCollect());
+    }
+
+    @Test
+    public void testGeneratedScenariosMatchFullMap() throws Exception {
+        checkGeneratedScenarios(1);
+    }
+
+    @Test
+    public void testGeneratedScenariosWithCostsMatchFullMap() throws Exception {
+        checkGeneratedScenarios(5);
+    }
+
+    private void checkGeneratedScenarios(int maxCost) throws Exception {
+        for (MapGenerator.Shape shape : MapGenerator.Shape.values()) {
+            MapGenerator generator = new MapGenerator(shape, 2000, 11, maxCost);
+            MapData mapData = buildMap(generator);
+            for (int i = 0; i < 10; i++) {
+                List<String> scenario = generator.generateScenario(6);
+                List<String> items = scenario.subList(1, scenario.size());
+                PathSolution expected = new OptimalPathSolver().findOptimalPath(mapData, items, scenario.get(0));
+                PathSolution reduced = new OptimalPathSolver(reducedOptions()).findOptimalPath(mapData, items, scenario.get(0));
+                assertEquals(shape + " scenario " + i, expected.getLength(), reduced.getLength());
+                assertValidSolution(mapData, expected, scenario.get(0), items);
+                assertValidSolution(mapData, reduced, scenario.get(0), items);
+
+                SolverOptions targeted = new SolverOptions();
+                targeted.setTargetedSearch(true);
+                PathSolution targetedSolution = new OptimalPathSolver(targeted).findOptimalPath(mapData, items, scenario.get(0));
+                assertEquals(expected.getLength(), targetedSolution.getLength());
+                assertValidSolution(mapData, targetedSolution, scenario.get(0), items);
+            }
+        }
+    }
+
+    @Test
+    public void testDistancesFromEveryRoom() throws Exception {
+        MapData mapData = buildMap(new MapGenerator(MapGenerator.Shape.CORRIDOR, 400, 3));
+        ReducedMap reducedMap = mapData.getReducedMap();
+        int[] itemRooms = mapData.getItemLocations().values().stream().mapToInt(Integer::intValue).toArray();
+        for (int room = 0; room < mapData.getRoomCount(); room++) {
+            ShortestPathData expected = ShortestPathSolver.findShortestPathFromNode(room, mapData);
+            ReducedMap.Search search = reducedMap.searchFrom(room);
+            assertEquals(0, reducedMap.distanceTo(search, room));
+            for (int itemRoom : itemRooms) {
+                assertEquals(expected.getDistance(itemRoom), reducedMap.distanceTo(search, itemRoom));
+                int[] path = reducedMap.pathTo(search, itemRoom);
+                assertEquals(expected.getDistance(itemRoom) + 1, path.length);
+                assertEquals(room, path[0]);
+                assertEquals(itemRoom, path[path.length - 1]);
+                for (int i = 1; i < path.length; i++) {
+                    assertNotNull(mapData.getDirectionTo(path[i - 1], path[i]));
+                }
+                assertEquals(expected.getDistance(itemRoom), reducedMap.distanceTo(reducedMap.searchFrom(itemRoom), room));
+            }
+        }
+    }
+
+    @Test
+    public void testCorridorsAndDeadEndsAreRemoved() throws Exception {
+        MapData mapData = buildMap(new MapGenerator(MapGenerator.Shape.CORRIDOR, 5000, 5));
+        ReducedMap reducedMap = mapData.getReducedMap();
+        // Only the item rooms and the spine rooms that wings with items hang off should be left.
+        assertTrue(reducedMap.getNodeCount() < 3 * mapData.getItemLocations().size());
+        assertSame(reducedMap, mapData.getReducedMap());
+
+        mapData.addItem("r0", "Lantern");
+        assertNotSame(reducedMap, mapData.getReducedMap());
+    }
+
+    @Test
+    public void testPathSolverWithReduction() throws Exception {
+        PathSolver solver = new PathSolver();
+        solver.getOptions().setUseGraphReduction(true);
+        MetricsSummary metrics = new MetricsSummary();
+        solver.getOptions().setMetricsSink(metrics);
+        solver.initializeWithMap(testfilesPath + "complex/map.xml");
+        assertEquals(1, metrics.getCalls(SolvePhase.GRAPH_REDUCTION));
+        solver.setScenario(testfilesPath + "complex/scenario.txt");
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(outputStream));
+        try {
+            solver.solve();
+        }
+        finally {
+            System.setOut(out);
+        }
+        String solution = new String(Files.readAllBytes(Paths.get(testfilesPath, "complex/solution.txt")),
+                StandardCharsets.UTF_8);
+        assertEquals(solution.trim(), outputStream.toString().trim());
+    }
+}
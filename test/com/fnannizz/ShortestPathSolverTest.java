@@ -0,0 +1,148 @@
+package com.fnannizz;
+
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the single-source search engines of ShortestPathSolver.
+ */
+public class ShortestPathSolverTest {
+
+    private final String testfilesPath = "./test/com/fnannizz/testfiles/";
+
+    @Test
+    public void testBreadthFirstMatchesDijkstra() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+        for (int start = 0; start < mapData.getRoomCount(); start++) {
+            ShortestPathData breadthFirst = ShortestPathSolver.findShortestPathFromNode(start, mapData, SearchEngine.BREADTH_FIRST);
+            ShortestPathData dijkstra = ShortestPathSolver.findShortestPathFromNode(start, mapData, SearchEngine.DIJKSTRA);
+            for (int room = 0; room < mapData.getRoomCount(); room++) {
+                assertEquals(dijkstra.getDistance(room), breadthFirst.getDistance(room));
+            }
+        }
+    }
+
+    @Test
+    public void testBucketSearchWithCosts() throws Exception {
+        File mapFile = File.createTempFile("costs", ".xml");
+        MapData mapData;
+        try {
+            new MapGenerator(MapGenerator.Shape.RANDOM_SPARSE, 500, 9, 9).writeMap(mapFile.getPath());
+            mapData = MapFactory.makeMap(mapFile.getPath());
+        }
+        finally {
+            mapFile.delete();
+        }
+        int[] targets = { 7, 480, 23, 7 };
+        int[] distances = new int[targets.length];
+        for (int start = 0; start < mapData.getRoomCount(); start += 25) {
+            ShortestPathData dijkstra = ShortestPathSolver.findShortestPathFromNode(start, mapData, SearchEngine.DIJKSTRA);
+            ShortestPathData bucket = ShortestPathSolver.findShortestPathFromNode(start, mapData, SearchEngine.BUCKET);
+            ShortestPathData breadthFirst = ShortestPathSolver.findShortestPathFromNode(start, mapData, SearchEngine.BREADTH_FIRST);
+            for (int room = 0; room < mapData.getRoomCount(); room++) {
+                assertEquals(dijkstra.getDistance(room), bucket.getDistance(room));
+                assertEquals(dijkstra.getDistance(room), breadthFirst.getDistance(room));
+                int previous = bucket.getPrevious(room);
+                if (previous != -1) {
+                    assertEquals(bucket.getDistance(previous) + mapData.getCostTo(previous, room), bucket.getDistance(room));
+                }
+            }
+
+            ShortestPathSolver.findDistancesToTargets(start, targets, mapData, distances);
+            for (int i = 0; i < targets.length; i++) {
+                assertEquals(dijkstra.getDistance(targets[i]), distances[i]);
+                int[] path = ShortestPathSolver.findPathBetween(start, targets[i], mapData);
+                int cost = 0;
+                for (int j = 1; j < path.length; j++) {
+                    cost += mapData.getCostTo(path[j - 1], path[j]);
+                }
+                assertEquals(dijkstra.getDistance(targets[i]), cost);
+            }
+        }
+    }
+
+    @Test
+    public void testBreadthFirstPredecessors() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "basic/map.xml");
+        int hallway = mapData.getRoomIndex("1");
+        int kitchen = mapData.getRoomIndex("3");
+        ShortestPathData shortestPathData = ShortestPathSolver.findShortestPathFromNode(hallway, mapData);
+
+        assertEquals(2, shortestPathData.getDistance(kitchen));
+        assertEquals(mapData.getRoomIndex("2"), shortestPathData.getPrevious(kitchen));
+        assertEquals(-1, shortestPathData.getPrevious(hallway));
+    }
+
+    @Test
+    public void testTargetedSearchMatchesFullSearch() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+        int[] targets = { 3, 0, 11, 3, 19 };
+        int[] distances = new int[targets.length];
+        for (int start = 0; start < mapData.getRoomCount(); start++) {
+            ShortestPathData full = ShortestPathSolver.findShortestPathFromNode(start, mapData);
+            int nodesExpanded = ShortestPathSolver.findDistancesToTargets(start, targets, mapData, distances);
+            assertTrue(nodesExpanded <= full.getNodesExpanded());
+            for (int i = 0; i < targets.length; i++) {
+                assertEquals(full.getDistance(targets[i]), distances[i]);
+            }
+        }
+    }
+
+    @Test
+    public void testBidirectionalPathIsShortest() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+        for (int start = 0; start < mapData.getRoomCount(); start++) {
+            ShortestPathData full = ShortestPathSolver.findShortestPathFromNode(start, mapData);
+            for (int end = 0; end < mapData.getRoomCount(); end++) {
+                int[] path = ShortestPathSolver.findPathBetween(start, end, mapData);
+                if (full.getDistance(end) == Integer.MAX_VALUE) {
+                    assertNull(path);
+                    continue;
+                }
+                assertEquals(full.getDistance(end) + 1, path.length);
+                assertEquals(start, path[0]);
+                assertEquals(end, path[path.length - 1]);
+                for (int i = 1; i < path.length; i++) {
+                    assertFalse(mapData.getDirectionTo(path[i - 1], path[i]).startsWith("Room "));
+                }
+            }
+        }
+
+        int cellar = mapData.addRoom("cellar", "Cellar");
+        assertNull(ShortestPathSolver.findPathBetween(0, cellar, mapData));
+        int[] distances = new int[1];
+        ShortestPathSolver.findDistancesToTargets(0, new int[] { cellar }, mapData, distances);
+        assertEquals(Integer.MAX_VALUE, distances[0]);
+    }
+
+    @Test
+    public void testShortestPathCacheCountsHitsAndMisses() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+        ShortestPathCache cache = mapData.getShortestPathCache();
+        ShortestPathData first = cache.get(0, SearchEngine.BREADTH_FIRST);
+        assertSame(first, cache.get(0, SearchEngine.BREADTH_FIRST));
+        cache.get(0, SearchEngine.DIJKSTRA);
+
+        assertEquals(1, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testShortestPathCacheEvictsLeastRecentlyUsed() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "complex/map.xml");
+        ShortestPathCache cache = mapData.getShortestPathCache();
+        cache.setMemoryBudgetBytes(2 * cache.bytesPerEntry());
+        ShortestPathData first = cache.get(0, SearchEngine.BREADTH_FIRST);
+        cache.get(1, SearchEngine.BREADTH_FIRST);
+        cache.get(0, SearchEngine.BREADTH_FIRST);
+        cache.get(2, SearchEngine.BREADTH_FIRST);
+
+        assertEquals(2, cache.size());
+        assertSame(first, cache.get(0, SearchEngine.BREADTH_FIRST));
+        assertEquals(3, cache.getMisses());
+    }
+}
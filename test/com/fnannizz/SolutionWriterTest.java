@@ -0,0 +1,96 @@
+package com.fnannizz;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the structured solution and the formats it can be written in.
+ */
+public class SolutionWriterTest {
+
+    private final String testfilesPath = "./test/com/fnannizz/testfiles/";
+
+    private PathSolution solveBasicMap() throws Exception {
+        MapData mapData = MapFactory.makeMap(testfilesPath + "basic/map.xml");
+        Scenario scenario = Scenario.readFromFile(testfilesPath + "basic/scenario.txt", mapData);
+        return new OptimalPathSolver().findOptimalPath(mapData, scenario.getItemsToCollect(), scenario.getStartingLocation());
+    }
+
+    private String write(SolutionWriter writer, PathSolution solution) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        writer.write(solution, output);
+        return new String(output.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testSolutionContents() throws Exception {
+        PathSolution solution = solveBasicMap();
+        assertTrue(solution.isFound());
+        assertEquals(3, solution.getLength());
+        assertEquals(4, solution.getStepCount());
+        assertEquals("4", solution.getRoom(1));
+        assertEquals("east", solution.getMove(0));
+        assertNull(solution.getMove(3));
+        assertArrayEquals(new String[] { "potted plant" }, solution.getPickups(1));
+        assertEquals(0, solution.getPickups(2).length);
+    }
+
+    @Test
+    public void testTextMatchesExpectedSolution() throws Exception {
+        String expected = new String(Files.readAllBytes(Paths.get(testfilesPath, "basic/solution.txt")), StandardCharsets.UTF_8);
+        assertEquals(expected.trim(), write(new TextSolutionWriter(), solveBasicMap()).trim());
+    }
+
+    @Test
+    public void testJson() throws Exception {
+        assertEquals("{\"found\":true,\"length\":3,\"provenOptimal\":true,\"steps\":["
+                + "{\"room\":\"2\",\"move\":\"east\",\"pickups\":[]},"
+                + "{\"room\":\"4\",\"move\":\"west\",\"pickups\":[\"potted plant\"]},"
+                + "{\"room\":\"2\",\"move\":\"west\",\"pickups\":[]},"
+                + "{\"room\":\"3\",\"pickups\":[\"knife\"]}]}\n",
+                write(new JsonSolutionWriter(), solveBasicMap()));
+
+        PathSolution quoted = new PathSolution(0, true, new String[] { "a\"b\\c" }, new String[1],
+                new String[][] { { "tab\there" } });
+        assertEquals("{\"found\":true,\"length\":0,\"provenOptimal\":true,\"steps\":["
+                + "{\"room\":\"a\\\"b\\\\c\",\"pickups\":[\"tab\\u0009here\"]}]}\n",
+                write(new JsonSolutionWriter(), quoted));
+    }
+
+    @Test
+    public void testBinaryRoundTrip() throws Exception {
+        PathSolution solution = solveBasicMap();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new BinarySolutionWriter().write(solution, output);
+        PathSolution read = BinarySolutionWriter.read(new ByteArrayInputStream(output.toByteArray()));
+
+        assertEquals(write(new TextSolutionWriter(), solution), write(new TextSolutionWriter(), read));
+        for (int step = 0; step < solution.getStepCount(); step++) {
+            assertTrue(Arrays.equals(solution.getPickups(step), read.getPickups(step)));
+        }
+    }
+
+    @Test
+    public void testNoPath() throws Exception {
+        PathSolution solution = PathSolution.noPath();
+        assertEquals("Unable to find a path to collect all needed items.\n", write(new TextSolutionWriter(), solution));
+        assertEquals("{\"found\":false}\n", write(new JsonSolutionWriter(), solution));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new BinarySolutionWriter().write(solution, output);
+        assertFalse(BinarySolutionWriter.read(new ByteArrayInputStream(output.toByteArray())).isFound());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownFormat() {
+        SolutionWriter.forFormat("xml");
+    }
+}
@@ -0,0 +1,114 @@
+package com.fnannizz;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.*;
+
+/**
+ * Testing the request protocol of SolverServer over a real socket.
+ */
+public class SolverServerTest {
+
+    private final String testfilesPath = "./test/com/fnannizz/testfiles/";
+    private SolverServer server;
+
+    @Before
+    public void setUp() throws Exception {
+        HashMap<String, MapData> maps = new HashMap<>();
+        maps.put("complex", MapFactory.makeMap(testfilesPath + "complex/map.xml"));
+        server = new SolverServer(maps, new SolverOptions(), 2, 4, 8);
+        server.startTcp(0);
+    }
+
+    private String readReply(BufferedReader in) throws Exception {
+        StringBuilder reply = new StringBuilder();
+        String line;
+        while (!(line = in.readLine()).equals(SolverServer.END_OF_REPLY)) {
+            reply.append(line).append('\n');
+        }
+        return reply.toString().trim();
+    }
+
+    @Test
+    public void testSolveOverSocket() throws Exception {
+        String solution = new String(Files.readAllBytes(Paths.get(testfilesPath, "complex/solution.txt")), StandardCharsets.UTF_8);
+        try (Socket socket = new Socket()) {
+            socket.connect(server.getLocalAddress());
+            PrintStream out = new PrintStream(socket.getOutputStream(), true, "UTF-8");
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+
+            out.println("SOLVE\tcomplex\tscullery\tPlate\tFishing-rod\tLamp\tBook\tPickaxe\tPine-cone");
+            assertEquals(solution.trim(), readReply(in));
+
+            out.println("SOLVE\tcomplex\tnowhere\tPlate");
+            assertEquals("ERROR Invalid starting location.", readReply(in));
+
+            out.println("SOLVE\tbasic\t1\tknife");
+            assertEquals("ERROR Unknown map basic.", readReply(in));
+
+            out.println("MAPS");
+            assertEquals("complex", readReply(in));
+            out.println("QUIT");
+        }
+    }
+
+    @Test
+    public void testBusyWhenQueueIsFull() throws Exception {
+        // One worker, held in its first measured phase until the test lets it go, and one queue slot.
+        CountDownLatch working = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        SolverOptions blockingOptions = new SolverOptions();
+        blockingOptions.setMetricsSink((phase, nanos, count, allocatedBytes) -> {
+            working.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        HashMap<String, MapData> maps = new HashMap<>();
+        maps.put("complex", MapFactory.makeMap(testfilesPath + "complex/map.xml"));
+        try (SolverServer busyServer = new SolverServer(maps, blockingOptions, 1, 1, 8)) {
+            String request = "SOLVE\tcomplex\tscullery\tPlate\tFishing-rod\tLamp\tBook\tPickaxe\tPine-cone";
+            String[] replies = new String[2];
+            Thread[] clients = new Thread[replies.length];
+            for (int i = 0; i < clients.length; i++) {
+                int client = i;
+                clients[i] = new Thread(() -> replies[client] = busyServer.handle(request));
+            }
+            clients[0].start();
+            working.await();
+            clients[1].start();
+            while (busyServer.getWaitingRequestCount() < 1) {
+                Thread.yield();
+            }
+            assertEquals("BUSY\n", busyServer.handle(request));
+
+            release.countDown();
+            for (Thread client : clients) {
+                client.join();
+            }
+            assertTrue(replies[0].startsWith("Found an optimal path of length 21"));
+            assertTrue(replies[1].startsWith("Found an optimal path of length 21"));
+        }
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.close();
+    }
+}